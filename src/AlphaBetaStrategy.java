@@ -0,0 +1,756 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * AlphaBetaStrategy searches the game tree with negamax and alpha-beta pruning.
+ *
+ * The search deepens one ply at a time until the time budget runs out and
+ * then plays the best move found so far. Moves are ordered so the best move
+ * of the last iteration and the moves that leave the opponent the fewest
+ * replies are searched first. Leaves are scored from square values and
+ * mobility, or by a ReversiPatternEvaluator when one is set.
+ *
+ * Results are kept in a transposition table that lives as long as the
+ * strategy, so positions reached again through another move order, or again
+ * on a later move of the same game, are not searched twice.
+ *
+ * With more than one thread the root is split young brothers wait style:
+ * the first move is searched alone to get a bound, then the other moves are
+ * searched at once on a ForkJoinPool, all sharing the transposition table.
+ * Setting a seed makes the search deterministic: ties are broken by the seed,
+ * the time budget is ignored in favour of the maximum depth, and table
+ * entries are only used at the exact depth they were searched to, so the
+ * same position always gives the same move whatever the thread timing.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class AlphaBetaStrategy implements ReversiStrategy {
+	private static final int MAX_PLY = 128;
+	private static final int MAX_MOVES = 64;
+	private static final int INFINITY = 1000000;
+	private static final int WIN = 100000;
+
+	// Value of owning each square, corners are good and the squares next to them are bad
+	private static final int[] SQUARE_VALUES = {
+			100, -20, 10,  5,  5, 10, -20, 100,
+			-20, -50, -2, -2, -2, -2, -50, -20,
+			 10,  -2, -1, -1, -1, -1,  -2,  10,
+			  5,  -2, -1, -1, -1, -1,  -2,   5,
+			  5,  -2, -1, -1, -1, -1,  -2,   5,
+			 10,  -2, -1, -1, -1, -1,  -2,  10,
+			-20, -50, -2, -2, -2, -2, -50, -20,
+			100, -20, 10,  5,  5, 10, -20, 100 };
+
+	private long timeBudget;
+	private int maxDepth = 60;
+	private int threads = 1;
+	private Random random;
+	private ReversiTranspositionTable table = new ReversiTranspositionTable(20);
+	private ReversiPatternEvaluator evaluator;
+	private ForkJoinPool pool;
+	private volatile BiConsumer<Integer, Integer> progress;
+
+	// The search running now, or null
+	private volatile Search current;
+
+	// Results of the last search
+	private long lastNodes;
+	private long lastTime;
+	private int lastDepth;
+	private int lastScore;
+
+	/**
+	 * Constructor for AlphaBetaStrategy with a 100 ms budget per move
+	 */
+	public AlphaBetaStrategy() {
+		this(100);
+	}
+
+	/**
+	 * Constructor for AlphaBetaStrategy
+	 *
+	 * @param timeBudget : milliseconds the search may use for one move
+	 */
+	public AlphaBetaStrategy(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	@Override
+	public int chooseMove(long own, long opp, int color) {
+		return chooseMove(own, opp, color, () -> false);
+	}
+
+	@Override
+	public int chooseMove(ReversiEngine engine, long[] own, long[] opp, int color, BooleanSupplier cancelled) {
+		if (!supportsSize(engine.getSize())) {
+			throw new UnsupportedOperationException(this + " does not play " + engine + " boards");
+		}
+		return chooseMove(own[0], opp[0], color, cancelled);
+	}
+
+	/**
+	 * Searches the position until the time budget runs out, the maximum depth
+	 * is reached or the search is cancelled
+	 *
+	 * @param own       : bitboard of the player to move
+	 * @param opp       : bitboard of the opponent
+	 * @param color     : color of the player to move
+	 * @param cancelled : true once the search should return its best move so far
+	 * @return index of the chosen square, or -1 if there is no legal move
+	 */
+	private int chooseMove(long own, long opp, int color, BooleanSupplier cancelled) {
+		long start = System.nanoTime();
+		lastDepth = 0;
+		lastScore = 0;
+		long moves = ReversiBitboard.legalMoves(own, opp);
+		if (moves == 0) {
+			lastNodes = 0;
+			lastTime = 0;
+			return -1;
+		}
+		Search search = new Search(table, evaluator, random != null,
+				random != null ? Long.MAX_VALUE : start + timeBudget * 1000000L, cancelled);
+		current = search;
+		table.newSearch();
+		long hash = ReversiZobrist.hash(color == ReversiModel.W ? own : opp, color == ReversiModel.B ? own : opp, color);
+		int oppColor = color == ReversiModel.B ? ReversiModel.W : ReversiModel.B;
+		int[] rootMoves = orderRoot(own, opp, moves, hash);
+		int n = rootMoves.length;
+		int best = rootMoves[0];
+		int empties = ReversiBitboard.count(~(own | opp));
+		Searcher main = search.borrow();
+
+		// Deepen until time runs out or the search reaches the end of the game
+		for (int depth = 1; depth <= maxDepth && n > 1; depth++) {
+			// The first move is searched alone with a full window
+			long flips = ReversiBitboard.flips(own, opp, rootMoves[0]);
+			int alpha = -main.negamax(opp ^ flips, own | flips | (1L << rootMoves[0]),
+					childHash(hash, color, rootMoves[0], flips), oppColor, depth - 1, -INFINITY, INFINITY, 1);
+			if (search.aborted) {
+				break;
+			}
+			int bestIndex = 0;
+			best = rootMoves[0];
+
+			int[] scores = new int[n];
+			int[] bounds = new int[n];
+			boolean[] done = new boolean[n];
+			if (threads > 1) {
+				searchSiblings(search, own, opp, hash, color, depth, rootMoves, alpha, scores, bounds, done);
+			} else {
+				int bound = alpha;
+				for (int i = 1; i < n && !search.aborted; i++) {
+					bounds[i] = bound;
+					scores[i] = searchRoot(main, own, opp, hash, color, depth, rootMoves[i], bound);
+					done[i] = !search.aborted;
+					if (done[i] && scores[i] > bound) {
+						bound = scores[i];
+					}
+				}
+			}
+
+			// A move only beats the first if it scored above the bound it was searched with
+			int bestScore = alpha;
+			for (int i = 1; i < n; i++) {
+				if (done[i] && scores[i] > bounds[i] && scores[i] > bestScore) {
+					bestScore = scores[i];
+					bestIndex = i;
+					best = rootMoves[i];
+				}
+			}
+			if (search.aborted) {
+				break;
+			}
+			lastDepth = depth;
+			lastScore = bestScore;
+			table.store(hash, depth, ReversiTranspositionTable.EXACT, best, bestScore);
+			BiConsumer<Integer, Integer> listener = progress;
+			if (listener != null) {
+				listener.accept(depth, best);
+			}
+
+			// Search the best move first in the next iteration
+			System.arraycopy(rootMoves, 0, rootMoves, 1, bestIndex);
+			rootMoves[0] = best;
+			if (depth >= empties) {
+				break;
+			}
+		}
+
+		lastNodes = search.nodes();
+		current = null;
+		lastTime = System.nanoTime() - start;
+		return best;
+	}
+
+	/**
+	 * Searches every root move but the first at once on the pool
+	 *
+	 * @param search    : state of this search
+	 * @param own       : bitboard of the player to move
+	 * @param opp       : bitboard of the opponent
+	 * @param hash      : Zobrist hash of the root
+	 * @param color     : color of the player to move
+	 * @param depth     : depth of this iteration
+	 * @param rootMoves : ordered root moves
+	 * @param alpha     : score of the first move
+	 * @param scores    : array the scores are written to
+	 * @param bounds    : array the lower bound each move was searched with is written to
+	 * @param done      : array marking the moves that finished before the deadline
+	 */
+	private void searchSiblings(Search search, long own, long opp, long hash, int color, int depth, int[] rootMoves, int alpha,
+			int[] scores, int[] bounds, boolean[] done) {
+		final AtomicInteger sharedAlpha = new AtomicInteger(alpha);
+		final boolean deterministic = random != null;
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 1; i < rootMoves.length; i++) {
+			final int index = i;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					// A fixed bound keeps the result independent of which sibling finishes first
+					int bound = deterministic ? alpha : sharedAlpha.get();
+					Searcher searcher = search.borrow();
+					int score = searchRoot(searcher, own, opp, hash, color, depth, rootMoves[index], bound);
+					search.giveBack(searcher);
+					if (!search.aborted) {
+						bounds[index] = bound;
+						scores[index] = score;
+						done[index] = true;
+						int current = sharedAlpha.get();
+						while (score > current && !sharedAlpha.compareAndSet(current, score)) {
+							current = sharedAlpha.get();
+						}
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> future : getPool().invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			search.aborted = true;
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Searches one root move with the window (alpha, infinity)
+	 *
+	 * @param searcher : search state of the calling thread
+	 * @param own      : bitboard of the player to move
+	 * @param opp      : bitboard of the opponent
+	 * @param hash     : Zobrist hash of the root
+	 * @param color    : color of the player to move
+	 * @param depth    : depth of this iteration
+	 * @param square   : root move to search
+	 * @param alpha    : lower bound of the window
+	 * @return score of the move for the player to move
+	 */
+	private int searchRoot(Searcher searcher, long own, long opp, long hash, int color, int depth, int square, int alpha) {
+		long flips = ReversiBitboard.flips(own, opp, square);
+		int oppColor = color == ReversiModel.B ? ReversiModel.W : ReversiModel.B;
+		return -searcher.negamax(opp ^ flips, own | flips | (1L << square), childHash(hash, color, square, flips),
+				oppColor, depth - 1, -INFINITY, -alpha, 1);
+	}
+
+	/**
+	 * Orders the root moves. With a seed set, moves that order the same are
+	 * shuffled by the seed first and the table is not consulted.
+	 *
+	 * @param own   : bitboard of the player to move
+	 * @param opp   : bitboard of the opponent
+	 * @param moves : bitboard of legal moves
+	 * @param hash  : Zobrist hash of the root
+	 * @return the ordered root moves
+	 */
+	private int[] orderRoot(long own, long opp, long moves, long hash) {
+		int[] squares = new int[ReversiBitboard.count(moves)];
+		for (int i = 0; i < squares.length; i++) {
+			squares[i] = Long.numberOfTrailingZeros(moves);
+			moves &= moves - 1;
+		}
+		int first = ReversiTranspositionTable.NO_MOVE;
+		if (random != null) {
+			for (int i = squares.length - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int swap = squares[i];
+				squares[i] = squares[j];
+				squares[j] = swap;
+			}
+		} else {
+			long entry = table.probe(hash);
+			if (entry != 0) {
+				first = ReversiTranspositionTable.move(entry);
+			}
+		}
+
+		// Stable insertion sort so shuffled ties keep their order
+		int[] keys = new int[squares.length];
+		for (int n = 0; n < squares.length; n++) {
+			int square = squares[n];
+			int key = moveKey(own, opp, square, first);
+			int i = n;
+			while (i > 0 && keys[i - 1] > key) {
+				keys[i] = keys[i - 1];
+				squares[i] = squares[i - 1];
+				i--;
+			}
+			keys[i] = key;
+			squares[i] = square;
+		}
+		return squares;
+	}
+
+	/**
+	 * Gets the ordering key of a move, lower keys are searched first
+	 *
+	 * @param own    : bitboard of the player to move
+	 * @param opp    : bitboard of the opponent
+	 * @param square : move to order
+	 * @param first  : square to search first, or NO_MOVE
+	 * @return the sort key
+	 */
+	private static int moveKey(long own, long opp, int square, int first) {
+		if (square == first) {
+			return Integer.MIN_VALUE;
+		}
+		long flips = ReversiBitboard.flips(own, opp, square);
+		long replies = ReversiBitboard.legalMoves(opp ^ flips, own | flips | (1L << square));
+		return ReversiBitboard.count(replies) * 16 - SQUARE_VALUES[square];
+	}
+
+	/**
+	 * Gets the hash of the position after a move
+	 */
+	private static long childHash(long hash, int color, int square, long flips) {
+		return hash ^ ReversiZobrist.key(color, square) ^ ReversiZobrist.flipKeys(flips) ^ ReversiZobrist.sideKey();
+	}
+
+	/**
+	 * Gets the pool used for parallel search, creating it on first use
+	 */
+	private synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(threads);
+		}
+		return pool;
+	}
+
+	/**
+	 * Search holds the state of one chooseMove shared by all its threads:
+	 * the deadline, its cancellation token, whether it was aborted, and the
+	 * searchers its threads borrow. Nothing in it outlives the move.
+	 */
+	private static class Search {
+		private final ReversiTranspositionTable table;
+		private final ReversiPatternEvaluator evaluator;
+		private final boolean deterministic;
+		private final long deadline;
+		private final BooleanSupplier cancelled;
+		private volatile boolean aborted;
+		private final List<Searcher> all = new CopyOnWriteArrayList<Searcher>();
+		private final ConcurrentLinkedQueue<Searcher> idle = new ConcurrentLinkedQueue<Searcher>();
+
+		private Search(ReversiTranspositionTable table, ReversiPatternEvaluator evaluator, boolean deterministic,
+				long deadline, BooleanSupplier cancelled) {
+			this.table = table;
+			this.evaluator = evaluator;
+			this.deterministic = deterministic;
+			this.deadline = deadline;
+			this.cancelled = cancelled;
+		}
+
+		/**
+		 * Takes a searcher no other thread is using, making one if all are busy
+		 */
+		private Searcher borrow() {
+			Searcher searcher = idle.poll();
+			if (searcher == null) {
+				searcher = new Searcher(this);
+				all.add(searcher);
+			}
+			return searcher;
+		}
+
+		/**
+		 * Hands a searcher back for the next task
+		 */
+		private void giveBack(Searcher searcher) {
+			idle.add(searcher);
+		}
+
+		/**
+		 * @return the nodes searched by every searcher
+		 */
+		private long nodes() {
+			long nodes = 0;
+			for (Searcher searcher : all) {
+				nodes += searcher.nodes;
+			}
+			return nodes;
+		}
+	}
+
+	/**
+	 * Searcher holds the search state of one thread, so threads never share
+	 * move buffers or node counts.
+	 */
+	private static class Searcher {
+		private final Search search;
+		private final ReversiTranspositionTable table;
+		private long nodes;
+		private final int[][] moveBuffer = new int[MAX_PLY][MAX_MOVES];
+		private final int[][] keyBuffer = new int[MAX_PLY][MAX_MOVES];
+
+		private Searcher(Search search) {
+			this.search = search;
+			this.table = search.table;
+		}
+
+		/**
+		 * Negamax search with alpha-beta pruning
+		 *
+		 * @param own   : bitboard of the player to move
+		 * @param opp   : bitboard of the opponent
+		 * @param hash  : Zobrist hash of the position
+		 * @param color : color of the player to move
+		 * @param depth : plies left to search
+		 * @param alpha : lower bound of the window
+		 * @param beta  : upper bound of the window
+		 * @param ply   : plies from the root
+		 * @return score of the position for the player to move
+		 */
+		private int negamax(long own, long opp, long hash, int color, int depth, int alpha, int beta, int ply) {
+			nodes++;
+			if ((nodes & 1023) == 0 && (System.nanoTime() > search.deadline || search.cancelled.getAsBoolean())) {
+				search.aborted = true;
+			}
+			if (search.aborted) {
+				return 0;
+			}
+
+			// Reuse an earlier result for this position if it was searched deep enough
+			int ttMove = ReversiTranspositionTable.NO_MOVE;
+			if (depth > 0) {
+				long entry = table.probe(hash);
+				if (entry != 0) {
+					ttMove = ReversiTranspositionTable.move(entry);
+					int entryDepth = ReversiTranspositionTable.depth(entry);
+					if (entryDepth == depth || (entryDepth > depth && !search.deterministic)) {
+						int score = ReversiTranspositionTable.score(entry);
+						int bound = ReversiTranspositionTable.bound(entry);
+						if (bound == ReversiTranspositionTable.EXACT) {
+							return score;
+						} else if (bound == ReversiTranspositionTable.LOWER && score > alpha) {
+							alpha = score;
+						} else if (bound == ReversiTranspositionTable.UPPER && score < beta) {
+							beta = score;
+						}
+						if (alpha >= beta) {
+							return score;
+						}
+					}
+				}
+			}
+
+			int oppColor = color == ReversiModel.B ? ReversiModel.W : ReversiModel.B;
+			long moves = ReversiBitboard.legalMoves(own, opp);
+			if (moves == 0) {
+				if (ReversiBitboard.legalMoves(opp, own) == 0) {
+					return finalScore(own, opp);
+				}
+				// Pass the turn
+				return -negamax(opp, own, hash ^ ReversiZobrist.sideKey(), oppColor, depth, -beta, -alpha, ply + 1);
+			}
+			if (depth == 0) {
+				ReversiPatternEvaluator evaluator = search.evaluator;
+				return evaluator != null ? evaluator.evaluate(own, opp, moves) : evaluate(own, opp, moves);
+			}
+
+			int[] buffer = moveBuffer[ply];
+			int n;
+			if (depth > 2) {
+				n = orderMoves(own, opp, moves, ttMove, buffer, keyBuffer[ply]);
+			} else {
+				n = 0;
+				while (moves != 0) {
+					int square = Long.numberOfTrailingZeros(moves);
+					moves &= moves - 1;
+					if (square == ttMove) {
+						buffer[n++] = buffer[0];
+						buffer[0] = square;
+					} else {
+						buffer[n++] = square;
+					}
+				}
+			}
+
+			int alphaOrig = alpha;
+			int best = -INFINITY;
+			int bestSquare = ReversiTranspositionTable.NO_MOVE;
+			for (int i = 0; i < n; i++) {
+				int square = buffer[i];
+				long flips = ReversiBitboard.flips(own, opp, square);
+				int score = -negamax(opp ^ flips, own | flips | (1L << square), childHash(hash, color, square, flips),
+						oppColor, depth - 1, -beta, -alpha, ply + 1);
+				if (score > best) {
+					best = score;
+					bestSquare = square;
+					if (score > alpha) {
+						alpha = score;
+						if (alpha >= beta) {
+							break;
+						}
+					}
+				}
+			}
+			if (search.aborted) {
+				return 0;
+			}
+
+			int bound;
+			if (best <= alphaOrig) {
+				bound = ReversiTranspositionTable.UPPER;
+			} else if (best >= beta) {
+				bound = ReversiTranspositionTable.LOWER;
+			} else {
+				bound = ReversiTranspositionTable.EXACT;
+			}
+			table.store(hash, depth, bound, bestSquare, best);
+			return best;
+		}
+
+		/**
+		 * Sorts moves so the table move comes first, then the ones that leave the
+		 * opponent the fewest replies
+		 *
+		 * @param own    : bitboard of the player to move
+		 * @param opp    : bitboard of the opponent
+		 * @param moves  : bitboard of legal moves
+		 * @param first  : square to search first, or NO_MOVE
+		 * @param buffer : array the ordered squares are written to
+		 * @param keys   : scratch array for the sort keys
+		 * @return the number of moves
+		 */
+		private int orderMoves(long own, long opp, long moves, int first, int[] buffer, int[] keys) {
+			int n = 0;
+			while (moves != 0) {
+				int square = Long.numberOfTrailingZeros(moves);
+				moves &= moves - 1;
+				int key = moveKey(own, opp, square, first);
+
+				// Insertion sort, the lists are short
+				int i = n++;
+				while (i > 0 && keys[i - 1] > key) {
+					keys[i] = keys[i - 1];
+					buffer[i] = buffer[i - 1];
+					i--;
+				}
+				keys[i] = key;
+				buffer[i] = square;
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * Scores a position from the square values and the mobility of both players
+	 *
+	 * @param own   : bitboard of the player to move
+	 * @param opp   : bitboard of the opponent
+	 * @param moves : legal moves of the player to move
+	 * @return score of the position for the player to move
+	 */
+	private static int evaluate(long own, long opp, long moves) {
+		int score = 0;
+		for (long bits = own; bits != 0; bits &= bits - 1) {
+			score += SQUARE_VALUES[Long.numberOfTrailingZeros(bits)];
+		}
+		for (long bits = opp; bits != 0; bits &= bits - 1) {
+			score -= SQUARE_VALUES[Long.numberOfTrailingZeros(bits)];
+		}
+		int mobility = ReversiBitboard.count(moves) - ReversiBitboard.count(ReversiBitboard.legalMoves(opp, own));
+		return score + 8 * mobility;
+	}
+
+	/**
+	 * Scores a finished game, any win is worth more than any evaluation
+	 *
+	 * @param own : bitboard of the player to move
+	 * @param opp : bitboard of the opponent
+	 * @return score of the game for the player to move
+	 */
+	private static int finalScore(long own, long opp) {
+		int diff = ReversiBitboard.count(own) - ReversiBitboard.count(opp);
+		if (diff > 0) {
+			return WIN + diff;
+		} else if (diff < 0) {
+			return -WIN + diff;
+		}
+		return 0;
+	}
+
+	@Override
+	public void stop() {
+		Search search = current;
+		if (search != null) {
+			search.aborted = true;
+		}
+	}
+
+	@Override
+	public void setProgressListener(BiConsumer<Integer, Integer> progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Shuts down the pool of the parallel search. The strategy can still be
+	 * used, a new pool is made if it searches in parallel again.
+	 */
+	@Override
+	public synchronized void close() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Setter for the time budget per move
+	 * @param timeBudget : milliseconds the search may use for one move
+	 */
+	public void setTimeBudget(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	/**
+	 * Getter for the time budget per move
+	 * @return milliseconds the search may use for one move
+	 */
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Setter for the deepest iteration the search will run
+	 * @param maxDepth : maximum search depth in plies
+	 */
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Setter for the number of threads searching each move
+	 * @param threads : number of threads, 1 searches on the calling thread only
+	 */
+	public synchronized void setThreads(int threads) {
+		if (threads != this.threads && pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Getter for the number of threads searching each move
+	 * @return number of threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets a seed for tie breaking and makes the search deterministic. The
+	 * time budget is then ignored, so set a maximum depth as well.
+	 *
+	 * @param seed : seed for tie breaking
+	 */
+	public void setSeed(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Setter for the evaluator used at the leaves of the search
+	 * @param evaluator : pattern evaluator, or null for the square values and mobility
+	 */
+	public void setEvaluator(ReversiPatternEvaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Getter for the evaluator used at the leaves of the search
+	 * @return pattern evaluator, or null for the square values and mobility
+	 */
+	public ReversiPatternEvaluator getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Getter for the transposition table kept between moves
+	 * @return the transposition table
+	 */
+	public ReversiTranspositionTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Getter for the number of nodes searched for the last move
+	 * @return nodes searched
+	 */
+	public long getLastNodes() {
+		return lastNodes;
+	}
+
+	/**
+	 * Getter for the deepest iteration completed for the last move
+	 * @return depth in plies
+	 */
+	public int getLastDepth() {
+		return lastDepth;
+	}
+
+	/**
+	 * Getter for the score of the last completed iteration
+	 * @return score for the player that moved
+	 */
+	public int getLastScore() {
+		return lastScore;
+	}
+
+	/**
+	 * Getter for the time used by the last move
+	 * @return milliseconds used
+	 */
+	public long getLastTimeMillis() {
+		return lastTime / 1000000L;
+	}
+
+	/**
+	 * Getter for the search speed of the last move
+	 * @return nodes searched per second
+	 */
+	public long getNodesPerSecond() {
+		return lastTime > 0 ? lastNodes * 1000000000L / lastTime : 0;
+	}
+
+	@Override
+	public String toString() {
+		return threads > 1 ? "Alpha-Beta x" + threads : "Alpha-Beta";
+	}
+}
@@ -1,12 +1,6 @@
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.util.function.Consumer;
 
-import javafx.application.Platform;
-
 /**
  * 
  * @author Ryan Luu and Denny Ho
@@ -16,25 +10,88 @@ import javafx.application.Platform;
 public class Client {
 	private int port;
 	private String ip;
-	private Consumer<ReversiBoard> board;
+	private Consumer<ReversiMessage> board;
+	private boolean legacy;
+	private long heartbeatMillis = ReversiConnection.DEFAULT_HEARTBEAT_MILLIS;
+	private long timeoutMillis = ReversiConnection.DEFAULT_TIMEOUT_MILLIS;
+	private long reconnectMillis = ReversiConnection.DEFAULT_RECONNECT_MILLIS;
+	private Consumer<Exception> lost;
+	private volatile boolean ended;
 
-	Socket serverConnection;
-	ObjectOutputStream output;
-	ObjectInputStream input;
+	ReversiConnection serverConnection;
 
 	/**
 	 * Constructs the Client
 	 * 
 	 * @param ip : the ip address 
 	 * @param port  : connection port
-	 * @param board : a lambda meant to be called every time a board is received
+	 * @param board : a lambda meant to be called every time a move or board is received
 	 */
-	public Client(String ip, int port, Consumer<ReversiBoard> board) {
+	public Client(String ip, int port, Consumer<ReversiMessage> board) {
 		this.ip = ip;
 		this.port = port;
 		this.board = board;
 	}
 
+	/**
+	 * Sets whether boards are sent with Java serialization instead of the
+	 * binary protocol. Must be called before startConnection.
+	 * 
+	 * @param legacy : whether to use Java serialization
+	 */
+	public void setLegacy(boolean legacy) {
+		this.legacy = legacy;
+	}
+
+	/**
+	 * Sets the heartbeat and reconnect timeouts of the connection. Must be
+	 * called before startConnection.
+	 * 
+	 * @param heartbeatMillis : time between heartbeats in milliseconds
+	 * @param timeoutMillis   : time the server may stay silent before the link is
+	 *                        dropped and reconnected
+	 * @param reconnectMillis : time to keep trying to reconnect before giving up
+	 */
+	public void setTimeouts(long heartbeatMillis, long timeoutMillis, long reconnectMillis) {
+		this.heartbeatMillis = heartbeatMillis;
+		this.timeoutMillis = timeoutMillis;
+		this.reconnectMillis = reconnectMillis;
+	}
+
+	/**
+	 * Sets a lambda called on the connection thread when the connection is
+	 * lost for good, either failing to open or failing to reconnect
+	 * 
+	 * @param lost : receives the error
+	 */
+	public void setOnLost(Consumer<Exception> lost) {
+		this.lost = lost;
+	}
+
+	/**
+	 * Opens a connection with the configured settings
+	 */
+	private ReversiConnection open() throws IOException {
+		ReversiConnection connection = new ReversiConnection(legacy);
+		connection.setHeartbeat(heartbeatMillis, timeoutMillis);
+		connection.setReconnectTimeout(reconnectMillis);
+		connection.connectPeer(ip, port);
+		return connection;
+	}
+
+	/**
+	 * Reports an error that ended the connection, unless it was closed by endConnection
+	 */
+	private void connectionLost(Exception e) {
+		if (ended) {
+			return;
+		}
+		System.out.println("Connection to the server lost: " + e.getMessage());
+		if (lost != null) {
+			lost.accept(e);
+		}
+	}
+
 	/**
 	 * Starts connection by creating new Thread and connecting to Server.
 	 * 
@@ -45,34 +102,38 @@ public class Client {
 			@Override
 			public void run() {
 				try {
-					serverConnection = new Socket(ip, port);
-					output = new ObjectOutputStream(serverConnection.getOutputStream());
-					input = new ObjectInputStream(serverConnection.getInputStream());
+					serverConnection = open();
 
 					while (true) {
-						ReversiBoard received = (ReversiBoard) input.readObject();
-						board.accept(received);
+						board.accept(serverConnection.receive());
 					}
 
 				} catch (Exception e) {
-
+					connectionLost(e);
 				}
 			}
 		};
 		thread.start();
 	}
 
+	/**
+	 * Closes the connection for good
+	 * 
+	 * @throws IOException : when the socket cannot be closed
+	 */
 	public void endConnection() throws IOException {
+		ended = true;
 		serverConnection.close();
 	}
 
 	/**
-	 * Sends the board to the output stream
+	 * Sends the turn just played to the Server
 	 * 
-	 * @param board : ReversiBoard that had been updated by a move
+	 * @param square   : index of the square played, or ReversiMessage.PASS
+	 * @param position : the position after the move
 	 * @throws IOException : Input/Output steam exception
 	 */
-	public void send(ReversiBoard board) throws IOException {
-		output.writeObject(board);
+	public void send(int square, ReversiPosition position) throws IOException {
+		serverConnection.sendMove(square, position);
 	}
 }
@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * GreedyStrategy finds a legal space that will result in the most captures.
+ * If best location ties in value, a random one of the best is chosen.
+ * 
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class GreedyStrategy implements ReversiStrategy {
+	private Random random;
+
+	/**
+	 * Constructor for GreedyStrategy that breaks ties at random
+	 */
+	public GreedyStrategy() {
+		this.random = new Random();
+	}
+
+	/**
+	 * Constructor for GreedyStrategy that breaks ties with a seeded random
+	 * 
+	 * @param seed : seed for tie breaking
+	 */
+	public GreedyStrategy(long seed) {
+		this.random = new Random(seed);
+	}
+
+	@Override
+	public int chooseMove(long own, long opp, int color) {
+		ArrayList<Integer> maxScoreList = new ArrayList<Integer>();
+		long moves = ReversiBitboard.legalMoves(own, opp);
+		if (moves == 0) {
+			return -1;
+		}
+
+		// Search for best legal moves and add ties to List
+		int maxCount = 0;
+		while (moves != 0) {
+			int square = Long.numberOfTrailingZeros(moves);
+			moves &= moves - 1;
+			int count = ReversiBitboard.count(ReversiBitboard.flips(own, opp, square));
+			if (count > maxCount) {
+				maxCount = count;
+				maxScoreList.clear();
+			}
+			if (count == maxCount) {
+				maxScoreList.add(square);
+			}
+		}
+
+		if (maxScoreList.size() > 1) {
+			Collections.shuffle(maxScoreList, random); // Randomize if there are many MAXES
+		}
+		return maxScoreList.get(0);
+	}
+
+	@Override
+	public int chooseMove(ReversiEngine engine, long[] own, long[] opp, int color) {
+		long[] moves = engine.newBoard();
+		long[] flips = engine.newBoard();
+		engine.legalMoves(own, opp, moves);
+		ArrayList<Integer> maxScoreList = new ArrayList<Integer>();
+		int maxCount = 0;
+		for (int square = ReversiEngine.next(moves, 0); square >= 0; square = ReversiEngine.next(moves, square + 1)) {
+			int count = engine.flips(own, opp, square, flips);
+			if (count > maxCount) {
+				maxCount = count;
+				maxScoreList.clear();
+			}
+			if (count == maxCount) {
+				maxScoreList.add(square);
+			}
+		}
+		if (maxScoreList.isEmpty()) {
+			return -1;
+		}
+		if (maxScoreList.size() > 1) {
+			Collections.shuffle(maxScoreList, random);
+		}
+		return maxScoreList.get(0);
+	}
+
+	@Override
+	public boolean supportsSize(int size) {
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Greedy";
+	}
+}
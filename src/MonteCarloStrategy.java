@@ -0,0 +1,597 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * MonteCarloStrategy chooses moves by Monte Carlo tree search.
+ *
+ * The search grows a tree from the position to move in. Each playout walks
+ * down the tree picking children by UCT, adds the children of the node it
+ * stops at, plays a random game to the end from there and counts the result
+ * in every node on the way back up. The move played is the root move that
+ * was visited most.
+ *
+ * Nodes are not objects: a tree is a pool of parallel primitive arrays
+ * indexed by node number, with the children of a node side by side, and the
+ * pool is reused for every move. Boards are not stored in the tree either,
+ * the walk down replays the moves from the root. Random games run on
+ * ReversiEngine bitboards, on ReversiBitboard for 8x8, so the strategy plays
+ * every board size.
+ *
+ * With more than one thread the search is root parallel: every thread grows
+ * a tree of its own from the same position with its own random numbers, and
+ * the visits of the root moves are added up over all trees. The trees share
+ * nothing while they search, so playouts per second grow with the number of
+ * threads. With a playout limit and a seed the search is deterministic.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class MonteCarloStrategy implements ReversiStrategy {
+	// Weight of exploring little visited moves against playing well scoring ones
+	private static final double EXPLORATION = 1.0;
+	// Random games played between checks of the clock
+	private static final int CHECK_INTERVAL = 16;
+
+	private long timeBudget;
+	private int maxPlayouts;
+	private int threads = 1;
+	private int poolSize = 1 << 19;
+	private Random random;
+	private final Random seeds = new Random();
+	private Tree[] trees = new Tree[0];
+	private ForkJoinPool pool;
+
+	// Search state shared by every thread
+	private volatile long deadline;
+	private volatile BooleanSupplier cancelled = () -> false;
+	private volatile boolean aborted;
+
+	// Results of the last search
+	private long lastPlayouts;
+	private long lastNodes;
+	private long lastTime;
+
+	/**
+	 * Constructor for MonteCarloStrategy with a 100 ms budget per move
+	 */
+	public MonteCarloStrategy() {
+		this(100);
+	}
+
+	/**
+	 * Constructor for MonteCarloStrategy
+	 *
+	 * @param timeBudget : milliseconds the search may use for one move
+	 */
+	public MonteCarloStrategy(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	@Override
+	public int chooseMove(long own, long opp, int color) {
+		return chooseMove(ReversiEngine.forSize(ReversiModel.BOARD_DIMENSION), new long[] { own }, new long[] { opp },
+				color);
+	}
+
+	@Override
+	public int chooseMove(ReversiEngine engine, long[] own, long[] opp, int color) {
+		return chooseMove(engine, own, opp, color, () -> false);
+	}
+
+	@Override
+	public int chooseMove(ReversiEngine engine, long[] own, long[] opp, int color, BooleanSupplier cancelled) {
+		long start = System.nanoTime();
+		deadline = maxPlayouts > 0 ? Long.MAX_VALUE : start + timeBudget * 1000000L;
+		this.cancelled = cancelled;
+		aborted = false;
+		lastPlayouts = 0;
+		lastNodes = 0;
+		lastTime = 0;
+
+		long[] moves = engine.newBoard();
+		engine.legalMoves(own, opp, moves);
+		int count = ReversiEngine.count(moves);
+		if (count <= 1) {
+			return ReversiEngine.next(moves, 0);
+		}
+
+		Tree[] trees = getTrees(engine);
+		Random source = random != null ? random : seeds;
+		for (Tree tree : trees) {
+			tree.state = source.nextLong() | 1;
+		}
+		if (trees.length == 1) {
+			trees[0].search(own, opp, maxPlayouts);
+		} else {
+			searchTrees(trees, own, opp);
+		}
+
+		// Play the root move visited most over all trees
+		int[] visits = new int[engine.getSquares()];
+		for (Tree tree : trees) {
+			tree.addRootVisits(visits);
+			lastPlayouts += tree.playouts;
+			lastNodes += tree.size;
+		}
+		int best = ReversiEngine.next(moves, 0);
+		for (int square = best; square >= 0; square = ReversiEngine.next(moves, square + 1)) {
+			if (visits[square] > visits[best]) {
+				best = square;
+			}
+		}
+		lastTime = System.nanoTime() - start;
+		return best;
+	}
+
+	/**
+	 * Grows every tree at once on the pool
+	 *
+	 * @param trees : trees to grow, one per thread
+	 * @param own   : bitboard of the player to move
+	 * @param opp   : bitboard of the opponent
+	 */
+	private void searchTrees(Tree[] trees, long[] own, long[] opp) {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < trees.length; i++) {
+			final Tree tree = trees[i];
+			// Share the playout limit out so the trees add up to it
+			final int limit = maxPlayouts > 0 ? maxPlayouts / trees.length + (i < maxPlayouts % trees.length ? 1 : 0)
+					: 0;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					tree.search(own, opp, limit);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> future : getPool().invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			aborted = true;
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Gets a tree for each thread on a board size, making new ones when the
+	 * number of threads, the size or the pool size changed
+	 */
+	private synchronized Tree[] getTrees(ReversiEngine engine) {
+		if (trees.length != threads || trees[0].engine != engine || trees[0].capacity != poolSize) {
+			trees = new Tree[threads];
+			for (int i = 0; i < threads; i++) {
+				trees[i] = new Tree(engine, poolSize);
+			}
+		}
+		return trees;
+	}
+
+	/**
+	 * Gets the pool used for parallel search, creating it on first use
+	 */
+	private synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(threads);
+		}
+		return pool;
+	}
+
+	/**
+	 * Tree is the search tree of one thread and the boards it plays on.
+	 *
+	 * Node n has visits[n] playouts through it, of which wins[n] half points
+	 * were won by the player who moved into it. Its children are the nodes
+	 * firstChild[n] up to firstChild[n] + childCount[n], or firstChild[n] is
+	 * -1 if it has none yet. The move into a node is square[n], -1 for a pass.
+	 */
+	private class Tree {
+		private final ReversiEngine engine;
+		private final boolean standard;
+		private final int capacity;
+		private final int[] firstChild;
+		private final short[] childCount;
+		private final short[] square;
+		private final int[] visits;
+		private final int[] wins;
+		private int size;
+
+		private final long[] rootOwn;
+		private final long[] rootOpp;
+		private final long[] own;
+		private final long[] opp;
+		private final long[] moves;
+		private final long[] flips;
+		// Nodes of the current walk down, a pass can follow every move
+		private final int[] path;
+		private long state;
+		private long playouts;
+
+		/**
+		 * Constructor for Tree
+		 *
+		 * @param engine   : engine for the board size
+		 * @param capacity : number of nodes in the pool
+		 */
+		private Tree(ReversiEngine engine, int capacity) {
+			this.engine = engine;
+			this.standard = engine.getSize() == ReversiModel.BOARD_DIMENSION;
+			this.capacity = capacity;
+			firstChild = new int[capacity];
+			childCount = new short[capacity];
+			square = new short[capacity];
+			visits = new int[capacity];
+			wins = new int[capacity];
+			rootOwn = engine.newBoard();
+			rootOpp = engine.newBoard();
+			own = engine.newBoard();
+			opp = engine.newBoard();
+			moves = engine.newBoard();
+			flips = engine.newBoard();
+			path = new int[engine.getSquares() * 2 + 2];
+		}
+
+		/**
+		 * Grows the tree from a new root until the limit, the deadline, a stop
+		 * or a cancel
+		 *
+		 * @param ownRoot : bitboard of the player to move
+		 * @param oppRoot : bitboard of the opponent
+		 * @param limit   : number of playouts to run, 0 to run until the deadline
+		 */
+		private void search(long[] ownRoot, long[] oppRoot, int limit) {
+			System.arraycopy(ownRoot, 0, rootOwn, 0, rootOwn.length);
+			System.arraycopy(oppRoot, 0, rootOpp, 0, rootOpp.length);
+			size = 1;
+			firstChild[0] = -1;
+			visits[0] = 0;
+			wins[0] = 0;
+			playouts = 0;
+			while (!aborted && (limit == 0 || playouts < limit)) {
+				if (playouts % CHECK_INTERVAL == 0 && (System.nanoTime() > deadline || cancelled.getAsBoolean())) {
+					break;
+				}
+				playout();
+				playouts++;
+			}
+		}
+
+		/**
+		 * Walks down the tree from the root, plays a random game from where it
+		 * stops and counts the result in every node of the walk
+		 */
+		private void playout() {
+			long[] a = own;
+			long[] b = opp;
+			System.arraycopy(rootOwn, 0, a, 0, a.length);
+			System.arraycopy(rootOpp, 0, b, 0, b.length);
+			int node = 0;
+			int length = 0;
+			path[length++] = 0;
+			while (true) {
+				// A new node gets a random game of its own before its children are added
+				if (firstChild[node] < 0 && (node != 0 && visits[node] == 0 || !expand(node, a, b))) {
+					break;
+				}
+				node = select(node);
+				int move = square[node];
+				if (move >= 0) {
+					engine.flips(a, b, move, flips);
+					engine.play(a, b, move, flips);
+				}
+				long[] swap = a;
+				a = b;
+				b = swap;
+				path[length++] = node;
+			}
+
+			// Half points for the player who moved into each node
+			int points = 2 - (standard ? randomGame(a[0], b[0]) : randomGame(a, b));
+			for (int i = length - 1; i >= 0; i--) {
+				visits[path[i]]++;
+				wins[path[i]] += points;
+				points = 2 - points;
+			}
+		}
+
+		/**
+		 * Adds a child for every legal move of a node, or a single pass child
+		 *
+		 * @param node : node to expand
+		 * @param a    : bitboard of the player to move at the node
+		 * @param b    : bitboard of the opponent
+		 * @return false if the game is over at the node or the pool is full
+		 */
+		private boolean expand(int node, long[] a, long[] b) {
+			engine.legalMoves(a, b, moves);
+			int count = ReversiEngine.count(moves);
+			if (count == 0) {
+				engine.legalMoves(b, a, moves);
+				if (ReversiEngine.count(moves) == 0) {
+					return false;
+				}
+				ReversiEngine.clear(moves);
+				count = 1;
+			}
+			if (size + count > capacity) {
+				return false;
+			}
+			firstChild[node] = size;
+			childCount[node] = (short) count;
+			int move = ReversiEngine.next(moves, 0);
+			for (int i = 0; i < count; i++) {
+				firstChild[size] = -1;
+				square[size] = (short) move;
+				visits[size] = 0;
+				wins[size] = 0;
+				size++;
+				if (move >= 0) {
+					move = ReversiEngine.next(moves, move + 1);
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Picks the child of a node with the highest upper confidence bound,
+		 * or the first one that was never visited
+		 *
+		 * @param node : expanded node
+		 * @return the chosen child
+		 */
+		private int select(int node) {
+			int first = firstChild[node];
+			int end = first + childCount[node];
+			double logVisits = Math.log(visits[node]);
+			int best = first;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for (int child = first; child < end; child++) {
+				int n = visits[child];
+				if (n == 0) {
+					return child;
+				}
+				double value = wins[child] / (2.0 * n) + EXPLORATION * Math.sqrt(logVisits / n);
+				if (value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Plays random moves on an 8x8 board until the game is over
+		 *
+		 * @param own : bitboard of the player to move
+		 * @param opp : bitboard of the opponent
+		 * @return half points for the player to move: 2 for a win, 1 for a draw
+		 */
+		private int randomGame(long own, long opp) {
+			boolean swapped = false;
+			while (true) {
+				long moves = ReversiBitboard.legalMoves(own, opp);
+				if (moves == 0) {
+					if (ReversiBitboard.legalMoves(opp, own) == 0) {
+						break;
+					}
+				} else {
+					for (int n = pick(Long.bitCount(moves)); n > 0; n--) {
+						moves &= moves - 1;
+					}
+					int move = Long.numberOfTrailingZeros(moves);
+					long flips = ReversiBitboard.flips(own, opp, move);
+					own |= flips | 1L << move;
+					opp &= ~flips;
+				}
+				long swap = own;
+				own = opp;
+				opp = swap;
+				swapped = !swapped;
+			}
+			int diff = Long.bitCount(own) - Long.bitCount(opp);
+			return points(swapped ? -diff : diff);
+		}
+
+		/**
+		 * Plays random moves on a board of any size until the game is over,
+		 * changing the boards it is given
+		 *
+		 * @param own : bitboard of the player to move
+		 * @param opp : bitboard of the opponent
+		 * @return half points for the player to move: 2 for a win, 1 for a draw
+		 */
+		private int randomGame(long[] own, long[] opp) {
+			boolean swapped = false;
+			while (true) {
+				engine.legalMoves(own, opp, moves);
+				int count = ReversiEngine.count(moves);
+				if (count == 0) {
+					engine.legalMoves(opp, own, moves);
+					if (ReversiEngine.count(moves) == 0) {
+						break;
+					}
+				} else {
+					int move = ReversiEngine.nth(moves, pick(count));
+					engine.flips(own, opp, move, flips);
+					engine.play(own, opp, move, flips);
+				}
+				long[] swap = own;
+				own = opp;
+				opp = swap;
+				swapped = !swapped;
+			}
+			int diff = ReversiEngine.count(own) - ReversiEngine.count(opp);
+			return points(swapped ? -diff : diff);
+		}
+
+		/**
+		 * Picks a random number below a bound with a xorshift generator
+		 *
+		 * @param bound : number of choices
+		 * @return a number from 0 to bound - 1
+		 */
+		private int pick(int bound) {
+			state ^= state >>> 12;
+			state ^= state << 25;
+			state ^= state >>> 27;
+			return (int) (((state * 0x2545F4914F6CDD1DL >>> 32) * bound) >>> 32);
+		}
+
+		/**
+		 * Adds the visits of each root move to a count by square
+		 *
+		 * @param counts : visits by square
+		 */
+		private void addRootVisits(int[] counts) {
+			int first = firstChild[0];
+			if (first < 0) {
+				return;
+			}
+			for (int child = first; child < first + childCount[0]; child++) {
+				if (square[child] >= 0) {
+					counts[square[child]] += visits[child];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the half points of a result from its disc difference
+	 */
+	private static int points(int diff) {
+		return diff > 0 ? 2 : diff == 0 ? 1 : 0;
+	}
+
+	@Override
+	public boolean supportsSize(int size) {
+		return ReversiEngine.isValidSize(size);
+	}
+
+	@Override
+	public void stop() {
+		aborted = true;
+	}
+
+	/**
+	 * Shuts down the pool of the parallel search. The strategy can still be
+	 * used, a new pool is made if it searches in parallel again.
+	 */
+	@Override
+	public synchronized void close() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Setter for the time budget per move
+	 * @param timeBudget : milliseconds the search may use for one move
+	 */
+	public void setTimeBudget(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	/**
+	 * Getter for the time budget per move
+	 * @return milliseconds the search may use for one move
+	 */
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Setter for a fixed number of playouts per move. The time budget is then
+	 * ignored.
+	 * @param maxPlayouts : playouts per move over all threads, 0 to use the time budget
+	 */
+	public void setMaxPlayouts(int maxPlayouts) {
+		this.maxPlayouts = maxPlayouts;
+	}
+
+	/**
+	 * Setter for the number of nodes each tree may grow to. A full tree stops
+	 * growing but the search goes on playing random games from its leaves.
+	 * @param poolSize : nodes per tree
+	 */
+	public synchronized void setPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * Setter for the number of threads searching each move
+	 * @param threads : number of threads, 1 searches on the calling thread only
+	 */
+	public synchronized void setThreads(int threads) {
+		if (threads != this.threads && pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Getter for the number of threads searching each move
+	 * @return number of threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets a seed for the random games. With a playout limit the search is
+	 * then deterministic.
+	 *
+	 * @param seed : seed for the random games
+	 */
+	public void setSeed(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Getter for the number of random games played for the last move
+	 * @return playouts over all threads
+	 */
+	public long getLastPlayouts() {
+		return lastPlayouts;
+	}
+
+	/**
+	 * Getter for the size of the trees grown for the last move
+	 * @return nodes over all threads
+	 */
+	public long getLastNodes() {
+		return lastNodes;
+	}
+
+	/**
+	 * Getter for the time used by the last move
+	 * @return milliseconds used
+	 */
+	public long getLastTimeMillis() {
+		return lastTime / 1000000L;
+	}
+
+	/**
+	 * Getter for the search speed of the last move
+	 * @return random games played per second
+	 */
+	public long getPlayoutsPerSecond() {
+		return lastTime > 0 ? lastPlayouts * 1000000000L / lastTime : 0;
+	}
+
+	@Override
+	public String toString() {
+		return threads > 1 ? "Monte Carlo x" + threads : "Monte Carlo";
+	}
+}
@@ -6,6 +6,7 @@ import javafx.geometry.Pos;
 import javafx.scene.Group;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.TextField;
@@ -33,6 +34,7 @@ public class NetworkSetup extends Stage {
 	private boolean isHuman;
 	private String server;
 	private String port;
+	private boolean isLegacy;
 
 	public NetworkSetup() {
 		makeSetupBox();
@@ -46,7 +48,7 @@ public class NetworkSetup extends Stage {
 		Stage window = new Stage();
 		window.initModality(Modality.APPLICATION_MODAL);
 		window.setTitle("Network Setup");
-		window.setHeight(250);
+		window.setHeight(280);
 		window.setWidth(500);
 
 		VBox root = new VBox();
@@ -85,6 +87,9 @@ public class NetworkSetup extends Stage {
 		thirdRow.getChildren().addAll(serverLabel, serverTextField, portLabel, portTextField);
 		thirdRow.setAlignment(Pos.BOTTOM_LEFT);
 
+		// Legacy Option (Java Serialization for older peers)
+		CheckBox legacyBox = new CheckBox("Legacy serialization");
+
 		// Fourth Row Options (Okay and Close)
 		HBox fourthRow = new HBox();
 		fourthRow.setSpacing(10);
@@ -107,6 +112,7 @@ public class NetworkSetup extends Stage {
 			else
 				this.server = serverTextField.getText();
 			this.port = portTextField.getText();
+			this.isLegacy = legacyBox.isSelected();
 			window.close();
 
 		});
@@ -114,7 +120,7 @@ public class NetworkSetup extends Stage {
 		closeButton.setOnAction(e -> window.close());
 		fourthRow.getChildren().addAll(okButton, closeButton);
 
-		root.getChildren().addAll(firstRow, secondRow, thirdRow, fourthRow);
+		root.getChildren().addAll(firstRow, secondRow, thirdRow, legacyBox, fourthRow);
 		Scene scene = new Scene(root);
 		window.setScene(scene);
 		window.showAndWait();
@@ -145,6 +151,13 @@ public class NetworkSetup extends Stage {
 		}
 	}
 
+	/**
+	 * @return: True if boards are sent with Java serialization. False for the binary protocol
+	 */
+	public boolean getLegacySerialization() {
+		return isLegacy;
+	}
+
 	/**
 	 * @return String Representation of Server
 	 */
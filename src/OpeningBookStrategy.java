@@ -0,0 +1,103 @@
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * OpeningBookStrategy plays from an opening book while the position is in
+ * it, and asks another strategy for a move once the game leaves the book.
+ * The book only holds 8x8 positions, other sizes go to the other strategy.
+ * 
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class OpeningBookStrategy implements ReversiStrategy {
+	private final ReversiOpeningBook book;
+	private final ReversiStrategy strategy;
+	private final Random random;
+
+	/**
+	 * Constructor for OpeningBookStrategy
+	 * 
+	 * @param book     : opening book to play from
+	 * @param strategy : strategy for positions that are not in the book
+	 */
+	public OpeningBookStrategy(ReversiOpeningBook book, ReversiStrategy strategy) {
+		this(book, strategy, new Random());
+	}
+
+	/**
+	 * Constructor for OpeningBookStrategy that picks book replies the same way
+	 * every time
+	 * 
+	 * @param book     : opening book to play from
+	 * @param strategy : strategy for positions that are not in the book
+	 * @param seed     : seed for picking between book replies
+	 */
+	public OpeningBookStrategy(ReversiOpeningBook book, ReversiStrategy strategy, long seed) {
+		this(book, strategy, new Random(seed));
+	}
+
+	private OpeningBookStrategy(ReversiOpeningBook book, ReversiStrategy strategy, Random random) {
+		this.book = book;
+		this.strategy = strategy;
+		this.random = random;
+	}
+
+	@Override
+	public int chooseMove(long own, long opp, int color) {
+		int square = book.chooseMove(own, opp, color, random);
+		return square >= 0 ? square : strategy.chooseMove(own, opp, color);
+	}
+
+	@Override
+	public int chooseMove(ReversiEngine engine, long[] own, long[] opp, int color) {
+		if (engine.getSize() == ReversiModel.BOARD_DIMENSION) {
+			return chooseMove(own[0], opp[0], color);
+		}
+		return strategy.chooseMove(engine, own, opp, color);
+	}
+
+	@Override
+	public int chooseMove(ReversiEngine engine, long[] own, long[] opp, int color, BooleanSupplier cancelled) {
+		if (engine.getSize() == ReversiModel.BOARD_DIMENSION) {
+			int square = book.chooseMove(own[0], opp[0], color, random);
+			if (square >= 0) {
+				return square;
+			}
+		}
+		return strategy.chooseMove(engine, own, opp, color, cancelled);
+	}
+
+	@Override
+	public boolean supportsSize(int size) {
+		return strategy.supportsSize(size);
+	}
+
+	@Override
+	public void stop() {
+		strategy.stop();
+	}
+
+	@Override
+	public void close() {
+		strategy.close();
+	}
+
+	@Override
+	public void setProgressListener(BiConsumer<Integer, Integer> progress) {
+		strategy.setProgressListener(progress);
+	}
+
+	/**
+	 * Getter for the strategy used out of the book
+	 * @return strategy for positions that are not in the book
+	 */
+	public ReversiStrategy getStrategy() {
+		return strategy;
+	}
+
+	@Override
+	public String toString() {
+		return strategy + " + Book";
+	}
+}
@@ -0,0 +1,60 @@
+import java.util.Random;
+
+/**
+ * RandomStrategy plays any legal move, each with the same chance.
+ *
+ * It is the weakest player and is used as a baseline in tournaments and to
+ * play varied openings.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class RandomStrategy implements ReversiStrategy {
+	private Random random;
+
+	/**
+	 * Constructor for RandomStrategy
+	 */
+	public RandomStrategy() {
+		this.random = new Random();
+	}
+
+	/**
+	 * Constructor for RandomStrategy with a seeded random
+	 *
+	 * @param seed : seed for choosing moves
+	 */
+	public RandomStrategy(long seed) {
+		this.random = new Random(seed);
+	}
+
+	@Override
+	public int chooseMove(long own, long opp, int color) {
+		long moves = ReversiBitboard.legalMoves(own, opp);
+		if (moves == 0) {
+			return -1;
+		}
+		for (int skip = random.nextInt(ReversiBitboard.count(moves)); skip > 0; skip--) {
+			moves &= moves - 1;
+		}
+		return Long.numberOfTrailingZeros(moves);
+	}
+
+	@Override
+	public int chooseMove(ReversiEngine engine, long[] own, long[] opp, int color) {
+		long[] moves = engine.newBoard();
+		engine.legalMoves(own, opp, moves);
+		int count = ReversiEngine.count(moves);
+		return count == 0 ? -1 : ReversiEngine.nth(moves, random.nextInt(count));
+	}
+
+	@Override
+	public boolean supportsSize(int size) {
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Random";
+	}
+}
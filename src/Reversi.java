@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 import javafx.application.Application;
 
 /**
@@ -7,6 +9,8 @@ import javafx.application.Application;
  * pieces by surrounding their opponents pieces in a straight line.
  * 
  * This class instantiates the model, view, and controller and runs the game.
+ * Run with "tournament" as the first argument to play computer players
+ * against each other without a GUI, see ReversiTournament.
  * 
  * @author DennyHo and Ryan Luu
  *
@@ -17,7 +21,11 @@ public class Reversi {
 	 * 
 	 * @param args : user input
 	 */
-	public static void main(String[] args){
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("tournament")) {
+			ReversiTournament.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
 		Application.launch(ReversiView.class, args);
 	}
 }
\ No newline at end of file
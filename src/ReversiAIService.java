@@ -0,0 +1,364 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * ReversiAIService chooses computer moves on a thread of its own, so the
+ * thread that owns the model never waits for a search.
+ *
+ * The board is read on the calling thread and handed to the search as an
+ * immutable ReversiPosition. The chosen square comes back as a CompletableFuture completed
+ * through the callback executor, Platform::runLater in the GUI, so the move
+ * is played on the thread that owns the model. Progress, the depth and the
+ * best move so far, is passed on the same way but at most once per interval
+ * however fast the search deepens.
+ *
+ * Cancelling stops the running search and drops its result, even one that
+ * was already found but not yet delivered. Starting a search cancels the
+ * one before it.
+ *
+ * Pondering searches on the opponent's time. After the computer moves, the
+ * opponent's likely replies are predicted and the computer's answer to each
+ * is searched in turn. When the opponent's move arrives and one of them
+ * was predicted, the answer found, or still being searched, is used as the
+ * move; otherwise pondering is stopped and a search starts as usual. Every
+ * other answer is cancelled either way, so the next search never waits for
+ * one. An alpha-beta search keeps what it learned in its transposition table.
+ * The hits, misses and search time saved are counted.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiAIService {
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Reversi AI");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final Executor callbacks;
+	private final long progressNanos;
+	private volatile BiConsumer<Integer, Integer> progress;
+
+	// The search running or waiting to run, and the controller it searches with
+	private CompletableFuture<Integer> current;
+	private ReversiController searching;
+
+	// Replies searched on the opponent's time, or null when not pondering
+	private Ponder pondering;
+	private int ponderHits;
+	private int ponderMisses;
+	private long ponderSavedNanos;
+	private volatile long lastSavedNanos;
+
+	// Most replies to predict and search while pondering
+	private static final int PONDER_REPLIES = 4;
+
+	/**
+	 * Ponder holds the answers searched for the predicted replies of one
+	 * position, by the position after each reply. Answers are only added
+	 * while pondering goes on, and stopping cancels them, both under the
+	 * ponder's lock, so no answer is added after the stop and missed by it.
+	 */
+	private static class Ponder {
+		private final ReversiController controller;
+		private final ReversiStrategy strategy;
+		private final int color;
+		private final Map<ReversiPosition, Answer> answers = new HashMap<ReversiPosition, Answer>();
+		private boolean stopped;
+
+		private Ponder(ReversiController controller, int color) {
+			this.controller = controller;
+			this.strategy = controller.getStrategy();
+			this.color = color;
+		}
+	}
+
+	/**
+	 * Answer is the search for the computer's answer to one predicted reply
+	 */
+	private static class Answer {
+		private final CompletableFuture<Integer> search = new CompletableFuture<Integer>();
+		private final long start = System.nanoTime();
+		private volatile long end = Long.MAX_VALUE;
+		private volatile boolean cancelled;
+	}
+
+	/**
+	 * Constructor for ReversiAIService
+	 *
+	 * @param callbacks      : executor results and progress are delivered on
+	 * @param progressMillis : shortest time between two progress updates
+	 */
+	public ReversiAIService(Executor callbacks, long progressMillis) {
+		this.callbacks = callbacks;
+		this.progressNanos = progressMillis * 1000000L;
+	}
+
+	/**
+	 * Setter for the listener told the progress of searches
+	 *
+	 * @param progress : receives the depth and the best square so far, or null for none
+	 */
+	public void setProgressListener(BiConsumer<Integer, Integer> progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Starts choosing a move, cancelling any search still running
+	 *
+	 * @param controller : controller whose strategy and endgame solver choose the move
+	 * @param position   : the position, with the computer to move
+	 * @param color      : color of the computer
+	 * @return the square to play, or -1 to pass, completed on the callback
+	 *         executor, or cancelled if the search is cancelled
+	 */
+	public synchronized CompletableFuture<Integer> chooseMove(ReversiController controller, ReversiPosition position,
+			int color) {
+		Answer answer = takeAnswer(controller, position, color);
+		cancel();
+		lastSavedNanos = 0;
+		CompletableFuture<Integer> search;
+		if (answer != null) {
+			// Time the answer was searched for before it was needed
+			long hit = System.nanoTime();
+			search = answer.search.whenComplete((square, error) -> lastSavedNanos = Math.min(answer.end, hit) - answer.start);
+			CompletableFuture<Integer> taken = search;
+			taken.whenComplete((square, error) -> {
+				if (taken.isCancelled()) {
+					answer.cancelled = true;
+				}
+			});
+		} else {
+			search = new CompletableFuture<Integer>();
+			CompletableFuture<Integer> queued = search;
+			executor.execute(() -> run(queued, controller, position, color));
+		}
+		current = search;
+		searching = controller;
+
+		// Hand the result over only if nothing cancelled it in the meantime
+		CompletableFuture<Integer> result = new CompletableFuture<Integer>();
+		search.whenCompleteAsync((square, error) -> {
+			if (error != null) {
+				result.completeExceptionally(error);
+			} else if (finish(search)) {
+				result.complete(square);
+			} else {
+				result.cancel(false);
+			}
+		}, callbacks);
+		return result;
+	}
+
+	/**
+	 * Starts searching the computer's answers to the opponent's likely
+	 * replies, cancelling any search still running. Nothing is played, the
+	 * answers wait for chooseMove.
+	 *
+	 * @param controller : controller whose strategy and endgame solver search the answers
+	 * @param position   : the position, with the opponent to move
+	 * @param color      : color of the computer
+	 */
+	public synchronized void ponder(ReversiController controller, ReversiPosition position, int color) {
+		cancel();
+		Ponder ponder = new Ponder(controller, color);
+		pondering = ponder;
+		executor.execute(() -> runPonder(ponder, position));
+	}
+
+	/**
+	 * Searches the answers to the predicted replies on the AI thread, one at
+	 * a time, until they are all searched or pondering stops
+	 */
+	private void runPonder(Ponder ponder, ReversiPosition position) {
+		synchronized (ponder) {
+			if (ponder.stopped) {
+				return;
+			}
+		}
+		for (ReversiPosition reply : ponder.controller.predictReplies(position, PONDER_REPLIES)) {
+			Answer answer = new Answer();
+			synchronized (ponder) {
+				if (ponder.stopped) {
+					return;
+				}
+				ponder.answers.put(reply, answer);
+			}
+			// Every answer added is completed, cancelled ones with the move found so far
+			try {
+				int square = ponder.controller.chooseMove(reply, ponder.color, () -> answer.cancelled);
+				answer.end = System.nanoTime();
+				answer.search.complete(square);
+			} catch (RuntimeException e) {
+				answer.search.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Takes the pondered answer to a position and stops pondering, counting
+	 * a hit if there was one and a miss if not
+	 *
+	 * @return the answer, or null if the position was not pondered
+	 */
+	private Answer takeAnswer(ReversiController controller, ReversiPosition position, int color) {
+		Ponder ponder = pondering;
+		if (ponder == null) {
+			return null;
+		}
+		pondering = null;
+		Answer answer = null;
+		if (ponder.controller == controller && ponder.strategy == controller.getStrategy() && ponder.color == color) {
+			answer = stopPondering(ponder, position);
+		} else {
+			stopPondering(ponder, null);
+		}
+		if (answer != null) {
+			ponderHits++;
+		} else {
+			ponderMisses++;
+		}
+		return answer;
+	}
+
+	/**
+	 * Stops pondering and cancels the search of every answer but one
+	 *
+	 * @param ponder : the pondering to stop
+	 * @param keep   : position whose answer goes on being searched, or null for none
+	 * @return the answer kept, or null if that position was not pondered
+	 */
+	private static Answer stopPondering(Ponder ponder, ReversiPosition keep) {
+		synchronized (ponder) {
+			ponder.stopped = true;
+			Answer kept = keep != null ? ponder.answers.get(keep) : null;
+			for (Answer answer : ponder.answers.values()) {
+				if (answer != kept) {
+					answer.cancelled = true;
+				}
+			}
+			return kept;
+		}
+	}
+
+	/**
+	 * Runs one search on the AI thread
+	 */
+	private void run(CompletableFuture<Integer> search, ReversiController controller, ReversiPosition position,
+			int color) {
+		if (search.isDone()) {
+			return;
+		}
+		BiConsumer<Integer, Integer> listener = progress;
+		ReversiStrategy strategy = controller.getStrategy();
+		if (listener != null) {
+			long[] last = { System.nanoTime() - progressNanos };
+			strategy.setProgressListener((depth, square) -> {
+				long now = System.nanoTime();
+				if (now - last[0] >= progressNanos) {
+					last[0] = now;
+					callbacks.execute(() -> {
+						if (!search.isDone()) {
+							listener.accept(depth, square);
+						}
+					});
+				}
+			});
+		}
+		try {
+			search.complete(controller.chooseMove(position, color, search::isDone));
+		} catch (RuntimeException e) {
+			search.completeExceptionally(e);
+		} finally {
+			strategy.setProgressListener(null);
+		}
+	}
+
+	/**
+	 * Clears a search that finished
+	 *
+	 * @return whether the search was still the current one
+	 */
+	private synchronized boolean finish(CompletableFuture<Integer> search) {
+		if (current != search) {
+			return false;
+		}
+		current = null;
+		searching = null;
+		ponderSavedNanos += lastSavedNanos;
+		return true;
+	}
+
+	/**
+	 * Stops the running search, its move is never delivered
+	 */
+	public synchronized void cancel() {
+		if (current != null) {
+			current.cancel(false);
+			searching.stop();
+			current = null;
+			searching = null;
+		}
+		if (pondering != null) {
+			stopPondering(pondering, null);
+			pondering = null;
+		}
+	}
+
+	/**
+	 * Closes a strategy once every search started so far has finished, so a
+	 * strategy that was just replaced is never closed under its own search
+	 *
+	 * @param strategy : strategy to close
+	 */
+	public void closeAfterSearches(ReversiStrategy strategy) {
+		executor.execute(strategy::close);
+	}
+
+	/**
+	 * Getter for the number of opponent moves that had been pondered
+	 * @return pondering hits
+	 */
+	public synchronized int getPonderHits() {
+		return ponderHits;
+	}
+
+	/**
+	 * Getter for the number of opponent moves that had not been pondered
+	 * @return pondering misses
+	 */
+	public synchronized int getPonderMisses() {
+		return ponderMisses;
+	}
+
+	/**
+	 * Getter for the search time pondering saved over every move
+	 * @return milliseconds saved
+	 */
+	public synchronized long getPonderSavedMillis() {
+		return ponderSavedNanos / 1000000L;
+	}
+
+	/**
+	 * Getter for the search time pondering saved on the last move chosen
+	 * @return milliseconds saved, 0 if its reply was not pondered
+	 */
+	public long getLastSavedMillis() {
+		return lastSavedNanos / 1000000L;
+	}
+
+	/**
+	 * Checks whether an error only means the search was cancelled
+	 *
+	 * @param error : error a future completed with
+	 * @return whether it is a cancellation
+	 */
+	public static boolean isCancellation(Throwable error) {
+		return error instanceof CancellationException || error.getCause() instanceof CancellationException;
+	}
+}
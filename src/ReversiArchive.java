@@ -0,0 +1,344 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * ReversiArchive stores finished games in one memory-mapped file.
+ *
+ * The file starts with a 64 byte header holding the magic number, the format
+ * version and the number of games. Each game after it is a 64 byte record:
+ * the number of moves, the White and Black scores, a reserved byte and one
+ * byte per move with the square played. Passes are not stored since a player
+ * only passes when they have no legal move. Game N is at a fixed offset, so
+ * it is read straight from the mapped file, and the position after any move
+ * of it is found by replaying at most 60 moves.
+ *
+ * The file is mapped in chunks and grows a chunk at a time as games are
+ * appended. Reads take no lock, so many threads can read at once. Games are
+ * validated when appended, so every stored game can be replayed.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiArchive implements AutoCloseable {
+	private static final int MAGIC = 0x52564131;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int RECORD_SIZE = 64;
+	private static final int MAX_MOVES = RECORD_SIZE - 4;
+	private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+	private static final int GAMES_PER_CHUNK = CHUNK_SIZE / RECORD_SIZE;
+
+	private final FileChannel channel;
+	private final boolean writable;
+	private final MappedByteBuffer header;
+	private final List<MappedByteBuffer> chunks = new CopyOnWriteArrayList<MappedByteBuffer>();
+	private volatile long games;
+
+	private ReversiArchive(FileChannel channel, boolean writable) throws IOException {
+		this.channel = channel;
+		this.writable = writable;
+		FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+		if (channel.size() == 0) {
+			if (!writable) {
+				throw new IOException("Empty archive");
+			}
+			header = channel.map(mode, 0, HEADER_SIZE);
+			header.putInt(0, MAGIC);
+			header.putInt(4, VERSION);
+			header.putLong(8, 0);
+		} else {
+			header = channel.map(mode, 0, HEADER_SIZE);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException("Not a Reversi archive");
+			}
+		}
+		games = header.getLong(8);
+		if (HEADER_SIZE + games * RECORD_SIZE > channel.size()) {
+			throw new IOException("Archive is shorter than its game count");
+		}
+	}
+
+	/**
+	 * Opens an archive for appending and reading, creating it if needed
+	 *
+	 * @param path : path of the archive file
+	 * @return the archive
+	 * @throws IOException : when the file cannot be opened or is not an archive
+	 */
+	public static ReversiArchive open(Path path) throws IOException {
+		return new ReversiArchive(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE), true);
+	}
+
+	/**
+	 * Opens an archive for reading only
+	 *
+	 * @param path : path of the archive file
+	 * @return the archive
+	 * @throws IOException : when the file cannot be opened or is not an archive
+	 */
+	public static ReversiArchive openReadOnly(Path path) throws IOException {
+		return new ReversiArchive(FileChannel.open(path, StandardOpenOption.READ), false);
+	}
+
+	/**
+	 * Appends a game played from the starting position
+	 *
+	 * @param moves : squares played in order, passes left out or given as -1
+	 * @param count : number of entries of moves to use
+	 * @return index of the new game
+	 * @throws IOException : when the file cannot grow
+	 * @throws IllegalArgumentException : when a move is not legal
+	 */
+	public synchronized long append(int[] moves, int count) throws IOException {
+		if (!writable) {
+			throw new IOException("Archive is read only");
+		}
+		long index = games;
+		ByteBuffer record = record(index);
+		int start = record.position();
+		long w = 0x0000001008000000L;
+		long b = 0x0000000810000000L;
+		int toMove = ReversiModel.W;
+		int played = 0;
+		for (int i = 0; i < count; i++) {
+			int square = moves[i];
+			if (square < 0) {
+				continue;
+			}
+			long own = toMove == ReversiModel.W ? w : b;
+			long opp = toMove == ReversiModel.W ? b : w;
+			if (ReversiBitboard.legalMoves(own, opp) == 0) {
+				toMove = opposite(toMove);
+				own = toMove == ReversiModel.W ? w : b;
+				opp = toMove == ReversiModel.W ? b : w;
+			}
+			if (played == MAX_MOVES || square > 63 || (ReversiBitboard.legalMoves(own, opp) & (1L << square)) == 0) {
+				throw new IllegalArgumentException("Illegal move " + square + " at move " + (played + 1));
+			}
+			long flips = ReversiBitboard.flips(own, opp, square);
+			own |= flips | (1L << square);
+			opp ^= flips;
+			w = toMove == ReversiModel.W ? own : opp;
+			b = toMove == ReversiModel.W ? opp : own;
+			record.put(start + 4 + played, (byte) square);
+			played++;
+			toMove = opposite(toMove);
+		}
+		record.put(start, (byte) played);
+		record.put(start + 1, (byte) ReversiBitboard.count(w));
+		record.put(start + 2, (byte) ReversiBitboard.count(b));
+		record.put(start + 3, (byte) 0);
+		games = index + 1;
+		header.putLong(8, games);
+		return index;
+	}
+
+	/**
+	 * @return the number of games in the archive
+	 */
+	public long size() {
+		return games;
+	}
+
+	/**
+	 * Gets the number of moves of a game, not counting passes
+	 *
+	 * @param game : index of the game
+	 * @return number of moves
+	 * @throws IOException : when the file cannot be mapped
+	 */
+	public int moveCount(long game) throws IOException {
+		ByteBuffer record = read(game);
+		return record.get(record.position());
+	}
+
+	/**
+	 * Gets one move of a game
+	 *
+	 * @param game : index of the game
+	 * @param ply  : index of the move, from 0
+	 * @return index of the square played
+	 * @throws IOException : when the file cannot be mapped
+	 */
+	public int move(long game, int ply) throws IOException {
+		ByteBuffer record = read(game);
+		if (ply < 0 || ply >= record.get(record.position())) {
+			throw new IndexOutOfBoundsException("Game " + game + " has no move " + ply);
+		}
+		return record.get(record.position() + 4 + ply);
+	}
+
+	/**
+	 * Gets the final White score of a game
+	 *
+	 * @param game : index of the game
+	 * @return number of White tokens at the end
+	 * @throws IOException : when the file cannot be mapped
+	 */
+	public int getWScore(long game) throws IOException {
+		ByteBuffer record = read(game);
+		return record.get(record.position() + 1);
+	}
+
+	/**
+	 * Gets the final Black score of a game
+	 *
+	 * @param game : index of the game
+	 * @return number of Black tokens at the end
+	 * @throws IOException : when the file cannot be mapped
+	 */
+	public int getBScore(long game) throws IOException {
+		ByteBuffer record = read(game);
+		return record.get(record.position() + 2);
+	}
+
+	/**
+	 * Gets the board of a game after a number of moves
+	 *
+	 * @param game  : index of the game
+	 * @param plies : number of moves played, from 0 for the starting position
+	 * @return snapshot message of the board and the color to move, with the
+	 *         number of moves as its sequence number
+	 * @throws IOException : when the file cannot be mapped
+	 */
+	public ReversiMessage position(long game, int plies) throws IOException {
+		long[] wBits = new long[1];
+		long[] bBits = new long[1];
+		int[] toMove = new int[1];
+		ByteBuffer record = read(game);
+		if (plies < 0 || plies > record.get(record.position())) {
+			throw new IndexOutOfBoundsException("Game " + game + " has no position " + plies);
+		}
+		replay(record, plies, wBits, bBits, toMove, 0);
+		return ReversiMessage.snapshot(plies, wBits[0], bBits[0], toMove[0]);
+	}
+
+	/**
+	 * Gets every position of a game, from the starting position to the one
+	 * before the last move, without making a message for each
+	 *
+	 * @param game   : index of the game
+	 * @param wBits  : array the White bitboards are written to, at least 60 long
+	 * @param bBits  : array the Black bitboards are written to
+	 * @param toMove : array the colors to move are written to
+	 * @return the number of moves of the game, the number of positions written
+	 * @throws IOException : when the file cannot be mapped
+	 */
+	public int positions(long game, long[] wBits, long[] bBits, int[] toMove) throws IOException {
+		ByteBuffer record = read(game);
+		int moves = record.get(record.position());
+		for (int ply = 0; ply < moves; ply++) {
+			// Each position is one move on from the last, so only the first replays from the start
+			replay(record, ply, wBits, bBits, toMove, ply);
+		}
+		return moves;
+	}
+
+	/**
+	 * Plays the first moves of a stored game and writes the position at an
+	 * index of the arrays, starting from the position at the index before it
+	 * if there is one
+	 */
+	private static void replay(ByteBuffer record, int plies, long[] wBits, long[] bBits, int[] toMove, int at) {
+		int start = record.position();
+		int from = at > 0 ? plies - 1 : 0;
+		long w = at > 0 ? wBits[at - 1] : 0x0000001008000000L;
+		long b = at > 0 ? bBits[at - 1] : 0x0000000810000000L;
+		int color = at > 0 ? toMove[at - 1] : ReversiModel.W;
+		for (int i = from; i < plies; i++) {
+			int square = record.get(start + 4 + i);
+			long own = color == ReversiModel.W ? w : b;
+			long opp = color == ReversiModel.W ? b : w;
+			if (ReversiBitboard.legalMoves(own, opp) == 0) {
+				color = opposite(color);
+				own = color == ReversiModel.W ? w : b;
+				opp = color == ReversiModel.W ? b : w;
+			}
+			long flips = ReversiBitboard.flips(own, opp, square);
+			own |= flips | (1L << square);
+			opp ^= flips;
+			w = color == ReversiModel.W ? own : opp;
+			b = color == ReversiModel.W ? opp : own;
+			color = opposite(color);
+		}
+		if (ReversiBitboard.legalMoves(color == ReversiModel.W ? w : b, color == ReversiModel.W ? b : w) == 0) {
+			color = opposite(color);
+		}
+		wBits[at] = w;
+		bBits[at] = b;
+		toMove[at] = color;
+	}
+
+	/**
+	 * Forces appended games to disk
+	 */
+	public synchronized void force() {
+		for (MappedByteBuffer chunk : chunks) {
+			chunk.force();
+		}
+		header.force();
+	}
+
+	/**
+	 * Forces appended games to disk and closes the file
+	 *
+	 * @throws IOException : when the file cannot be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (writable) {
+			force();
+		}
+		channel.close();
+	}
+
+	/**
+	 * Gets the record of a stored game, positioned at its first byte
+	 */
+	private ByteBuffer read(long game) throws IOException {
+		if (game < 0 || game >= size()) {
+			throw new IndexOutOfBoundsException("No game " + game);
+		}
+		return record(game);
+	}
+
+	/**
+	 * Gets the chunk holding a game, positioned at the game's record, mapping
+	 * and growing the file as needed
+	 */
+	private ByteBuffer record(long game) throws IOException {
+		int index = (int) (game / GAMES_PER_CHUNK);
+		if (chunks.size() <= index) {
+			map(index);
+		}
+		ByteBuffer chunk = chunks.get(index).duplicate();
+		chunk.position((int) (game % GAMES_PER_CHUNK) * RECORD_SIZE);
+		return chunk;
+	}
+
+	/**
+	 * Maps every chunk up to and including one
+	 */
+	private synchronized void map(int index) throws IOException {
+		while (chunks.size() <= index) {
+			long offset = HEADER_SIZE + (long) chunks.size() * CHUNK_SIZE;
+			long length = writable ? CHUNK_SIZE : Math.min(CHUNK_SIZE, channel.size() - offset);
+			FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+			chunks.add(channel.map(mode, offset, length));
+		}
+	}
+
+	/**
+	 * Gets the opposite color of a player
+	 */
+	private static int opposite(int color) {
+		return color == ReversiModel.B ? ReversiModel.W : ReversiModel.B;
+	}
+}
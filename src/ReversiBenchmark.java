@@ -0,0 +1,616 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ReversiBenchmark measures the speed of the game engine and writes the
+ * results out as JSON so they can be compared between releases.
+ *
+ * Each benchmark is warmed up and then run for several timed iterations.
+ * The score is the mean throughput over the timed iterations along with its
+ * spread, in the same layout JMH uses for its JSON results.
+ *
+ * The engine benchmarks run legal moves, flips and random games through
+ * ReversiEngine on several board sizes, single long bitboards up to 8x8
+ * and multi long bitboards above.
+ *
+ * The search benchmarks run alpha-beta and Monte Carlo searches of a fixed
+ * size from one thread up to every core, in nodes and random games per
+ * second.
+ *
+ * The endgame benchmarks first solve a set of positions with known exact
+ * scores and stop if the solver gets any of them wrong. With -endgame only
+ * those benchmarks are run.
+ *
+ * Usage: java ReversiBenchmark [-endgame] [results.json]
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiBenchmark {
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int ITERATIONS = 5;
+	private static final long ITERATION_NANOS = 500000000L;
+
+	// Fixed positions as {White bitboard, Black bitboard, color to move}
+	private static final long[][] OPENING = {
+			{ 0x0000207000000000L, 0x000000081C000000L, 2 },
+			{ 0x0040201008100000L, 0x0020002E10080000L, 2 },
+			{ 0x0040381420000000L, 0x0000442818380000L, 2 } };
+	private static final long[][] MIDGAME = {
+			{ 0x4040407E040C1A10L, 0x80082C007A010008L, 2 },
+			{ 0xA070B0386EC88000L, 0x04084C4010242404L, 2 },
+			{ 0x000101316A3E4880L, 0x20307C0E1400143CL, 2 } };
+	private static final long[][] ENDGAME = {
+			{ 0x011F2D57EF5D0F44L, 0x3A20422810A06020L, 2 },
+			{ 0x483C5D4C0D0A574EL, 0x86C222B2F2F0A800L, 2 },
+			{ 0x3E0C0839122C0E0FL, 0x0072F7C4EDD2F1E0L, 2 } };
+
+	// Endgame positions as {White bitboard, Black bitboard, color to move, exact score},
+	// the score is the final disc difference for the player to move with perfect
+	// play, worked out by a plain alpha-beta search with no move ordering or table
+	private static final long[][] SOLVED = {
+			{ 0xE48090DEEE84A000L, 0x083D6F21113B1C7CL, 1, 52 },
+			{ 0x7E3C204A405A0602L, 0x0001DFB5BFA5C185L, 1, -14 },
+			{ 0x00241110143F4000L, 0x3E18ECEFEAC0BC3EL, 1, -2 },
+			{ 0x2CBC040C18094CFCL, 0x0000FBF366F6B000L, 1, 24 },
+			{ 0x00B8FCAAE4E0A024L, 0x3C0503551B1D1810L, 1, -4 },
+			{ 0x080C0C3D3B3D0A3FL, 0x0000F1C2C4C2F480L, 1, 34 },
+			{ 0x7E04001031631D00L, 0x0018BE6C4E9C207EL, 1, -8 },
+			{ 0x021C58FCC0D40C0CL, 0x010327033F2B3120L, 1, -34 },
+			{ 0x203838000C0A343EL, 0x0080C0FFF3F58800L, 1, -34 } };
+
+	// Board sizes of the engine benchmarks, and the positions sampled on each
+	private static final int[] ENGINE_SIZES = { 6, 8, 10, 16 };
+	private static final int ENGINE_SAMPLES = 64;
+
+	// Results are folded in here so the JIT cannot drop the measured work
+	private static volatile long sink;
+
+	private final List<String> results = new ArrayList<String>();
+
+	/**
+	 * A benchmark body, returns how many operations it ran
+	 */
+	private interface Body {
+		long run();
+	}
+
+	/**
+	 * Runs every benchmark and writes the results
+	 *
+	 * @param args : -endgame for the endgame benchmarks only, and an optional
+	 *             path of the JSON results file
+	 * @throws IOException : when the results cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		boolean endgameOnly = args.length > 0 && args[0].equals("-endgame");
+		String path = args.length > (endgameOnly ? 1 : 0) ? args[args.length - 1] : null;
+		ReversiBenchmark benchmark = new ReversiBenchmark();
+		if (!endgameOnly) {
+			benchmark.runAll();
+		}
+		benchmark.runEndgame();
+		String json = benchmark.toJson();
+		if (path != null) {
+			try (PrintWriter out = new PrintWriter(new FileWriter(path))) {
+				out.println(json);
+			}
+		} else {
+			System.out.println(json);
+		}
+	}
+
+	/**
+	 * Runs every benchmark
+	 */
+	public void runAll() {
+		String[] phases = { "opening", "midgame", "endgame" };
+		long[][][] sets = { OPENING, MIDGAME, ENDGAME };
+		for (int p = 0; p < phases.length; p++) {
+			long[][] positions = sets[p];
+			ReversiModel[] models = new ReversiModel[positions.length];
+			ReversiController[] controllers = new ReversiController[positions.length];
+			for (int i = 0; i < positions.length; i++) {
+				models[i] = modelOf(positions[i]);
+				controllers[i] = new ReversiController(models[i]);
+			}
+
+			measure("legalMoves." + phases[p], "ops/s", () -> {
+				long x = 0;
+				for (long[] position : positions) {
+					int color = (int) position[2];
+					x ^= ReversiBitboard.legalMoves(color == ReversiModel.B ? position[1] : position[0],
+							color == ReversiModel.B ? position[0] : position[1]);
+				}
+				sink ^= x;
+				return positions.length;
+			});
+			measure("updateValidMoves." + phases[p], "ops/s", () -> {
+				long x = 0;
+				for (int i = 0; i < controllers.length; i++) {
+					controllers[i].updateValidMoves((int) positions[i][2]);
+					x += models[i].getValidMoves();
+				}
+				sink ^= x;
+				return controllers.length;
+			});
+			measure("isValidMove." + phases[p], "ops/s", () -> {
+				long x = 0;
+				for (int i = 0; i < controllers.length; i++) {
+					for (int row = 0; row < 8; row++) {
+						for (int col = 0; col < 8; col++) {
+							if (controllers[i].isValidMove(row, col, (int) positions[i][2])) {
+								x++;
+							}
+						}
+					}
+				}
+				sink ^= x;
+				return controllers.length * 64;
+			});
+			measure("isGameOver." + phases[p], "ops/s", () -> {
+				long x = 0;
+				for (ReversiController controller : controllers) {
+					if (controller.isGameOver()) {
+						x++;
+					}
+				}
+				sink ^= x;
+				return controllers.length;
+			});
+			measure("flips." + phases[p], "ops/s", () -> {
+				long x = 0;
+				long ops = 0;
+				for (long[] position : positions) {
+					long own = position[2] == ReversiModel.B ? position[1] : position[0];
+					long opp = position[2] == ReversiModel.B ? position[0] : position[1];
+					for (long moves = ReversiBitboard.legalMoves(own, opp); moves != 0; moves &= moves - 1) {
+						x ^= ReversiBitboard.flips(own, opp, Long.numberOfTrailingZeros(moves));
+						ops++;
+					}
+				}
+				sink ^= x;
+				return ops;
+			});
+			measure("humanTurn." + phases[p], "ops/s", () -> {
+				long ops = 0;
+				for (long[] position : positions) {
+					int color = (int) position[2];
+					long own = color == ReversiModel.B ? position[1] : position[0];
+					long opp = color == ReversiModel.B ? position[0] : position[1];
+					for (long moves = ReversiBitboard.legalMoves(own, opp); moves != 0; moves &= moves - 1) {
+						int square = Long.numberOfTrailingZeros(moves);
+						ReversiModel model = modelOf(position);
+						try {
+							new ReversiController(model).humanTurn(square / 8, square % 8, color);
+						} catch (ReversiIllegalLocationException e) {
+							throw new IllegalStateException(e);
+						}
+						sink ^= model.getHash();
+						ops++;
+					}
+				}
+				return ops;
+			});
+		}
+
+		measure("computerTurn.greedy", "ops/s", () -> {
+			long ops = 0;
+			for (long[][] set : sets) {
+				for (long[] position : set) {
+					ReversiModel model = modelOf(position);
+					ReversiController controller = new ReversiController(model);
+					controller.setStrategy(new GreedyStrategy(1));
+					controller.computerTurn((int) position[2]);
+					sink ^= model.getHash();
+					ops++;
+				}
+			}
+			return ops;
+		});
+
+		// Leaf evaluations with the pattern tables, the weights do not change the speed
+		ReversiPatternEvaluator evaluator = new ReversiPatternEvaluator();
+		measure("evaluate.pattern", "ops/s", () -> {
+			long x = 0;
+			long ops = 0;
+			for (long[][] set : sets) {
+				for (long[] position : set) {
+					long own = position[2] == ReversiModel.B ? position[1] : position[0];
+					long opp = position[2] == ReversiModel.B ? position[0] : position[1];
+					x += evaluator.evaluate(own, opp);
+					ops++;
+				}
+			}
+			sink ^= x;
+			return ops;
+		});
+
+		measure("playout.bitboard", "games/s", new Body() {
+			private long seed = 1;
+
+			@Override
+			public long run() {
+				long[] own = { 0x0000000810000000L };
+				long[] opp = { 0x0000001008000000L };
+				seed = playout(own, opp, seed);
+				sink ^= own[0] ^ opp[0];
+				return 1;
+			}
+		});
+		measure("playout.controller", "games/s", new Body() {
+			private long seed = 1;
+
+			@Override
+			public long run() {
+				ReversiModel model = new ReversiModel();
+				ReversiController controller = new ReversiController(model);
+				int color = ReversiModel.B;
+				while (!controller.isGameOver()) {
+					long moves = controller.legalMoves(color);
+					if (moves != 0) {
+						seed = next(seed);
+						int square = nth(moves, (int) ((seed >>> 33) % ReversiBitboard.count(moves)));
+						try {
+							controller.humanTurn(square / 8, square % 8, color);
+						} catch (ReversiIllegalLocationException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+					color = color == ReversiModel.B ? ReversiModel.W : ReversiModel.B;
+				}
+				sink ^= model.getHash();
+				return 1;
+			}
+		});
+
+		for (int size : ENGINE_SIZES) {
+			runEngine(ReversiEngine.forSize(size));
+		}
+
+		// Nodes per second of a fixed depth search, from one thread up to every core
+		int cores = Runtime.getRuntime().availableProcessors();
+		List<Integer> threadCounts = new ArrayList<Integer>();
+		for (int threads = 1; threads < cores; threads *= 2) {
+			threadCounts.add(threads);
+		}
+		threadCounts.add(cores);
+		for (int threads : threadCounts) {
+			AlphaBetaStrategy strategy = new AlphaBetaStrategy();
+			strategy.setMaxDepth(7);
+			strategy.setThreads(threads);
+			measure("search.alphaBeta.threads" + threads, "nodes/s", () -> {
+				long nodes = 0;
+				for (long[] position : MIDGAME) {
+					strategy.getTable().clear();
+					strategy.setSeed(1);
+					long own = position[2] == ReversiModel.B ? position[1] : position[0];
+					long opp = position[2] == ReversiModel.B ? position[0] : position[1];
+					sink ^= strategy.chooseMove(own, opp, (int) position[2]);
+					nodes += strategy.getLastNodes();
+				}
+				return nodes;
+			});
+			strategy.close();
+		}
+
+		// Random games per second of a fixed size Monte Carlo search on the same thread counts
+		for (int threads : threadCounts) {
+			MonteCarloStrategy strategy = new MonteCarloStrategy();
+			strategy.setMaxPlayouts(4096 * threads);
+			strategy.setThreads(threads);
+			measure("search.monteCarlo.threads" + threads, "playouts/s", () -> {
+				long playouts = 0;
+				for (long[] position : MIDGAME) {
+					strategy.setSeed(1);
+					long own = position[2] == ReversiModel.B ? position[1] : position[0];
+					long opp = position[2] == ReversiModel.B ? position[0] : position[1];
+					sink ^= strategy.chooseMove(own, opp, (int) position[2]);
+					playouts += strategy.getLastPlayouts();
+				}
+				return playouts;
+			});
+			strategy.close();
+		}
+	}
+
+	/**
+	 * Measures the engine of one board size on positions from random games
+	 *
+	 * @param engine : engine to measure
+	 */
+	public void runEngine(ReversiEngine engine) {
+		// Positions as {player to move, opponent}, taken from random games
+		long[][][] positions = new long[ENGINE_SAMPLES][][];
+		long seed = 1;
+		for (int i = 0; i < ENGINE_SAMPLES;) {
+			long[] own = engine.newBoard();
+			long[] opp = engine.newBoard();
+			engine.start(opp, own);
+			long[] moves = engine.newBoard();
+			long[] flips = engine.newBoard();
+			for (int ply = 0; i < ENGINE_SAMPLES; ply++) {
+				engine.legalMoves(own, opp, moves);
+				int count = ReversiEngine.count(moves);
+				if (count == 0) {
+					break;
+				}
+				if (ply % 7 == 3) {
+					positions[i++] = new long[][] { own.clone(), opp.clone() };
+				}
+				seed = next(seed);
+				int square = ReversiEngine.nth(moves, (int) ((seed >>> 33) % count));
+				engine.flips(own, opp, square, flips);
+				engine.play(own, opp, square, flips);
+				long[] swap = own;
+				own = opp;
+				opp = swap;
+			}
+		}
+
+		String size = "size" + engine.getSize();
+		long[] moves = engine.newBoard();
+		long[] flips = engine.newBoard();
+		measure("engine.legalMoves." + size, "ops/s", () -> {
+			long x = 0;
+			for (long[][] position : positions) {
+				engine.legalMoves(position[0], position[1], moves);
+				x ^= moves[0];
+			}
+			sink ^= x;
+			return positions.length;
+		});
+		measure("engine.flips." + size, "ops/s", () -> {
+			long x = 0;
+			long ops = 0;
+			for (long[][] position : positions) {
+				engine.legalMoves(position[0], position[1], moves);
+				for (int square = ReversiEngine.next(moves, 0); square >= 0; square = ReversiEngine.next(moves,
+						square + 1)) {
+					x += engine.flips(position[0], position[1], square, flips);
+					ops++;
+				}
+			}
+			sink ^= x;
+			return ops;
+		});
+		measure("engine.playout." + size, "games/s", new Body() {
+			private long seed = 1;
+
+			@Override
+			public long run() {
+				long[] own = engine.newBoard();
+				long[] opp = engine.newBoard();
+				engine.start(opp, own);
+				seed = playout(engine, own, opp, seed);
+				sink ^= own[0] ^ opp[0];
+				return 1;
+			}
+		});
+	}
+
+	/**
+	 * Solves every endgame position, checks each score and reports the nodes
+	 * and time of each solve, then measures the solver speed by empty count
+	 *
+	 * @throws IllegalStateException : when the solver gets a score wrong
+	 */
+	public void runEndgame() {
+		for (long[] position : SOLVED) {
+			ReversiEndgameSolver solver = new ReversiEndgameSolver();
+			long own = position[2] == ReversiModel.B ? position[1] : position[0];
+			long opp = position[2] == ReversiModel.B ? position[0] : position[1];
+			int score = solver.score(own, opp);
+			if (score != position[3]) {
+				throw new IllegalStateException("Solved " + Long.toHexString(position[0]) + " "
+						+ Long.toHexString(position[1]) + " as " + score + ", expected " + position[3]);
+			}
+			System.err.println(String.format(Locale.ROOT, "solve %d empties score %+3d %12d nodes %8d ms",
+					solver.getLastEmpties(), score, solver.getLastNodes(), solver.getLastTimeMillis()));
+		}
+
+		for (int empties = 12; empties <= 20; empties += 2) {
+			List<long[]> positions = new ArrayList<long[]>();
+			for (long[] position : SOLVED) {
+				if (ReversiBitboard.count(~(position[0] | position[1])) == empties) {
+					positions.add(position);
+				}
+			}
+			measure("solve.empties" + empties, "nodes/s", () -> {
+				long nodes = 0;
+				for (long[] position : positions) {
+					// A new solver each time so the table holds nothing from the last run
+					ReversiEndgameSolver solver = new ReversiEndgameSolver();
+					long own = position[2] == ReversiModel.B ? position[1] : position[0];
+					long opp = position[2] == ReversiModel.B ? position[0] : position[1];
+					sink ^= solver.solve(own, opp);
+					nodes += solver.getLastNodes();
+				}
+				return nodes;
+			});
+		}
+	}
+
+	/**
+	 * Warms up and times one benchmark, then records its result
+	 *
+	 * @param name : name of the benchmark
+	 * @param unit : unit of the score
+	 * @param body : the code to measure
+	 */
+	private void measure(String name, String unit, Body body) {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			runFor(body);
+		}
+		double[] scores = new double[ITERATIONS];
+		for (int i = 0; i < ITERATIONS; i++) {
+			scores[i] = runFor(body);
+		}
+		double mean = 0;
+		for (double score : scores) {
+			mean += score / ITERATIONS;
+		}
+		double variance = 0;
+		for (double score : scores) {
+			variance += (score - mean) * (score - mean) / (ITERATIONS - 1);
+		}
+
+		StringBuilder raw = new StringBuilder();
+		for (int i = 0; i < ITERATIONS; i++) {
+			raw.append(i == 0 ? "" : ", ").append(format(scores[i]));
+		}
+		results.add(String.format(Locale.ROOT,
+				"  {\"benchmark\": \"%s\", \"mode\": \"thrpt\", \"warmupIterations\": %d, \"measurementIterations\": %d,"
+						+ " \"primaryMetric\": {\"score\": %s, \"scoreError\": %s, \"scoreUnit\": \"%s\", \"rawData\": [%s]}}",
+				name, WARMUP_ITERATIONS, ITERATIONS, format(mean), format(Math.sqrt(variance)), unit, raw));
+		System.err.println(String.format(Locale.ROOT, "%-32s %16.1f %s", name, mean, unit));
+	}
+
+	/**
+	 * Runs a benchmark body over and over for one iteration
+	 *
+	 * @param body : the code to measure
+	 * @return operations per second
+	 */
+	private static double runFor(Body body) {
+		long ops = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			ops += body.run();
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < ITERATION_NANOS);
+		return ops * 1e9 / elapsed;
+	}
+
+	/**
+	 * Gets the recorded results as a JSON array
+	 *
+	 * @return the results
+	 */
+	public String toJson() {
+		return "[\n" + String.join(",\n", results) + "\n]";
+	}
+
+	/**
+	 * Plays random moves on bitboards until the game ends
+	 *
+	 * @param own  : bitboard of the player to move, updated in place
+	 * @param opp  : bitboard of the opponent, updated in place
+	 * @param seed : random state
+	 * @return the new random state
+	 */
+	private static long playout(long[] own, long[] opp, long seed) {
+		long p = own[0];
+		long o = opp[0];
+		boolean passed = false;
+		while (true) {
+			long moves = ReversiBitboard.legalMoves(p, o);
+			if (moves == 0) {
+				if (passed) {
+					break;
+				}
+				passed = true;
+			} else {
+				passed = false;
+				seed = next(seed);
+				int square = nth(moves, (int) ((seed >>> 33) % ReversiBitboard.count(moves)));
+				long flips = ReversiBitboard.flips(p, o, square);
+				p |= flips | (1L << square);
+				o ^= flips;
+			}
+			long swap = p;
+			p = o;
+			o = swap;
+		}
+		own[0] = p;
+		opp[0] = o;
+		return seed;
+	}
+
+	/**
+	 * Plays random moves through an engine until the game ends
+	 *
+	 * @param engine : engine for the board size
+	 * @param own    : bitboard of the player to move, updated in place
+	 * @param opp    : bitboard of the opponent, updated in place
+	 * @param seed   : random state
+	 * @return the new random state
+	 */
+	private static long playout(ReversiEngine engine, long[] own, long[] opp, long seed) {
+		long[] moves = engine.newBoard();
+		long[] flips = engine.newBoard();
+		boolean passed = false;
+		while (true) {
+			engine.legalMoves(own, opp, moves);
+			int count = ReversiEngine.count(moves);
+			if (count == 0) {
+				if (passed) {
+					break;
+				}
+				passed = true;
+			} else {
+				passed = false;
+				seed = next(seed);
+				int square = ReversiEngine.nth(moves, (int) ((seed >>> 33) % count));
+				engine.flips(own, opp, square, flips);
+				engine.play(own, opp, square, flips);
+			}
+			long[] swap = own;
+			own = opp;
+			opp = swap;
+		}
+		return seed;
+	}
+
+	/**
+	 * Gets the square of the nth set bit of a bitboard
+	 */
+	private static int nth(long bits, int n) {
+		for (int i = 0; i < n; i++) {
+			bits &= bits - 1;
+		}
+		return Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * Steps a xorshift random state
+	 */
+	private static long next(long seed) {
+		seed ^= seed << 13;
+		seed ^= seed >>> 7;
+		seed ^= seed << 17;
+		return seed;
+	}
+
+	/**
+	 * Builds a model holding a fixed position
+	 */
+	private static ReversiModel modelOf(long[] position) {
+		int[][] board = new int[ReversiModel.BOARD_DIMENSION][ReversiModel.BOARD_DIMENSION];
+		for (int row = 0; row < 8; row++) {
+			for (int col = 0; col < 8; col++) {
+				long bit = ReversiBitboard.bit(row, col);
+				if ((position[0] & bit) != 0) {
+					board[row][col] = ReversiModel.W;
+				} else if ((position[1] & bit) != 0) {
+					board[row][col] = ReversiModel.B;
+				}
+			}
+		}
+		ReversiModel model = new ReversiModel(board);
+		model.setCurrentPlayer((int) position[2]);
+		return model;
+	}
+
+	/**
+	 * Formats a number for JSON
+	 */
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+}
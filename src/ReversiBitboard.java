@@ -0,0 +1,254 @@
+/**
+ * ReversiBitboard holds the bit operations used to generate and play moves.
+ *
+ * A board is stored as two longs, one for each color. Bit (row * 8 + col)
+ * is set when that color owns the square at row col. Move generation and
+ * flip computation shift whole boards at once instead of walking cells.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public final class ReversiBitboard {
+	// Masks that stop a shift from wrapping a token around to the other edge
+	private static final long NOT_COL_0 = 0xFEFEFEFEFEFEFEFEL;
+	private static final long NOT_COL_7 = 0x7F7F7F7F7F7F7F7FL;
+	private static final long NOT_EDGE_COLS = 0x7E7E7E7E7E7E7E7EL;
+
+	private ReversiBitboard() {
+	}
+
+	/**
+	 * Gets the square index of a row col
+	 *
+	 * @param row : row of location
+	 * @param col : column of location
+	 * @return the index of the square, 0 to 63
+	 */
+	public static int square(int row, int col) {
+		return row * 8 + col;
+	}
+
+	/**
+	 * Gets the bit of a row col
+	 *
+	 * @param row : row of location
+	 * @param col : column of location
+	 * @return a long with only the bit of the location set
+	 */
+	public static long bit(int row, int col) {
+		return 1L << (row * 8 + col);
+	}
+
+	/**
+	 * Counts the tokens on a bitboard
+	 *
+	 * @param bits : bitboard to count
+	 * @return the number of set bits
+	 */
+	public static int count(long bits) {
+		return Long.bitCount(bits);
+	}
+
+	/**
+	 * Gets every legal move for a player.
+	 *
+	 * @param own : bitboard of the player to move
+	 * @param opp : bitboard of the opponent
+	 * @return bitboard with a bit set on every legal location
+	 */
+	public static long legalMoves(long own, long opp) {
+		long empty = ~(own | opp);
+		long inner = opp & NOT_EDGE_COLS;
+		long moves = 0;
+		long t;
+
+		// Horizontal
+		t = inner & (own << 1);
+		t |= inner & (t << 1);
+		t |= inner & (t << 1);
+		t |= inner & (t << 1);
+		t |= inner & (t << 1);
+		t |= inner & (t << 1);
+		moves |= empty & (t << 1);
+		t = inner & (own >>> 1);
+		t |= inner & (t >>> 1);
+		t |= inner & (t >>> 1);
+		t |= inner & (t >>> 1);
+		t |= inner & (t >>> 1);
+		t |= inner & (t >>> 1);
+		moves |= empty & (t >>> 1);
+
+		// Vertical
+		t = opp & (own << 8);
+		t |= opp & (t << 8);
+		t |= opp & (t << 8);
+		t |= opp & (t << 8);
+		t |= opp & (t << 8);
+		t |= opp & (t << 8);
+		moves |= empty & (t << 8);
+		t = opp & (own >>> 8);
+		t |= opp & (t >>> 8);
+		t |= opp & (t >>> 8);
+		t |= opp & (t >>> 8);
+		t |= opp & (t >>> 8);
+		t |= opp & (t >>> 8);
+		moves |= empty & (t >>> 8);
+
+		// Diagonals
+		t = inner & (own << 7);
+		t |= inner & (t << 7);
+		t |= inner & (t << 7);
+		t |= inner & (t << 7);
+		t |= inner & (t << 7);
+		t |= inner & (t << 7);
+		moves |= empty & (t << 7);
+		t = inner & (own >>> 7);
+		t |= inner & (t >>> 7);
+		t |= inner & (t >>> 7);
+		t |= inner & (t >>> 7);
+		t |= inner & (t >>> 7);
+		t |= inner & (t >>> 7);
+		moves |= empty & (t >>> 7);
+		t = inner & (own << 9);
+		t |= inner & (t << 9);
+		t |= inner & (t << 9);
+		t |= inner & (t << 9);
+		t |= inner & (t << 9);
+		t |= inner & (t << 9);
+		moves |= empty & (t << 9);
+		t = inner & (own >>> 9);
+		t |= inner & (t >>> 9);
+		t |= inner & (t >>> 9);
+		t |= inner & (t >>> 9);
+		t |= inner & (t >>> 9);
+		t |= inner & (t >>> 9);
+		moves |= empty & (t >>> 9);
+
+		return moves;
+	}
+
+	/**
+	 * Gets the opponent tokens captured by placing a token at a square.
+	 *
+	 * @param own    : bitboard of the player to move
+	 * @param opp    : bitboard of the opponent
+	 * @param square : index of the square played
+	 * @return bitboard of the tokens that would flip, 0 if none
+	 */
+	public static long flips(long own, long opp, int square) {
+		long move = 1L << square;
+		long flips = 0;
+		flips |= flipsLeft(own, opp, move, 1, NOT_COL_0);
+		flips |= flipsRight(own, opp, move, 1, NOT_COL_7);
+		flips |= flipsLeft(own, opp, move, 8, -1L);
+		flips |= flipsRight(own, opp, move, 8, -1L);
+		flips |= flipsLeft(own, opp, move, 7, NOT_COL_7);
+		flips |= flipsRight(own, opp, move, 7, NOT_COL_0);
+		flips |= flipsLeft(own, opp, move, 9, NOT_COL_0);
+		flips |= flipsRight(own, opp, move, 9, NOT_COL_7);
+		return flips;
+	}
+
+	/**
+	 * Applies one of the 8 symmetries of the board to a bitboard. Bit 2 of the
+	 * symmetry transposes rows and columns, then bit 0 mirrors the columns and
+	 * bit 1 mirrors the rows. Symmetry 0 leaves the board as it is.
+	 *
+	 * @param bits     : bitboard to transform
+	 * @param symmetry : symmetry from 0 to 7
+	 * @return the transformed bitboard
+	 */
+	public static long transform(long bits, int symmetry) {
+		if ((symmetry & 4) != 0) {
+			long t = 0x0F0F0F0F00000000L & (bits ^ (bits << 28));
+			bits ^= t ^ (t >>> 28);
+			t = 0x3333000033330000L & (bits ^ (bits << 14));
+			bits ^= t ^ (t >>> 14);
+			t = 0x5500550055005500L & (bits ^ (bits << 7));
+			bits ^= t ^ (t >>> 7);
+		}
+		if ((symmetry & 1) != 0) {
+			bits = ((bits >>> 1) & 0x5555555555555555L) | ((bits & 0x5555555555555555L) << 1);
+			bits = ((bits >>> 2) & 0x3333333333333333L) | ((bits & 0x3333333333333333L) << 2);
+			bits = ((bits >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((bits & 0x0F0F0F0F0F0F0F0FL) << 4);
+		}
+		if ((symmetry & 2) != 0) {
+			bits = Long.reverseBytes(bits);
+		}
+		return bits;
+	}
+
+	/**
+	 * Applies one of the 8 symmetries of the board to a square
+	 *
+	 * @param square   : index of the square
+	 * @param symmetry : symmetry from 0 to 7, as in transform
+	 * @return index of the transformed square
+	 */
+	public static int transformSquare(int square, int symmetry) {
+		int row = square / 8;
+		int col = square % 8;
+		if ((symmetry & 4) != 0) {
+			int t = row;
+			row = col;
+			col = t;
+		}
+		if ((symmetry & 1) != 0) {
+			col = 7 - col;
+		}
+		if ((symmetry & 2) != 0) {
+			row = 7 - row;
+		}
+		return row * 8 + col;
+	}
+
+	/**
+	 * Undoes one of the 8 symmetries of the board on a square
+	 *
+	 * @param square   : index of a transformed square
+	 * @param symmetry : symmetry from 0 to 7 that was applied
+	 * @return index of the square before the transform
+	 */
+	public static int inverseSquare(int square, int symmetry) {
+		int row = square / 8;
+		int col = square % 8;
+		if ((symmetry & 2) != 0) {
+			row = 7 - row;
+		}
+		if ((symmetry & 1) != 0) {
+			col = 7 - col;
+		}
+		if ((symmetry & 4) != 0) {
+			int t = row;
+			row = col;
+			col = t;
+		}
+		return row * 8 + col;
+	}
+
+	/**
+	 * Gets the tokens captured in one direction toward higher squares
+	 */
+	private static long flipsLeft(long own, long opp, long move, int shift, long mask) {
+		long flips = 0;
+		long x = (move << shift) & mask;
+		while ((x & opp) != 0) {
+			flips |= x;
+			x = (x << shift) & mask;
+		}
+		return (x & own) != 0 ? flips : 0;
+	}
+
+	/**
+	 * Gets the tokens captured in one direction toward lower squares
+	 */
+	private static long flipsRight(long own, long opp, long move, int shift, long mask) {
+		long flips = 0;
+		long x = (move >>> shift) & mask;
+		while ((x & opp) != 0) {
+			flips |= x;
+			x = (x >>> shift) & mask;
+		}
+		return (x & own) != 0 ? flips : 0;
+	}
+}
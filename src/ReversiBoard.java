@@ -37,8 +37,9 @@ public class ReversiBoard implements Serializable {
 	 * @throws Exception: When File could not be saved too.
 	 */
 	public void save() throws Exception {
-		ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("save_game.dat"));
-		oos.writeObject(this);
+		try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("save_game.dat"))) {
+			oos.writeObject(this);
+		}
 	}
 
 	/**
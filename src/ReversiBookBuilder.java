@@ -0,0 +1,199 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReversiBookBuilder builds an opening book for ReversiOpeningBook from
+ * games in ReversiArchive files, or from games it plays itself.
+ *
+ * Every move in the first plies of every game is counted under the canonical
+ * key of the position it was played in. A reply scores 2 points for each
+ * game the player who made it won and 1 for each draw, and its weight in the
+ * book is those points, so replies that were played often and did well are
+ * chosen most. Replies played in fewer games than the minimum are left out.
+ *
+ * Usage: java ReversiBookBuilder [-plies n] [-min games] [-selfplay games] [-player spec] book [archive ...]
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiBookBuilder {
+	private final int plies;
+	private final int minGames;
+
+	// Replies seen in each canonical position, as {games, points} by square
+	private final Map<Long, Map<Integer, int[]>> positions = new HashMap<Long, Map<Integer, int[]>>();
+
+	/**
+	 * Constructor for ReversiBookBuilder
+	 *
+	 * @param plies    : number of moves from the start of each game to count
+	 * @param minGames : games a reply must be played in to be kept
+	 */
+	public ReversiBookBuilder(int plies, int minGames) {
+		this.plies = plies;
+		this.minGames = minGames;
+	}
+
+	/**
+	 * Builds a book from the command line
+	 *
+	 * @param args : options, the book file and the archives to read
+	 * @throws Exception : when a file cannot be read or written, or self-play fails
+	 */
+	public static void main(String[] args) throws Exception {
+		int plies = 16;
+		int minGames = 2;
+		int selfPlay = 0;
+		String player = "alphabeta:d4";
+		List<String> files = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-plies")) {
+				plies = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-min")) {
+				minGames = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-selfplay")) {
+				selfPlay = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-player")) {
+				player = args[++i];
+			} else {
+				files.add(args[i]);
+			}
+		}
+		if (files.isEmpty() || (files.size() == 1 && selfPlay == 0)) {
+			System.out.println("Usage: java ReversiBookBuilder [-plies n] [-min games] [-selfplay games] [-player spec] book [archive ...]");
+			return;
+		}
+
+		ReversiBookBuilder builder = new ReversiBookBuilder(plies, minGames);
+		for (String file : files.subList(1, files.size())) {
+			try (ReversiArchive archive = ReversiArchive.openReadOnly(Paths.get(file))) {
+				builder.add(archive);
+			}
+		}
+		if (selfPlay > 0) {
+			// Play the games into a temporary archive, opening plies are random so games differ
+			Path games = Files.createTempFile("reversi-selfplay", ".rva");
+			try {
+				ReversiTournament tournament = new ReversiTournament(player, player, selfPlay,
+						Runtime.getRuntime().availableProcessors(), System.nanoTime(), 2);
+				try (ReversiArchive archive = ReversiArchive.open(games)) {
+					tournament.setArchive(archive);
+					tournament.run();
+					builder.add(archive);
+				}
+			} finally {
+				Files.deleteIfExists(games);
+			}
+		}
+		int entries = builder.write(Paths.get(files.get(0)));
+		System.out.println("Wrote " + entries + " replies in " + builder.positions.size() + " positions to " + files.get(0));
+	}
+
+	/**
+	 * Counts the opening moves of every game of an archive
+	 *
+	 * @param archive : archive to read
+	 * @throws IOException : when the archive cannot be read
+	 */
+	public void add(ReversiArchive archive) throws IOException {
+		for (long game = 0; game < archive.size(); game++) {
+			int wScore = archive.getWScore(game);
+			int bScore = archive.getBScore(game);
+			int moves = Math.min(plies, archive.moveCount(game));
+			for (int ply = 0; ply < moves; ply++) {
+				ReversiMessage position = archive.position(game, ply);
+				int color = position.getToMove();
+				int own = color == ReversiModel.W ? wScore : bScore;
+				int opp = color == ReversiModel.W ? bScore : wScore;
+				add(position.getWBits(), position.getBBits(), color, archive.move(game, ply),
+						own > opp ? 2 : own == opp ? 1 : 0);
+			}
+		}
+	}
+
+	/**
+	 * Counts one reply to a position
+	 *
+	 * @param wBits  : bitboard of the White tokens
+	 * @param bBits  : bitboard of the Black tokens
+	 * @param toMove : color of the player who replied
+	 * @param square : index of the square played
+	 * @param points : 2 if the player won the game, 1 for a draw, 0 for a loss
+	 */
+	public void add(long wBits, long bBits, int toMove, int square, int points) {
+		long key = ReversiOpeningBook.canonicalKey(wBits, bBits, toMove);
+
+		// Symmetric positions have several canonical forms, take the smallest
+		// square among them so equal replies are counted together
+		int canonical = 64;
+		for (int symmetry = 0; symmetry < 8; symmetry++) {
+			if (ReversiZobrist.hash(ReversiBitboard.transform(wBits, symmetry), ReversiBitboard.transform(bBits, symmetry),
+					toMove) == key) {
+				canonical = Math.min(canonical, ReversiBitboard.transformSquare(square, symmetry));
+			}
+		}
+
+		Map<Integer, int[]> replies = positions.get(key);
+		if (replies == null) {
+			replies = new HashMap<Integer, int[]>();
+			positions.put(key, replies);
+		}
+		int[] stats = replies.get(canonical);
+		if (stats == null) {
+			stats = new int[2];
+			replies.put(canonical, stats);
+		}
+		stats[0]++;
+		stats[1] += points;
+	}
+
+	/**
+	 * Writes the book to a temp file and renames it over the book file
+	 *
+	 * @param path : path of the book file
+	 * @return the number of replies written
+	 * @throws IOException : when the book cannot be written
+	 */
+	public int write(Path path) throws IOException {
+		List<long[]> entries = new ArrayList<long[]>();
+		for (Map.Entry<Long, Map<Integer, int[]>> position : positions.entrySet()) {
+			for (Map.Entry<Integer, int[]> reply : position.getValue().entrySet()) {
+				int[] stats = reply.getValue();
+				if (stats[0] >= minGames && stats[1] > 0) {
+					entries.add(new long[] { position.getKey(), stats[1], reply.getKey() });
+				}
+			}
+		}
+		entries.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[1], a[1]));
+
+		ByteBuffer buffer = ByteBuffer.allocate(ReversiOpeningBook.HEADER_SIZE + entries.size() * ReversiOpeningBook.ENTRY_SIZE);
+		buffer.putInt(ReversiOpeningBook.MAGIC);
+		buffer.putInt(ReversiOpeningBook.VERSION);
+		buffer.putLong(entries.size());
+		for (long[] entry : entries) {
+			ReversiOpeningBook.putEntry(buffer, entry[0], (int) entry[1], (int) entry[2]);
+		}
+		buffer.flip();
+
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+		return entries.size();
+	}
+}
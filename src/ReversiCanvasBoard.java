@@ -0,0 +1,134 @@
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * ReversiCanvasBoard draws the board onto a single Canvas instead of one node
+ * per square.
+ *
+ * Changes to the board only mark squares as needing a repaint. An
+ * AnimationTimer repaints the marked squares at most once per frame, so a
+ * replay or a spectated game can change the board many times a frame and
+ * still cost one repaint.
+ *
+ * The canvas is the same width for every board size, so squares and tokens
+ * get smaller as the board grows.
+ *
+ * @author Ryan Luu and Denny Ho
+ *
+ */
+public class ReversiCanvasBoard extends Canvas {
+	private static final double PADDING = 8;
+	private static final double BOARD = 48 * 8;
+	// Share of a square's width a token fills
+	private static final double TOKEN = 40.0 / 48;
+
+	private ReversiModel model;
+	private int size;
+	private double cell;
+	private long[] dirty;
+	private boolean dirtyAll = true;
+	private final AnimationTimer timer;
+
+	/**
+	 * Constructor for ReversiCanvasBoard, starts repainting right away
+	 *
+	 * @param model : model to draw
+	 */
+	public ReversiCanvasBoard(ReversiModel model) {
+		super(PADDING * 2 + BOARD, PADDING * 2 + BOARD);
+		setModel(model);
+		timer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				paint();
+			}
+		};
+		timer.start();
+	}
+
+	/**
+	 * Setter for the model to draw, repaints the whole board at the size of
+	 * the model
+	 *
+	 * @param model : model to draw
+	 */
+	public void setModel(ReversiModel model) {
+		this.model = model;
+		this.size = model.getSize();
+		this.cell = BOARD / size;
+		this.dirty = model.getEngine().newBoard();
+		dirtyAll = true;
+	}
+
+	/**
+	 * Marks squares to be repainted on the next frame
+	 *
+	 * @param squares : bitboard of the squares that changed, one long per 64 squares
+	 */
+	public void repaint(long[] squares) {
+		for (int i = 0; i < dirty.length; i++) {
+			dirty[i] |= squares[i];
+		}
+	}
+
+	/**
+	 * Gets the square under a point of the canvas
+	 *
+	 * @param x : x coordinate on the canvas
+	 * @param y : y coordinate on the canvas
+	 * @return index of the square, or -1 if the point is outside the board
+	 */
+	public int squareAt(double x, double y) {
+		int col = (int) Math.floor((x - PADDING) / cell);
+		int row = (int) Math.floor((y - PADDING) / cell);
+		if (row < 0 || row >= size || col < 0 || col >= size) {
+			return -1;
+		}
+		return row * size + col;
+	}
+
+	/**
+	 * Stops repainting, call when the board is no longer shown
+	 */
+	public void stop() {
+		timer.stop();
+	}
+
+	/**
+	 * Repaints every marked square
+	 */
+	private void paint() {
+		if (!dirtyAll && ReversiEngine.count(dirty) == 0) {
+			return;
+		}
+		GraphicsContext gc = getGraphicsContext2D();
+		if (dirtyAll) {
+			gc.setFill(Color.GREEN);
+			gc.fillRect(0, 0, getWidth(), getHeight());
+			for (int square = 0; square < size * size; square++) {
+				ReversiEngine.set(dirty, square);
+			}
+			dirtyAll = false;
+		}
+		gc.setStroke(Color.BLACK);
+		gc.setLineWidth(1);
+		double token = cell * TOKEN;
+		for (int square = ReversiEngine.next(dirty, 0); square >= 0; square = ReversiEngine.next(dirty, square + 1)) {
+			double x = PADDING + (square % size) * cell;
+			double y = PADDING + (square / size) * cell;
+			gc.setFill(Color.GREEN);
+			gc.fillRect(x, y, cell, cell);
+			gc.strokeRect(x + 0.5, y + 0.5, cell - 1, cell - 1);
+
+			int color = model.getAtLocation(square / size, square % size);
+			if (color != ReversiModel.BLANK) {
+				double inset = (cell - token) / 2;
+				gc.setFill(color == ReversiModel.W ? Color.WHITE : Color.BLACK);
+				gc.fillOval(x + inset, y + inset, token, token);
+			}
+		}
+		ReversiEngine.clear(dirty);
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * ReversiChange is sent to the observers of ReversiModel at the end of a
+ * turn. It holds the position and the squares that changed since the last
+ * turn ended, so a view only needs to redraw those squares.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiChange {
+	private final ReversiPosition position;
+	private final long[] changedSquares;
+
+	/**
+	 * Constructor for ReversiChange
+	 *
+	 * @param position       : the position at the end of the turn
+	 * @param changedSquares : bitboard of the squares placed, flipped or removed,
+	 *                         one long per 64 squares
+	 */
+	public ReversiChange(ReversiPosition position, long[] changedSquares) {
+		this.position = position;
+		this.changedSquares = changedSquares;
+	}
+
+	/**
+	 * Getter for the position at the end of the turn
+	 * @return the position
+	 */
+	public ReversiPosition getPosition() {
+		return position;
+	}
+
+	/**
+	 * Getter for the squares that changed during the turn
+	 * @return bitboard with a bit set on every changed square, one long per 64 squares
+	 */
+	public long[] getChangedSquares() {
+		return changedSquares;
+	}
+}
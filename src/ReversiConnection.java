@@ -0,0 +1,505 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReversiConnection is one end of a game connection, shared by Server and Client.
+ * 
+ * By default it speaks ReversiProtocol over a SocketChannel, sending only the
+ * square of each move. In legacy mode it instead writes a serialized
+ * ReversiBoard per move through an ObjectOutputStream, for peers that have
+ * not been updated yet.
+ * 
+ * A binary connection survives a dropped socket. Both ends number their
+ * moves and keep the last ones sent. Heartbeats are sent while the game is
+ * idle, and a link silent for longer than the timeout is dropped. When the
+ * link drops, receive reconnects: the accepting end waits for the peer on
+ * the same port and the connecting end dials again with backoff. Both ends
+ * then send a resume with the last sequence number they received and get
+ * back only the moves they missed, or a snapshot of the board if the peer
+ * has already forgotten them. Duplicate moves are dropped.
+ * 
+ * @author Ryan Luu and Denny Ho
+ *
+ */
+public class ReversiConnection {
+	public static final long DEFAULT_HEARTBEAT_MILLIS = 2000;
+	public static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+	public static final long DEFAULT_RECONNECT_MILLIS = 60000;
+	public static final int DEFAULT_HISTORY = 64;
+
+	private static final long MAX_BACKOFF_MILLIS = 2000;
+
+	private final boolean legacy;
+
+	// Binary protocol
+	private volatile SocketChannel channel;
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(4096);
+	private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(ReversiProtocol.MAX_FRAME_SIZE);
+	private int sendSeq;
+	private volatile int recvSeq;
+
+	// Where to find the peer again after the link drops
+	private ServerSocketChannel server;
+	private String ip;
+	private int port;
+
+	// Moves sent and the position after the last one, to resend after a reconnect
+	private final ArrayDeque<ReversiMessage> history = new ArrayDeque<ReversiMessage>();
+	private ReversiPosition lastPosition;
+
+	private volatile long heartbeatMillis = DEFAULT_HEARTBEAT_MILLIS;
+	private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+	private volatile long reconnectMillis = DEFAULT_RECONNECT_MILLIS;
+	private volatile int historySize = DEFAULT_HISTORY;
+	private volatile long lastReceived;
+	private volatile long lastSent;
+	private volatile boolean closed;
+	private ScheduledExecutorService heartbeat;
+
+	// Legacy serialization
+	private Socket socket;
+	private ObjectOutputStream output;
+	private ObjectInputStream input;
+
+	/**
+	 * Constructor for ReversiConnection, the connection is opened with
+	 * acceptPeer or connectPeer
+	 * 
+	 * @param legacy : whether to use Java serialization instead of the binary protocol
+	 */
+	public ReversiConnection(boolean legacy) {
+		this.legacy = legacy;
+		readBuffer.flip();
+	}
+
+	/**
+	 * Waits for one peer to connect on a port
+	 * 
+	 * @param port   : port to listen on
+	 * @param legacy : whether to use Java serialization instead of the binary protocol
+	 * @return the connection to the peer
+	 * @throws IOException : when the port cannot be opened
+	 */
+	public static ReversiConnection accept(int port, boolean legacy) throws IOException {
+		ReversiConnection connection = new ReversiConnection(legacy);
+		connection.acceptPeer(port);
+		return connection;
+	}
+
+	/**
+	 * Connects to a peer waiting on a port
+	 * 
+	 * @param ip     : address of the peer
+	 * @param port   : port of the peer
+	 * @param legacy : whether to use Java serialization instead of the binary protocol
+	 * @return the connection to the peer
+	 * @throws IOException : when the peer cannot be reached
+	 */
+	public static ReversiConnection connect(String ip, int port, boolean legacy) throws IOException {
+		ReversiConnection connection = new ReversiConnection(legacy);
+		connection.connectPeer(ip, port);
+		return connection;
+	}
+
+	/**
+	 * Waits for one peer to connect on a port. A binary connection keeps the
+	 * port open to take the peer back if the link drops.
+	 * 
+	 * @param port : port to listen on
+	 * @throws IOException : when the port cannot be opened
+	 */
+	public void acceptPeer(int port) throws IOException {
+		if (legacy) {
+			try (ServerSocket server = new ServerSocket(port)) {
+				socket = server.accept();
+			}
+			openStreams();
+		} else {
+			server = ServerSocketChannel.open();
+			server.bind(new InetSocketAddress(port));
+			open(server.accept());
+		}
+	}
+
+	/**
+	 * Connects to a peer waiting on a port
+	 * 
+	 * @param ip   : address of the peer
+	 * @param port : port of the peer
+	 * @throws IOException : when the peer cannot be reached
+	 */
+	public void connectPeer(String ip, int port) throws IOException {
+		if (legacy) {
+			socket = new Socket(ip, port);
+			openStreams();
+		} else {
+			this.ip = ip;
+			this.port = port;
+			open(SocketChannel.open(new InetSocketAddress(ip, port)));
+		}
+	}
+
+	/**
+	 * Sets how often heartbeats are sent and how long the peer may stay
+	 * silent before the link is dropped and reconnected
+	 * 
+	 * @param heartbeatMillis : time between heartbeats in milliseconds
+	 * @param timeoutMillis   : time without any message in milliseconds
+	 */
+	public void setHeartbeat(long heartbeatMillis, long timeoutMillis) {
+		this.heartbeatMillis = heartbeatMillis;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Sets how long to keep trying to reach the peer after the link drops
+	 * 
+	 * @param reconnectMillis : time in milliseconds before receive gives up
+	 */
+	public void setReconnectTimeout(long reconnectMillis) {
+		this.reconnectMillis = reconnectMillis;
+	}
+
+	/**
+	 * Sets how many sent moves are kept to be resent. A peer further behind
+	 * gets a snapshot instead.
+	 * 
+	 * @param historySize : number of moves kept
+	 */
+	public void setHistorySize(int historySize) {
+		this.historySize = historySize;
+	}
+
+	/**
+	 * Opens the object streams of a legacy connection
+	 */
+	private void openStreams() throws IOException {
+		output = new ObjectOutputStream(socket.getOutputStream());
+		input = new ObjectInputStream(socket.getInputStream());
+	}
+
+	/**
+	 * Starts using a newly connected channel and the heartbeat, if it is not
+	 * running yet
+	 */
+	private synchronized void open(SocketChannel opened) throws IOException {
+		opened.socket().setTcpNoDelay(true);
+		readBuffer.clear();
+		readBuffer.flip();
+		channel = opened;
+		lastReceived = System.nanoTime();
+		if (heartbeat == null) {
+			heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Reversi heartbeat");
+				thread.setDaemon(true);
+				return thread;
+			});
+			heartbeat.scheduleWithFixedDelay(this::beat, 100, 100, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Sends a heartbeat when nothing was sent for a while, and drops a link
+	 * the peer has been silent on for longer than the timeout
+	 */
+	private void beat() {
+		SocketChannel current = channel;
+		if (current == null || !current.isOpen()) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (now - lastReceived > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+			// The reader sees the closed channel and reconnects
+			closeQuietly(current);
+		} else if (now - lastSent > TimeUnit.MILLISECONDS.toNanos(heartbeatMillis)) {
+			try {
+				synchronized (this) {
+					write(ReversiMessage.heartbeat(recvSeq));
+				}
+			} catch (IOException e) {
+				closeQuietly(current);
+			}
+		}
+	}
+
+	/**
+	 * Sends the turn just played. In binary mode the move is kept to be resent,
+	 * so it is not lost if the link is down, the peer gets it on reconnecting.
+	 * 
+	 * @param square   : index of the square played, or ReversiMessage.PASS
+	 * @param position : the position after the turn
+	 * @throws IOException : when the legacy peer cannot be written to
+	 */
+	public synchronized void sendMove(int square, ReversiPosition position) throws IOException {
+		if (legacy) {
+			output.writeObject(new ReversiBoard(position.toBoard()));
+			output.reset();
+		} else {
+			ReversiMessage move = ReversiMessage.move(++sendSeq, square);
+			history.addLast(move);
+			while (history.size() > Math.max(1, historySize)) {
+				history.removeFirst();
+			}
+			lastPosition = position;
+			try {
+				write(move);
+			} catch (IOException e) {
+				closeQuietly(channel);
+			}
+		}
+	}
+
+	/**
+	 * Sends the whole board
+	 * 
+	 * @param position : the board and the player to move
+	 * @throws IOException : when the peer cannot be written to
+	 */
+	public synchronized void sendSnapshot(ReversiPosition position) throws IOException {
+		if (legacy) {
+			output.writeObject(new ReversiBoard(position.toBoard()));
+			output.reset();
+		} else {
+			write(ReversiMessage.snapshot(sendSeq, position));
+		}
+	}
+
+	/**
+	 * Sends again what the peer missed after a sequence number: the moves if
+	 * they are still kept, otherwise a snapshot of the board
+	 */
+	private synchronized void resend(int peerSeq) throws IOException {
+		if (peerSeq >= sendSeq) {
+			return;
+		}
+		ReversiMessage oldest = history.peekFirst();
+		if (oldest == null || oldest.getSeq() > peerSeq + 1) {
+			write(ReversiMessage.snapshot(sendSeq, lastPosition));
+			return;
+		}
+		for (ReversiMessage move : history) {
+			if (move.getSeq() > peerSeq) {
+				write(move);
+			}
+		}
+	}
+
+	/**
+	 * Writes one frame to the channel
+	 */
+	private void write(ReversiMessage message) throws IOException {
+		SocketChannel current = channel;
+		if (current == null) {
+			throw new IOException("Not connected");
+		}
+		writeBuffer.clear();
+		ReversiProtocol.encode(message, writeBuffer);
+		writeBuffer.flip();
+		while (writeBuffer.hasRemaining()) {
+			current.write(writeBuffer);
+		}
+		lastSent = System.nanoTime();
+	}
+
+	/**
+	 * Waits for the next move or board from the peer, reconnecting if the link
+	 * drops. Boards received in legacy mode are returned as snapshots.
+	 * 
+	 * @return the message
+	 * @throws IOException            : when the connection is closed, or the
+	 *                                peer cannot be reached again in time
+	 * @throws ClassNotFoundException : when a legacy peer sends an unknown object
+	 */
+	public ReversiMessage receive() throws IOException, ClassNotFoundException {
+		if (legacy) {
+			ReversiBoard received = (ReversiBoard) input.readObject();
+			return ReversiMessage.snapshot(0, received, 0);
+		}
+		while (true) {
+			ReversiMessage message;
+			try {
+				message = read();
+			} catch (ProtocolException e) {
+				close();
+				throw e;
+			} catch (IOException e) {
+				if (closed) {
+					throw e;
+				}
+				reconnect(e);
+				continue;
+			}
+			lastReceived = System.nanoTime();
+			switch (message.getType()) {
+			case ReversiProtocol.HEARTBEAT:
+				break;
+			case ReversiProtocol.RESUME:
+				try {
+					resend(message.getSeq());
+				} catch (IOException e) {
+					closeQuietly(channel);
+				}
+				break;
+			case ReversiProtocol.MOVE:
+				if (message.getSeq() == recvSeq + 1) {
+					recvSeq = message.getSeq();
+					return message;
+				}
+				if (message.getSeq() > recvSeq + 1) {
+					// A move is missing, ask for everything after the last one
+					try {
+						synchronized (this) {
+							write(ReversiMessage.resume(recvSeq));
+						}
+					} catch (IOException e) {
+						closeQuietly(channel);
+					}
+				}
+				break;
+			case ReversiProtocol.SNAPSHOT:
+				if (message.getSeq() >= recvSeq) {
+					recvSeq = message.getSeq();
+					return message;
+				}
+				break;
+			default:
+				return message;
+			}
+		}
+	}
+
+	/**
+	 * Reads one frame from the channel
+	 */
+	private ReversiMessage read() throws IOException {
+		SocketChannel current = channel;
+		ReversiMessage message;
+		while ((message = ReversiProtocol.decode(readBuffer)) == null) {
+			readBuffer.compact();
+			int read = current.read(readBuffer);
+			readBuffer.flip();
+			if (read < 0) {
+				throw new IOException("Connection closed");
+			}
+		}
+		return message;
+	}
+
+	/**
+	 * Finds the peer again after the link dropped and asks it for the moves
+	 * missed. Gives up after the reconnect timeout.
+	 */
+	private void reconnect(IOException cause) throws IOException {
+		closeQuietly(channel);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reconnectMillis);
+		long backoff = 100;
+		while (!closed) {
+			try {
+				SocketChannel opened;
+				if (server != null) {
+					opened = acceptBefore(deadline);
+				} else {
+					opened = SocketChannel.open(new InetSocketAddress(ip, port));
+				}
+				synchronized (this) {
+					open(opened);
+					write(ReversiMessage.resume(recvSeq));
+				}
+				return;
+			} catch (IOException e) {
+				if (closed || System.nanoTime() - deadline > 0) {
+					break;
+				}
+			}
+			try {
+				Thread.sleep(backoff);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+		}
+		close();
+		throw new IOException("Lost the connection to the peer", cause);
+	}
+
+	/**
+	 * Accepts the peer again on the listening port, waiting no longer than the deadline
+	 */
+	private SocketChannel acceptBefore(long deadline) throws IOException {
+		server.configureBlocking(false);
+		try {
+			while (!closed && System.nanoTime() - deadline < 0) {
+				SocketChannel accepted = server.accept();
+				if (accepted != null) {
+					accepted.configureBlocking(true);
+					return accepted;
+				}
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			throw new IOException("The peer did not come back");
+		} finally {
+			server.configureBlocking(true);
+		}
+	}
+
+	private static void closeQuietly(SocketChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * @return whether the connection uses Java serialization
+	 */
+	public boolean isLegacy() {
+		return legacy;
+	}
+
+	/**
+	 * @return whether the connection was closed for good
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Closes the connection, it is not reconnected after this
+	 * 
+	 * @throws IOException : when the socket cannot be closed
+	 */
+	public void close() throws IOException {
+		closed = true;
+		if (legacy) {
+			socket.close();
+		} else {
+			if (heartbeat != null) {
+				heartbeat.shutdownNow();
+			}
+			if (server != null) {
+				server.close();
+			}
+			closeQuietly(channel);
+		}
+	}
+}
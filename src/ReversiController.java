@@ -1,5 +1,6 @@
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 /**
  * ReversiController is the controller for Reversi
@@ -10,6 +11,12 @@ import java.util.Collections;
 public class ReversiController {
 	
 	private ReversiModel model;
+	private ReversiStrategy strategy = new GreedyStrategy();
+	private int lastMove = -1;
+	// Made on first use, its table is a few megabytes
+	private volatile ReversiEndgameSolver solver;
+	private int endgameEmpties;
+	private volatile boolean lastMoveSolved;
 	
 	/**
 	 * Constructor for ReversiController sets the model and view
@@ -28,11 +35,15 @@ public class ReversiController {
 	 * @throws ReversiIllegalLocationException 
 	 */
 	public void humanTurn(int row, int col, int color) throws ReversiIllegalLocationException {
-		if (row < 0 || row > 7 || col < 0 || col > 7) {
+		int size = model.getSize();
+		if (row < 0 || row >= size || col < 0 || col >= size) {
 			throw new ReversiIllegalLocationException("Invalid Row or Column Entered");
 		}
-		getCount(row, col, color, true);
-		if (color == 2) {
+		lastMove = row * size + col;
+		if (model.getAtLocation(row, col) == ReversiModel.BLANK) {
+			model.makeMove(lastMove, color == 2 ? ReversiModel.B : ReversiModel.W);
+		}
+		else if (color == 2) {
 			model.placeB(row, col);
 			model.setCurrentPlayer(ReversiModel.W);
 		}
@@ -42,83 +53,271 @@ public class ReversiController {
 		}
 	}
 	/**
-	 * Computer turn finds a legal space that will result in the most captures and places
-	 * its token at that location. If best location ties in value, the first location is chosen.
+	 * Computer turn asks the current strategy for a move and places
+	 * its token at that location. If there is no legal move the turn passes.
 	 * 
 	 * @param color: parameter used to determine which color is played by the Bot
 	 */
 	public void computerTurn(int color) {
-		int currColor;
-		int oppColor;
-		ArrayList<int []> maxScoreList = new ArrayList<int []>();
+		computerTurn(color, strategy);
+	}
+	/**
+	 * Computer turn asks a strategy for a move and places its token at
+	 * that location. If there is no legal move the turn passes. Once few
+	 * enough squares are empty the endgame solver plays the move instead.
+	 * 
+	 * @param color: parameter used to determine which color is played by the Bot
+	 * @param strategy: strategy that chooses the move
+	 */
+	public void computerTurn(int color, ReversiStrategy strategy) {
+		int currColor = color == 2 ? ReversiModel.B : ReversiModel.W;
+		int square = chooseMove(model.getPosition(), currColor, strategy);
 		
-		if (color == 2) {
-			currColor = ReversiModel.B;
-			oppColor = ReversiModel.W;
+		// Place piece at best location and capture opponents pieces,
+		// with no legal move the turn passes to the opponent
+		playMove(square, currColor);
+	}
+	/**
+	 * Chooses a computer move without playing it, so the search can run off
+	 * the thread that owns the model. Once few enough squares are empty the
+	 * endgame solver chooses instead.
+	 * 
+	 * @param own   : bitboard of the computer
+	 * @param opp   : bitboard of the opponent
+	 * @param color : color of the computer
+	 * @return index of the square to play, or -1 to pass
+	 */
+	public int chooseMove(long own, long opp, int color) {
+		return chooseMove(own, opp, color, strategy);
+	}
+	/**
+	 * Chooses a computer move on a board of any size without playing it.
+	 * The endgame solver only plays 8x8 boards.
+	 * 
+	 * @param position : the position, with the computer to move
+	 * @param color    : color of the computer
+	 * @return index of the square to play, or -1 to pass
+	 */
+	public int chooseMove(ReversiPosition position, int color) {
+		return chooseMove(position, color, strategy);
+	}
+	/**
+	 * Chooses a computer move on a board of any size without playing it,
+	 * giving up once cancelled. Unlike stop, the token belongs to this one
+	 * search, so a cancel that comes before the search starts is not lost.
+	 * 
+	 * @param position  : the position, with the computer to move
+	 * @param color     : color of the computer
+	 * @param cancelled : true once the search should return its best move so far
+	 * @return index of the square to play, or -1 to pass
+	 */
+	public int chooseMove(ReversiPosition position, int color, BooleanSupplier cancelled) {
+		if (position.getSize() == ReversiModel.BOARD_DIMENSION) {
+			long own = position.getBits(color);
+			long opp = position.getBits(opposite(color));
+			lastMoveSolved = ReversiBitboard.count(~(own | opp)) <= endgameEmpties;
+			if (lastMoveSolved) {
+				return getSolver().solve(own, opp, cancelled);
+			}
 		} else {
-			currColor = ReversiModel.W;
-			oppColor = ReversiModel.B;
+			lastMoveSolved = false;
 		}
-		int maxCount = 0;
-		int row = 0;
-		int col = 0;
-	
-		// Search for best legal move
-		for (int i = 0; i < ReversiModel.BOARD_DIMENSION; i++) {
-			for (int j = 0; j < ReversiModel.BOARD_DIMENSION; j++) {
-				int count = getCount(i, j, currColor, false);
-				if (count > maxCount) {
-					row = i;
-					col = j;
-					maxCount = count;
-				}
+		return strategy.chooseMove(ReversiEngine.forSize(position.getSize()), position.getWords(color),
+				position.getWords(opposite(color)), color, cancelled);
+	}
+	private int chooseMove(ReversiPosition position, int color, ReversiStrategy strategy) {
+		if (position.getSize() == ReversiModel.BOARD_DIMENSION) {
+			return chooseMove(position.getBits(color), position.getBits(opposite(color)), color, strategy);
+		}
+		lastMoveSolved = false;
+		return strategy.chooseMove(ReversiEngine.forSize(position.getSize()), position.getWords(color),
+				position.getWords(opposite(color)), color);
+	}
+	private int chooseMove(long own, long opp, int color, ReversiStrategy strategy) {
+		lastMoveSolved = ReversiBitboard.count(~(own | opp)) <= endgameEmpties;
+		return lastMoveSolved ? getSolver().solve(own, opp) : strategy.chooseMove(own, opp, color);
+	}
+	/**
+	 * Predicts the opponent's replies to a position, most likely first, so
+	 * the computer can search its answers while the opponent thinks. The
+	 * reply the alpha-beta table holds for the position comes first, then
+	 * the replies that leave the computer the fewest moves.
+	 * 
+	 * @param position : the position, with the opponent to move
+	 * @param max      : most replies to predict
+	 * @return the position after each reply, with the computer to move, or
+	 *         none if the game is over
+	 */
+	public List<ReversiPosition> predictReplies(ReversiPosition position, int max) {
+		int size = position.getSize();
+		ReversiEngine engine = ReversiEngine.forSize(size);
+		int color = position.getToMove();
+		int computer = opposite(color);
+		long[] own = position.getWords(color);
+		long[] opp = position.getWords(computer);
+		long[] moves = engine.newBoard();
+		engine.legalMoves(own, opp, moves);
+		List<ReversiPosition> replies = new ArrayList<ReversiPosition>();
+		int n = ReversiEngine.count(moves);
+		if (n == 0) {
+			engine.legalMoves(opp, own, moves);
+			if (ReversiEngine.count(moves) > 0) {
+				// The opponent has to pass
+				replies.add(new ReversiPosition(size, position.getWords(ReversiModel.W),
+						position.getWords(ReversiModel.B), computer));
 			}
+			return replies;
 		}
-		// Looks for Multiple Maxes and adds to List 
-		for (int i = 0; i < ReversiModel.BOARD_DIMENSION; i++) {
-			for (int j = 0; j < ReversiModel.BOARD_DIMENSION; j++) {
-				int count = getCount(i, j, currColor, false);
-				if (count == maxCount) {
-					maxScoreList.add(new int[]{i,j});
-				}
+
+		// Insertion sort of the replies by key, the lists are short
+		int first = tableMove(position);
+		long[][] children = new long[n * 2][];
+		int[] keys = new int[n];
+		long[] flips = engine.newBoard();
+		long[] answers = engine.newBoard();
+		int count = 0;
+		for (int square = ReversiEngine.next(moves, 0); square >= 0; square = ReversiEngine.next(moves, square + 1)) {
+			long[] childOwn = own.clone();
+			long[] childOpp = opp.clone();
+			engine.flips(childOwn, childOpp, square, flips);
+			engine.play(childOwn, childOpp, square, flips);
+			engine.legalMoves(childOpp, childOwn, answers);
+			int key = square == first ? -1 : ReversiEngine.count(answers);
+			int i = count++;
+			while (i > 0 && keys[i - 1] > key) {
+				keys[i] = keys[i - 1];
+				children[i * 2] = children[i * 2 - 2];
+				children[i * 2 + 1] = children[i * 2 - 1];
+				i--;
 			}
+			keys[i] = key;
+			children[i * 2] = childOwn;
+			children[i * 2 + 1] = childOpp;
 		}
-		
-		int playRow = 0;
-		int playCol = 0;
-		
-		
-		if (maxScoreList.size() == 1) { // If there is only one MAX
-			playRow = maxScoreList.get(0)[0];
-			playCol = maxScoreList.get(0)[1];
-		} else {
-			Collections.shuffle(maxScoreList); // Randomize if there are many MAXES 
-			playRow = maxScoreList.get(0)[0];
-			playCol = maxScoreList.get(0)[1];
+		for (int i = 0; i < Math.min(n, max); i++) {
+			long[] childOwn = children[i * 2];
+			long[] childOpp = children[i * 2 + 1];
+			replies.add(color == ReversiModel.W ? new ReversiPosition(size, childOwn, childOpp, computer)
+					: new ReversiPosition(size, childOpp, childOwn, computer));
 		}
-			
-		// Place piece at best location and capture opponents pieces 
-		if (color == 2) {
-			getCount(playRow, playCol,currColor, true);
-			model.placeB(playRow, playCol);
-							model.setCurrentPlayer(oppColor);
-		} else {
-			getCount(playRow, playCol, currColor, true);
-			model.placeW(playRow, playCol);			
-			model.setCurrentPlayer(oppColor);
+		return replies;
+	}
+	/**
+	 * Gets the best move the alpha-beta table holds for a position
+	 * 
+	 * @param position : the position
+	 * @return index of the square, or -1 if the strategy keeps no table or has no entry
+	 */
+	private int tableMove(ReversiPosition position) {
+		ReversiStrategy search = strategy instanceof OpeningBookStrategy ? ((OpeningBookStrategy) strategy).getStrategy()
+				: strategy;
+		if (!(search instanceof AlphaBetaStrategy) || position.getSize() != ReversiModel.BOARD_DIMENSION) {
+			return -1;
 		}
+		long entry = ((AlphaBetaStrategy) search).getTable()
+				.probe(ReversiZobrist.hash(position.getWBits(), position.getBBits(), position.getToMove()));
+		return entry != 0 ? ReversiTranspositionTable.move(entry) : -1;
+	}
+	/**
+	 * Plays a move chosen by chooseMove
+	 * 
+	 * @param square : index of the square, or -1 to pass
+	 * @param color  : color of the computer
+	 */
+	public void playMove(int square, int color) {
+		lastMove = square;
+		model.makeMove(square, color);
+	}
+	/**
+	 * Stops a move being chosen on another thread
+	 */
+	public void stop() {
+		strategy.stop();
+		ReversiEndgameSolver current = solver;
+		if (current != null) {
+			current.stop();
 		}
-
+	}
+	/**
+	 * Takes back the last move played
+	 * @return whether there was a move to take back
+	 */
+	public boolean undo() {
+		return model.unmakeMove();
+	}
+	/**
+	 * Plays the last move taken back again
+	 * @return whether there was a move to play again
+	 */
+	public boolean redo() {
+		return model.redoMove();
+	}
+	/**
+	 * Getter for the last move played through this controller
+	 * @return index of the square played, or -1 if the last turn was a pass
+	 */
+	public int getLastMove() {
+		return lastMove;
+	}
+	/**
+	 * Setter for the strategy used by computer turns
+	 * @param strategy : strategy that chooses computer moves
+	 */
+	public void setStrategy(ReversiStrategy strategy) {
+		this.strategy = strategy;
+	}
+	/**
+	 * Setter for the number of empty squares at which the endgame solver
+	 * takes over computer turns
+	 * @param endgameEmpties : most empty squares to solve, 0 never solves
+	 */
+	public void setEndgameEmpties(int endgameEmpties) {
+		this.endgameEmpties = endgameEmpties;
+	}
+	/**
+	 * Getter for the number of empty squares at which the endgame solver
+	 * takes over computer turns
+	 * @return most empty squares to solve
+	 */
+	public int getEndgameEmpties() {
+		return endgameEmpties;
+	}
+	/**
+	 * Getter for the endgame solver, it holds the score, nodes and time of
+	 * the last solve
+	 * @return the endgame solver
+	 */
+	public ReversiEndgameSolver getSolver() {
+		if (solver == null) {
+			solver = new ReversiEndgameSolver();
+		}
+		return solver;
+	}
+	/**
+	 * Getter for whether the last computer turn was played by the solver
+	 * @return true if the endgame solver chose the last computer move
+	 */
+	public boolean isLastMoveSolved() {
+		return lastMoveSolved;
+	}
+	/**
+	 * Getter for the strategy used by computer turns
+	 * @return strategy that chooses computer moves
+	 */
+	public ReversiStrategy getStrategy() {
+		return strategy;
+	}
 	
 	/**
 	 * Gets the grid in a string representation
 	 * @return the grid
 	 */
 	public int[][] getGrid() {
-		int [][] grid = new int[ReversiModel.BOARD_DIMENSION][ReversiModel.BOARD_DIMENSION];
+		int size = model.getSize();
+		int [][] grid = new int[size][size];
 		
-		for (int i = 0; i < ReversiModel.BOARD_DIMENSION; i++) {
-			for (int j = 0; j < ReversiModel.BOARD_DIMENSION; j++) {
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
 				grid[i][j] = model.getAtLocation(i, j);
 			}
 		}
@@ -129,64 +328,16 @@ public class ReversiController {
 	 * @param color : color of the player whose number of valid moves will be updated
 	 */
 	public void updateValidMoves(int color) {
-		int numValidMoves = 0;
-		for (int i = 0; i < ReversiModel.BOARD_DIMENSION; i++) {
-			for (int j = 0; j < ReversiModel.BOARD_DIMENSION; j++) {
-				if (isValidMove(i, j, color)) {
-					numValidMoves += 1;
-				}
-			}
-		}
-		model.setValidMoves(numValidMoves);
+		model.setValidMoves(model.getLegalMoveCount(color));
 	}
 	/**
-	 * Gets the number of captures if piece is placed at location
+	 * Gets every legal move for a player as a bitboard, on boards up to 8x8
 	 * 
-	 * @param row : intended row placement
-	 * @param col : intended column placement
-	 * @param color : color of piece placed
-	 * @param flip : whether to capture now
-	 * @return the number of captures
+	 * @param color : color of the player
+	 * @return bitboard with a bit set on every legal location of the first 64 squares
 	 */
-	private int getCount(int row, int col, int color, boolean flip) {
-		if(model.getAtLocation(row, col) != ReversiModel.BLANK || !isValidMove(row,col, color)) {
-			return 0;
-		}
-		
-		int oppositeColor;
-		if (color == 1) {
-			oppositeColor = 2;
-		}else {
-			oppositeColor = 1;
-		}
-		
-		// Search in all directions of location to count captures
-		int left = flipDirection(row, col, 0, 1, color, oppositeColor, false); 
-		if (left > 0 && flip)
-			flipDirection(row, col, 0, 1, color, oppositeColor, true);
-		int right = flipDirection(row, col, 0, -1, color, oppositeColor, false); 
-		if (right > 0 && flip)
-			flipDirection(row, col, 0, -1, color, oppositeColor, true);
-		int down = flipDirection(row, col, 1, 0, color, oppositeColor, false);
-		if (down > 0 && flip)
-			flipDirection(row, col, 1, 0, color, oppositeColor, true);
-		int up = flipDirection(row, col, -1, 0, color, oppositeColor, false);
-		if (up > 0 && flip) 
-			flipDirection(row, col, -1, 0, color, oppositeColor, true);
-		int rightDown = flipDirection(row, col, 1, 1, color, oppositeColor, false);
-		if (rightDown > 0 && flip)
-			flipDirection(row, col, 1, 1, color, oppositeColor, true);
-		int rightUp = flipDirection(row, col, -1, 1, color, oppositeColor, false);
-		if (rightUp > 0 && flip)
-			flipDirection(row, col, -1, 1, color, oppositeColor, true);
-		int leftUp = flipDirection(row, col, -1, -1, color, oppositeColor, false);
-		if (leftUp > 0 && flip)
-			flipDirection(row, col, -1, -1, color, oppositeColor, true);
-		int leftDown = flipDirection(row, col, 1, -1, color, oppositeColor, false);
-		if (leftDown > 0 && flip)
-			flipDirection(row, col, 1, -1, color, oppositeColor, true);
-		
-		return (left + right + down + up + rightDown + rightUp + leftUp + leftDown);
+	public long legalMoves(int color) {
+		return model.getLegalMoves(color);
 	}
 	/**
 	 * Checks if location is a legal move
@@ -197,104 +348,20 @@ public class ReversiController {
 	 * @return whether location is legal
 	 */
 	public boolean isValidMove(int row, int col, int color) {
-		if (row < 0 || row > 7 || col < 0 || col > 7) {
+		int size = model.getSize();
+		if (row < 0 || row >= size || col < 0 || col >= size) {
 			return false;
 		}
-		if (model.getAtLocation(row, col) != ReversiModel.BLANK) {
-			return false;
-		}
-		
-		int oppositeColor;
-		if (color == 1) {
-			oppositeColor = 2;
-		}else {
-			oppositeColor = 1;
-		}
-	
-		// Search in all directions to see if captures are possible
-		boolean left = checkDirection(row, col, 0, 1, color, oppositeColor); 
-		boolean right = checkDirection(row, col, 0, -1, color, oppositeColor); 
-		boolean down = checkDirection(row, col, 1, 0, color, oppositeColor);
-		boolean up = checkDirection(row, col, -1, 0, color, oppositeColor);
-		boolean rightDown = checkDirection(row, col, 1, 1, color, oppositeColor);
-		boolean rightUp = checkDirection(row, col, -1, 1, color, oppositeColor);
-		boolean leftUp = checkDirection(row, col, -1, -1, color, oppositeColor);
-		boolean leftDown = checkDirection(row, col, 1, -1, color, oppositeColor);
-
-		return (left || right || down || up || rightDown || rightUp || leftUp || leftDown);
-		
+		return model.isLegalMove(color, row * size + col);
 	}
 	/**
-	 * Checks if a direction has any possible captures. 
+	 * Gets the opposite color of a player
 	 * 
-	 * @param row : row of location
-	 * @param col : column of location
-	 * @param rChange : change in row value
-	 * @param cChange : change in column value
-	 * @param color : color of token to be placed
-	 * @param oppositeColor : opposite color of token
-	 * @return whether the location can capture in direction
+	 * @param color : color of the player
+	 * @return the color of the opponent
 	 */
-	private boolean checkDirection(int row, int col, int rChange, int cChange, int color, int oppositeColor) {
-		boolean oppositeFound;
-		oppositeFound = false;
-		int x = row + rChange;
-		int y = col + cChange;
-		while (x < ReversiModel.BOARD_DIMENSION && y < ReversiModel.BOARD_DIMENSION && x >= 0 && y >= 0) {
-			if (model.getAtLocation(x, y) == oppositeColor) {
-				oppositeFound = true;
-			}else if (model.getAtLocation(x, y) == ReversiModel.BLANK) {
-				break;
-			}else if (model.getAtLocation(x, y) == color && oppositeFound == true) {
-				return true;
-			}else if (model.getAtLocation(x, y) == color && oppositeFound == false){
-				break;
-			}
-			x += rChange;
-			y += cChange;
-		}
-		return false;
-	}
-	/**
-	 * Counts the number of captures possible in one direction 
-	 * from a location on the board. Method can also capture pieces.
-	 * 
-	 * @param row : row of location
-	 * @param col : column of location
-	 * @param rChange : row change direction
-	 * @param cChange : column change direction 
-	 * @param color : color of token intended to be placed
-	 * @param oppositeColor : opposite color of token
-	 * @param flip : whether the program wants to flip now 
-	 * @return the number of possible captures 
-	 */
-	private int flipDirection(int row, int col, int rChange, int cChange, int color, int oppositeColor, boolean flip) {
-		boolean oppositeFound;
-		oppositeFound = false;
-		int count = 0;
-		int x = row + rChange;
-		int y = col + cChange;
-		while (x < ReversiModel.BOARD_DIMENSION && y < ReversiModel.BOARD_DIMENSION && x >= 0 && y >= 0) {
-			if (model.getAtLocation(x, y) == oppositeColor) {
-				oppositeFound = true;
-				if (flip) {
-					model.flip(x, y);
-				}
-				count++;
-			}else if (model.getAtLocation(x, y) == ReversiModel.BLANK) {
-				count = 0;
-				break;
-			}else if (model.getAtLocation(x, y) == color && oppositeFound == true) {
-				return count;
-			}else if (model.getAtLocation(x, y) == color && oppositeFound == false){
-				count = 0;
-				break;
-			}
-			x += rChange;
-			y += cChange;
-		}
-		count = 0;
-		return count;
+	private static int opposite(int color) {
+		return color == ReversiModel.B ? ReversiModel.W : ReversiModel.B;
 	}
 	/**
 	 * Checks if game has ended. Game ends when board is full or 
@@ -303,28 +370,15 @@ public class ReversiController {
 	 * @return whether game has ended
 	 */
 	public boolean isGameOver() {
-		boolean emptySpace = false;
-		
 		// Board is full
-		for(int i = 0; i < ReversiModel.BOARD_DIMENSION; i++) {
-			for(int j = 0; j < ReversiModel.BOARD_DIMENSION; j++) {
-				if(model.getAtLocation(i, j) == ReversiModel.BLANK) {
-					emptySpace = true;
-				}
-			}
-		}
-		if(!emptySpace) {
+		if (model.getEmptyCount() == 0) {
 			return true;
 		}
 		
 		// No more legal moves
 		updateValidMoves(model.getCurrentPlayer());
 		if (model.getValidMoves() == 0) {
-			if (model.getCurrentPlayer() == 1) {
-				updateValidMoves(2);
-			}else {
-				updateValidMoves(1);
-			}
+			updateValidMoves(opposite(model.getCurrentPlayer()));
 			if (model.getValidMoves() == 0) {
 				return true;
 			}
@@ -332,29 +386,11 @@ public class ReversiController {
 		return false;
 	}
 	/**
-	 * Update the score inside the model. Counts number of Black token
-	 * and White tokens on the board to get score.
+	 * Update the score inside the model. Uses the number of Black tokens
+	 * and White tokens the model keeps as tokens are placed and flipped.
 	 */
 	public void updateScore() {
-		int bCount = 0;
-		int wCount = 0;
-		// Count black tokens
-		for(int i = 0; i < ReversiModel.BOARD_DIMENSION; i++) {
-			for(int j = 0; j < ReversiModel.BOARD_DIMENSION; j++) {
-				if(model.getAtLocation(i, j) == ReversiModel.B) {
-					bCount++;
-				}
-			}
-		}
-		// Count white tokens
-		for(int i = 0; i < ReversiModel.BOARD_DIMENSION; i++) {
-			for(int j = 0; j < ReversiModel.BOARD_DIMENSION; j++) {
-				if(model.getAtLocation(i, j) == ReversiModel.W) {
-					wCount++;
-				}
-			}
-		}
-		model.setBScore(bCount);
-		model.setWScore(wCount);
+		model.setBScore(model.getBCount());
+		model.setWScore(model.getWCount());
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,481 @@
+import java.util.function.BooleanSupplier;
+
+/**
+ * ReversiEndgameSolver finds the best move and the exact final score of a
+ * position by searching every move to the end of the game.
+ *
+ * The empty squares are kept in a linked list in a fixed order, corners
+ * first and the squares next to corners last, so a node only looks at the
+ * squares that are still empty and tries the likely good ones first. Far from
+ * the end the moves are searched fastest first, the move that leaves the
+ * opponent the fewest replies before the others, with a null window for every
+ * move after the first. Near the end, where sorting costs more than it saves,
+ * moves in a quadrant with an odd number of empty squares are tried before
+ * the others, since the player who moves last in a region tends to gain.
+ *
+ * Scores are the final disc difference for the player to move, with the
+ * empty squares of a game that ends early given to the winner.
+ *
+ * A solve can be stopped from another thread, or given a cancellation token
+ * of its own, it then returns at once with a legal move that is not to be
+ * trusted.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiEndgameSolver {
+	private static final int INFINITY = 100;
+	private static final int HEAD = 64;
+
+	// Below this many empties moves are ordered by parity instead of sorted
+	private static final int FASTEST_FIRST_EMPTIES = 7;
+
+	// Positions with at least this many empties keep their bounds in the table
+	private static final int TABLE_EMPTIES = 10;
+	private static final int TABLE_BITS = 18;
+
+	// Order the empty squares are kept in, corners first and X-squares last
+	private static final int[] SQUARE_ORDER = {
+			0, 7, 56, 63,
+			2, 5, 16, 23, 40, 47, 58, 61,
+			3, 4, 24, 31, 32, 39, 59, 60,
+			18, 21, 42, 45,
+			19, 20, 26, 29, 34, 37, 43, 44,
+			11, 12, 25, 30, 33, 38, 51, 52,
+			10, 13, 17, 22, 41, 46, 50, 53,
+			1, 6, 8, 15, 48, 55, 57, 62,
+			9, 14, 49, 54,
+			27, 28, 35, 36 };
+
+	// Bit of the quadrant each square is in, and the squares around each square
+	private static final int[] QUADRANT = new int[64];
+	private static final long[] NEIGHBORS = new long[64];
+
+	static {
+		for (int square = 0; square < 64; square++) {
+			int row = square / 8;
+			int col = square % 8;
+			QUADRANT[square] = 1 << ((row / 4) * 2 + col / 4);
+			for (int r = Math.max(0, row - 1); r <= Math.min(7, row + 1); r++) {
+				for (int c = Math.max(0, col - 1); c <= Math.min(7, col + 1); c++) {
+					if (r != row || c != col) {
+						NEIGHBORS[square] |= ReversiBitboard.bit(r, c);
+					}
+				}
+			}
+		}
+	}
+
+	// Doubly linked list of the empty squares, HEAD is the list head
+	private final int[] next = new int[HEAD + 1];
+	private final int[] prev = new int[HEAD + 1];
+
+	private final int[][] moveBuffer = new int[64][64];
+	private final int[][] keyBuffer = new int[64][64];
+	private final long[][] flipBuffer = new long[64][64];
+
+	// Bounds on the score of positions searched before, keyed by both bitboards
+	private final long[] tableOwn = new long[1 << TABLE_BITS];
+	private final long[] tableOpp = new long[1 << TABLE_BITS];
+	private final byte[] tableLower = new byte[1 << TABLE_BITS];
+	private final byte[] tableUpper = new byte[1 << TABLE_BITS];
+	private final byte[] tableMove = new byte[1 << TABLE_BITS];
+
+	// Results of the last solve
+	private long nodes;
+	private volatile boolean stopped;
+	private BooleanSupplier cancelled;
+	private long lastTime;
+	private int lastScore;
+	private int lastEmpties;
+
+	/**
+	 * Finds the best move of a position by searching to the end of the game
+	 *
+	 * @param own : bitboard of the player to move
+	 * @param opp : bitboard of the opponent
+	 * @return index of the best square, or -1 if the player must pass
+	 */
+	public int solve(long own, long opp) {
+		return solve(own, opp, () -> false);
+	}
+
+	/**
+	 * Finds the best move of a position by searching to the end of the game,
+	 * giving up once cancelled
+	 *
+	 * @param own       : bitboard of the player to move
+	 * @param opp       : bitboard of the opponent
+	 * @param cancelled : true once the solve should return, with the best
+	 *                  move found so far or else the first move it would try
+	 * @return index of the best square, or -1 if the player must pass
+	 */
+	public int solve(long own, long opp, BooleanSupplier cancelled) {
+		long start = System.nanoTime();
+		nodes = 1;
+		stopped = false;
+		this.cancelled = cancelled;
+		long empty = ~(own | opp);
+		lastEmpties = ReversiBitboard.count(empty);
+		int parity = link(empty);
+
+		int best = -1;
+		long moves = ReversiBitboard.legalMoves(own, opp);
+		if (moves == 0) {
+			lastScore = -search(opp, own, -INFINITY, INFINITY, lastEmpties, parity);
+		} else {
+			int n = orderMoves(own, opp, moves, parity, 0, -1);
+			int[] squares = moveBuffer[0];
+			long[] flips = flipBuffer[0];
+			int alpha = -INFINITY;
+			for (int i = 0; i < n; i++) {
+				int square = squares[i];
+				remove(square);
+				int score = -search(opp ^ flips[i], own | flips[i] | (1L << square), -INFINITY, -alpha,
+						lastEmpties - 1, parity ^ QUADRANT[square]);
+				restore(square);
+				if (stopped()) {
+					break;
+				}
+				if (score > alpha) {
+					alpha = score;
+					best = square;
+				}
+			}
+			if (best < 0) {
+				// Stopped before the first move was solved, still play a legal move
+				best = squares[0];
+			}
+			lastScore = alpha;
+		}
+		lastTime = System.nanoTime() - start;
+		return best;
+	}
+
+	/**
+	 * Stops a solve running on another thread. A solve that has not started
+	 * yet is not stopped, give it a cancellation token for that.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Checks whether the solve was stopped or cancelled
+	 */
+	private boolean stopped() {
+		if (!stopped && cancelled.getAsBoolean()) {
+			stopped = true;
+		}
+		return stopped;
+	}
+
+	/**
+	 * Gets the exact final score of a position with perfect play by both sides
+	 *
+	 * @param own : bitboard of the player to move
+	 * @param opp : bitboard of the opponent
+	 * @return final disc difference for the player to move
+	 */
+	public int score(long own, long opp) {
+		solve(own, opp);
+		return lastScore;
+	}
+
+	/**
+	 * Searches a position to the end of the game
+	 *
+	 * @param own     : bitboard of the player to move
+	 * @param opp     : bitboard of the opponent
+	 * @param alpha   : lower bound of the window
+	 * @param beta    : upper bound of the window
+	 * @param empties : number of empty squares
+	 * @param parity  : quadrants with an odd number of empty squares
+	 * @return final disc difference for the player to move
+	 */
+	private int search(long own, long opp, int alpha, int beta, int empties, int parity) {
+		if (empties > FASTEST_FIRST_EMPTIES) {
+			return searchSorted(own, opp, alpha, beta, empties, parity);
+		}
+		nodes++;
+		if (empties == 1) {
+			return lastMove(own, opp, next[HEAD]);
+		}
+
+		int best = -INFINITY;
+		// Odd quadrants first, then the rest
+		for (int odd = 1; odd >= 0; odd--) {
+			for (int square = next[HEAD]; square != HEAD; square = next[square]) {
+				if (((parity & QUADRANT[square]) != 0 ? 1 : 0) != odd || (opp & NEIGHBORS[square]) == 0) {
+					continue;
+				}
+				long flips = ReversiBitboard.flips(own, opp, square);
+				if (flips == 0) {
+					continue;
+				}
+				remove(square);
+				int score = -search(opp ^ flips, own | flips | (1L << square), -beta, -alpha, empties - 1,
+						parity ^ QUADRANT[square]);
+				restore(square);
+				if (score > best) {
+					best = score;
+					if (score > alpha) {
+						alpha = score;
+						if (alpha >= beta) {
+							return best;
+						}
+					}
+				}
+			}
+		}
+		if (best == -INFINITY) {
+			return pass(own, opp, alpha, beta, empties, parity);
+		}
+		return best;
+	}
+
+	/**
+	 * Searches a position with the moves sorted fastest first, searching every
+	 * move after the first with a null window
+	 */
+	private int searchSorted(long own, long opp, int alpha, int beta, int empties, int parity) {
+		nodes++;
+		long moves = ReversiBitboard.legalMoves(own, opp);
+		if (moves == 0) {
+			return pass(own, opp, alpha, beta, empties, parity);
+		}
+
+		// Narrow the window with the bounds found by an earlier search
+		int index = -1;
+		int tableMoveSquare = -1;
+		if (empties >= TABLE_EMPTIES) {
+			index = index(own, opp);
+			if (tableOwn[index] == own && tableOpp[index] == opp) {
+				int lower = tableLower[index];
+				int upper = tableUpper[index];
+				if (lower >= beta) {
+					return lower;
+				}
+				if (upper <= alpha) {
+					return upper;
+				}
+				alpha = Math.max(alpha, lower);
+				beta = Math.min(beta, upper);
+				tableMoveSquare = tableMove[index];
+			}
+		}
+		int alphaOrig = alpha;
+
+		int n = orderMoves(own, opp, moves, parity, empties, tableMoveSquare);
+		int[] squares = moveBuffer[empties];
+		long[] flips = flipBuffer[empties];
+
+		int best = -INFINITY;
+		int bestSquare = squares[0];
+		for (int i = 0; i < n; i++) {
+			int square = squares[i];
+			long childOwn = opp ^ flips[i];
+			long childOpp = own | flips[i] | (1L << square);
+			int childParity = parity ^ QUADRANT[square];
+			remove(square);
+			int score;
+			if (i == 0) {
+				score = -search(childOwn, childOpp, -beta, -alpha, empties - 1, childParity);
+			} else {
+				score = -search(childOwn, childOpp, -alpha - 1, -alpha, empties - 1, childParity);
+				if (score > alpha && score < beta) {
+					score = -search(childOwn, childOpp, -beta, -score, empties - 1, childParity);
+				}
+			}
+			restore(square);
+			// A stopped search must not leave its made up scores in the table
+			if (stopped()) {
+				return 0;
+			}
+			if (score > best) {
+				best = score;
+				bestSquare = square;
+				if (score > alpha) {
+					alpha = score;
+					if (alpha >= beta) {
+						break;
+					}
+				}
+			}
+		}
+		if (index >= 0) {
+			tableOwn[index] = own;
+			tableOpp[index] = opp;
+			tableLower[index] = (byte) (best > alphaOrig ? best : -64);
+			tableUpper[index] = (byte) (best < beta ? best : 64);
+			tableMove[index] = (byte) bestSquare;
+		}
+		return best;
+	}
+
+	/**
+	 * Gets the table slot of a position
+	 */
+	private static int index(long own, long opp) {
+		long h = own * 0x9E3779B97F4A7C15L ^ opp * 0xC2B2AE3D27D4EB4FL;
+		return (int) (h >>> (64 - TABLE_BITS));
+	}
+
+	/**
+	 * Passes the turn, or scores the game if neither player can move
+	 */
+	private int pass(long own, long opp, int alpha, int beta, int empties, int parity) {
+		if (ReversiBitboard.legalMoves(opp, own) == 0) {
+			return finalScore(own, opp, empties);
+		}
+		return -search(opp, own, -beta, -alpha, empties, parity);
+	}
+
+	/**
+	 * Scores the position when one empty square is left
+	 */
+	private int lastMove(long own, long opp, int square) {
+		int diff = ReversiBitboard.count(own) - ReversiBitboard.count(opp);
+		long flips = ReversiBitboard.flips(own, opp, square);
+		if (flips != 0) {
+			return diff + 2 * ReversiBitboard.count(flips) + 1;
+		}
+		flips = ReversiBitboard.flips(opp, own, square);
+		if (flips != 0) {
+			return diff - 2 * ReversiBitboard.count(flips) - 1;
+		}
+		return diff > 0 ? diff + 1 : diff - 1;
+	}
+
+	/**
+	 * Sorts the legal moves so the ones that leave the opponent the fewest
+	 * replies come first, corners and odd quadrants breaking ties. The best
+	 * move of an earlier search goes before all of them.
+	 *
+	 * @return the number of moves
+	 */
+	private int orderMoves(long own, long opp, long moves, int parity, int ply, int first) {
+		int[] squares = moveBuffer[ply];
+		int[] keys = keyBuffer[ply];
+		long[] flipped = flipBuffer[ply];
+		int n = 0;
+		for (int square = next[HEAD]; square != HEAD; square = next[square]) {
+			if ((moves & (1L << square)) == 0) {
+				continue;
+			}
+			long flips = ReversiBitboard.flips(own, opp, square);
+			long childOwn = own | flips | (1L << square);
+			long childOpp = opp ^ flips;
+			int key = ReversiBitboard.count(ReversiBitboard.legalMoves(childOpp, childOwn)) * 4;
+			if ((parity & QUADRANT[square]) == 0) {
+				key += 1;
+			}
+			if (square == first) {
+				key = -1;
+			}
+
+			// Insertion sort keeps the list order for equal keys, so corners stay ahead
+			int i = n++;
+			while (i > 0 && keys[i - 1] > key) {
+				keys[i] = keys[i - 1];
+				squares[i] = squares[i - 1];
+				flipped[i] = flipped[i - 1];
+				i--;
+			}
+			keys[i] = key;
+			squares[i] = square;
+			flipped[i] = flips;
+		}
+		return n;
+	}
+
+	/**
+	 * Scores a finished game, the empty squares go to the winner
+	 */
+	private static int finalScore(long own, long opp, int empties) {
+		int diff = ReversiBitboard.count(own) - ReversiBitboard.count(opp);
+		if (diff > 0) {
+			return diff + empties;
+		} else if (diff < 0) {
+			return diff - empties;
+		}
+		return 0;
+	}
+
+	/**
+	 * Builds the list of empty squares
+	 *
+	 * @return quadrants with an odd number of empty squares
+	 */
+	private int link(long empty) {
+		int parity = 0;
+		int last = HEAD;
+		for (int square : SQUARE_ORDER) {
+			if ((empty & (1L << square)) != 0) {
+				next[last] = square;
+				prev[square] = last;
+				last = square;
+				parity ^= QUADRANT[square];
+			}
+		}
+		next[last] = HEAD;
+		prev[HEAD] = last;
+		return parity;
+	}
+
+	/**
+	 * Takes a square out of the empty list, it keeps its links for restore
+	 */
+	private void remove(int square) {
+		next[prev[square]] = next[square];
+		prev[next[square]] = prev[square];
+	}
+
+	/**
+	 * Puts a square taken out by remove back in the empty list
+	 */
+	private void restore(int square) {
+		next[prev[square]] = square;
+		prev[next[square]] = square;
+	}
+
+	/**
+	 * Getter for the nodes searched by the last solve
+	 * @return nodes searched
+	 */
+	public long getLastNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Getter for the exact score found by the last solve
+	 * @return final disc difference for the player that moved
+	 */
+	public int getLastScore() {
+		return lastScore;
+	}
+
+	/**
+	 * Getter for the number of empty squares of the last position solved
+	 * @return empty squares
+	 */
+	public int getLastEmpties() {
+		return lastEmpties;
+	}
+
+	/**
+	 * Getter for the time used by the last solve
+	 * @return milliseconds used
+	 */
+	public long getLastTimeMillis() {
+		return lastTime / 1000000L;
+	}
+
+	/**
+	 * Getter for the solve speed of the last solve
+	 * @return nodes searched per second
+	 */
+	public long getNodesPerSecond() {
+		return lastTime > 0 ? nodes * 1000000000L / lastTime : 0;
+	}
+}
@@ -0,0 +1,276 @@
+/**
+ * ReversiEngine generates and plays moves on a square board of any even
+ * size from 4 to 16.
+ *
+ * A board is stored as two bitboards, one for each color, as arrays of longs.
+ * Bit (row * size + col) of the array is set when that color owns the square
+ * at row col, so an 8x8 board is laid out as in ReversiBitboard. Boards up to
+ * 8x8 fit in one long and use ReversiSmallEngine, larger boards use
+ * ReversiWideEngine, and both are used through this class.
+ *
+ * Engines hold no state besides their size, so one engine per size is shared
+ * by every thread.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public abstract class ReversiEngine {
+	public static final int MIN_SIZE = 4;
+	public static final int MAX_SIZE = 16;
+	public static final int MAX_SQUARES = MAX_SIZE * MAX_SIZE;
+
+	// Row and column steps of the 8 directions
+	private static final int[] ROW_STEPS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+	private static final int[] COL_STEPS = { -1, 0, 1, -1, 1, -1, 0, 1 };
+
+	private static final ReversiEngine[] ENGINES = new ReversiEngine[MAX_SIZE + 1];
+
+	static {
+		for (int size = MIN_SIZE; size <= MAX_SIZE; size += 2) {
+			ENGINES[size] = size * size <= 64 ? new ReversiSmallEngine(size) : new ReversiWideEngine(size);
+		}
+	}
+
+	protected final int size;
+	protected final int squares;
+	protected final int words;
+
+	protected ReversiEngine(int size) {
+		this.size = size;
+		this.squares = size * size;
+		this.words = (squares + 63) / 64;
+	}
+
+	/**
+	 * Gets the engine for a board size
+	 *
+	 * @param size : number of rows and columns, even from 4 to 16
+	 * @return the engine
+	 */
+	public static ReversiEngine forSize(int size) {
+		if (!isValidSize(size)) {
+			throw new IllegalArgumentException("Board size must be even from " + MIN_SIZE + " to " + MAX_SIZE);
+		}
+		return ENGINES[size];
+	}
+
+	/**
+	 * Checks whether a board size can be played
+	 *
+	 * @param size : number of rows and columns
+	 * @return whether the size is even and from 4 to 16
+	 */
+	public static boolean isValidSize(int size) {
+		return size >= MIN_SIZE && size <= MAX_SIZE && size % 2 == 0;
+	}
+
+	/**
+	 * Gets every legal move for a player
+	 *
+	 * @param own   : bitboard of the player to move
+	 * @param opp   : bitboard of the opponent
+	 * @param moves : bitboard the legal moves are written to
+	 */
+	public abstract void legalMoves(long[] own, long[] opp, long[] moves);
+
+	/**
+	 * Gets the opponent tokens captured by placing a token at a square
+	 *
+	 * @param own    : bitboard of the player to move
+	 * @param opp    : bitboard of the opponent
+	 * @param square : index of the square played
+	 * @param flips  : bitboard the captured tokens are written to
+	 * @return the number of captured tokens, 0 if the move is not legal
+	 */
+	public int flips(long[] own, long[] opp, int square, long[] flips) {
+		clear(flips);
+		int row = square / size;
+		int col = square % size;
+		int captured = 0;
+		for (int d = 0; d < 8; d++) {
+			int r = row + ROW_STEPS[d];
+			int c = col + COL_STEPS[d];
+			int run = 0;
+			while (r >= 0 && r < size && c >= 0 && c < size && get(opp, r * size + c)) {
+				r += ROW_STEPS[d];
+				c += COL_STEPS[d];
+				run++;
+			}
+			if (run == 0 || r < 0 || r >= size || c < 0 || c >= size || !get(own, r * size + c)) {
+				continue;
+			}
+			captured += run;
+			for (int i = 1; i <= run; i++) {
+				set(flips, (row + ROW_STEPS[d] * i) * size + col + COL_STEPS[d] * i);
+			}
+		}
+		return captured;
+	}
+
+	/**
+	 * Places a token and flips the tokens it captures
+	 *
+	 * @param own    : bitboard of the player to move, changed in place
+	 * @param opp    : bitboard of the opponent, changed in place
+	 * @param square : index of the square played
+	 * @param flips  : the captured tokens, as found by flips
+	 */
+	public void play(long[] own, long[] opp, int square, long[] flips) {
+		for (int i = 0; i < words; i++) {
+			own[i] |= flips[i];
+			opp[i] &= ~flips[i];
+		}
+		set(own, square);
+	}
+
+	/**
+	 * Sets up the four tokens of the start of a game
+	 *
+	 * @param w : bitboard of the White tokens, changed in place
+	 * @param b : bitboard of the Black tokens, changed in place
+	 */
+	public void start(long[] w, long[] b) {
+		clear(w);
+		clear(b);
+		int half = size / 2;
+		set(w, square(half - 1, half - 1));
+		set(w, square(half, half));
+		set(b, square(half - 1, half));
+		set(b, square(half, half - 1));
+	}
+
+	/**
+	 * @return a new empty bitboard
+	 */
+	public long[] newBoard() {
+		return new long[words];
+	}
+
+	/**
+	 * Gets the square index of a row col
+	 *
+	 * @param row : row of location
+	 * @param col : column of location
+	 * @return the index of the square
+	 */
+	public int square(int row, int col) {
+		return row * size + col;
+	}
+
+	/**
+	 * @return the number of rows and columns
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the number of squares
+	 */
+	public int getSquares() {
+		return squares;
+	}
+
+	/**
+	 * @return the number of longs in a bitboard
+	 */
+	public int getWords() {
+		return words;
+	}
+
+	/**
+	 * Checks whether a square is set on a bitboard
+	 *
+	 * @param bits   : bitboard
+	 * @param square : index of the square
+	 * @return whether the bit of the square is set
+	 */
+	public static boolean get(long[] bits, int square) {
+		return (bits[square >>> 6] & (1L << square)) != 0;
+	}
+
+	/**
+	 * Sets a square on a bitboard
+	 *
+	 * @param bits   : bitboard, changed in place
+	 * @param square : index of the square
+	 */
+	public static void set(long[] bits, int square) {
+		bits[square >>> 6] |= 1L << square;
+	}
+
+	/**
+	 * Clears every square of a bitboard
+	 *
+	 * @param bits : bitboard, changed in place
+	 */
+	public static void clear(long[] bits) {
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] = 0;
+		}
+	}
+
+	/**
+	 * Counts the squares set on a bitboard
+	 *
+	 * @param bits : bitboard
+	 * @return the number of set bits
+	 */
+	public static int count(long[] bits) {
+		int count = 0;
+		for (long word : bits) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the next square set on a bitboard
+	 *
+	 * @param bits : bitboard
+	 * @param from : index of the first square to look at
+	 * @return the index of the square, or -1 if there is none
+	 */
+	public static int next(long[] bits, int from) {
+		int word = from >>> 6;
+		if (word >= bits.length) {
+			return -1;
+		}
+		long rest = bits[word] & (-1L << from);
+		while (rest == 0) {
+			if (++word == bits.length) {
+				return -1;
+			}
+			rest = bits[word];
+		}
+		return word * 64 + Long.numberOfTrailingZeros(rest);
+	}
+
+	/**
+	 * Finds the nth square set on a bitboard, counting from 0
+	 *
+	 * @param bits : bitboard
+	 * @param n    : number of set squares to skip
+	 * @return the index of the square, or -1 if fewer are set
+	 */
+	public static int nth(long[] bits, int n) {
+		for (int word = 0; word < bits.length; word++) {
+			long rest = bits[word];
+			int count = Long.bitCount(rest);
+			if (n >= count) {
+				n -= count;
+				continue;
+			}
+			for (; n > 0; n--) {
+				rest &= rest - 1;
+			}
+			return word * 64 + Long.numberOfTrailingZeros(rest);
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return size + "x" + size;
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * ReversiGameRecord is a game as the undo stack of ReversiModel holds it:
+ * the position the stack starts from, every move on it, how many of those
+ * were taken back and can be played again, and the current position.
+ *
+ * Each move is the square played, -1 for a pass, the color that played it
+ * and the player who was to move before it, which is not always the same
+ * color since the view hands the turn back when a player must pass.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public final class ReversiGameRecord {
+	private final ReversiPosition start;
+	private final int[] squares;
+	private final int[] colors;
+	private final int[] players;
+	private final int undone;
+	private final ReversiPosition position;
+
+	/**
+	 * Constructor for ReversiGameRecord, the arrays are kept, not copied
+	 *
+	 * @param start    : position the moves start from
+	 * @param squares  : square of each move, -1 for a pass
+	 * @param colors   : color that played each move
+	 * @param players  : player to move before each move
+	 * @param undone   : number of moves at the end that were taken back
+	 * @param position : the current position
+	 */
+	public ReversiGameRecord(ReversiPosition start, int[] squares, int[] colors, int[] players, int undone,
+			ReversiPosition position) {
+		this.start = start;
+		this.squares = squares;
+		this.colors = colors;
+		this.players = players;
+		this.undone = undone;
+		this.position = position;
+	}
+
+	/**
+	 * Constructor for ReversiGameRecord of a position without its history
+	 *
+	 * @param position : the current position
+	 */
+	public ReversiGameRecord(ReversiPosition position) {
+		this(position, new int[0], new int[0], new int[0], 0, position);
+	}
+
+	/**
+	 * Getter for the position the moves start from
+	 * @return the start position
+	 */
+	public ReversiPosition getStart() {
+		return start;
+	}
+
+	/**
+	 * Getter for the number of moves, including the ones taken back
+	 * @return number of moves
+	 */
+	public int getMoveCount() {
+		return squares.length;
+	}
+
+	/**
+	 * Getter for the square of a move
+	 * @param move : index of the move
+	 * @return index of the square, or -1 for a pass
+	 */
+	public int getSquare(int move) {
+		return squares[move];
+	}
+
+	/**
+	 * Getter for the color that played a move
+	 * @param move : index of the move
+	 * @return color of the player
+	 */
+	public int getColor(int move) {
+		return colors[move];
+	}
+
+	/**
+	 * Getter for the player to move before a move
+	 * @param move : index of the move
+	 * @return color of the player to move
+	 */
+	public int getPlayer(int move) {
+		return players[move];
+	}
+
+	/**
+	 * Getter for the number of moves at the end that were taken back
+	 * @return moves that can be played again
+	 */
+	public int getUndone() {
+		return undone;
+	}
+
+	/**
+	 * Getter for the current position
+	 * @return the position after every move that was not taken back
+	 */
+	public ReversiPosition getPosition() {
+		return position;
+	}
+}
@@ -0,0 +1,642 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ReversiGameServer hosts many Reversi games in one process without a GUI.
+ *
+ * One selector thread accepts connections, reads frames of ReversiProtocol
+ * and writes replies, so the cost of a connection is a few buffers rather
+ * than a thread. Players send a join frame with a game id and a board size,
+ * the first to join opens the game at its size, the first two to join a
+ * game are seated as White and Black, and every move is checked by
+ * the game's ReversiMatch before it is sent to both players. A move that is
+ * out of turn or illegal is answered with a snapshot of the board instead.
+ *
+ * Given a ReversiJournal, the server journals every move and the start and
+ * end of every game, forcing the records to disk once per pass of the
+ * selector loop. Frames of journaled games are held until the pass's records
+ * are on disk, so no player or spectator sees a move the journal could lose.
+ * Games recovered from the journal are resumed and wait for their players to
+ * join again. Journal records hold 8x8 boards, so games of other sizes are
+ * not journaled.
+ *
+ * Any number of spectators may watch a game by sending a watch frame with
+ * its id. A spectator of a game no player has opened yet waits for it, so
+ * the first player still chooses the board size. Each move is encoded once and the same frame is queued for both
+ * players and every spectator. A spectator's queue is bounded: when a slow
+ * spectator falls too far behind, its queued moves are dropped and replaced
+ * by one snapshot of the board, so spectators never hold up the players or
+ * grow the server's memory.
+ *
+ * Usage: java ReversiGameServer [port] [journal directory]
+ *
+ * @author Ryan Luu and Denny Ho
+ *
+ */
+public class ReversiGameServer implements Runnable {
+	// Frames a spectator may have queued before it is resynced with a snapshot
+	private static final int SPECTATOR_QUEUE = 16;
+
+	private final int port;
+	private Selector selector;
+	private ServerSocketChannel server;
+	private volatile boolean running;
+
+	// Match registry keyed by game id, only touched by the selector thread
+	private final Map<Integer, Table> tables = new HashMap<Integer, Table>();
+
+	// Spectators of games no player has opened yet, by game id
+	private final Map<Integer, List<Session>> waiting = new HashMap<Integer, List<Session>>();
+
+	private ReversiJournal journal;
+	// Sessions with frames waiting for the journal to reach the disk
+	private final List<Session> held = new ArrayList<Session>();
+
+	private volatile int connections;
+	private volatile int spectators;
+	private final AtomicLong resyncs = new AtomicLong();
+	private final AtomicLong moves = new AtomicLong();
+	private final AtomicLong gamesFinished = new AtomicLong();
+
+	/**
+	 * A hosted game and the players seated at it
+	 */
+	private static class Table {
+		private final ReversiMatch match;
+		private Session white;
+		private Session black;
+		private final List<Session> spectators = new ArrayList<Session>();
+
+		private Table(ReversiMatch match) {
+			this.match = match;
+		}
+	}
+
+	/**
+	 * The state of one connection
+	 */
+	private static class Session {
+		private final SocketChannel channel;
+		private final ByteBuffer in = ByteBuffer.allocate(1024);
+		private final ArrayDeque<ByteBuffer> out = new ArrayDeque<ByteBuffer>();
+		private Table table;
+		private Table watching;
+		private Integer waitingFor;
+		private int color;
+		private boolean held;
+
+		private Session(SocketChannel channel) {
+			this.channel = channel;
+			in.flip();
+		}
+	}
+
+	/**
+	 * Constructor for ReversiGameServer
+	 *
+	 * @param port : port to listen on, 0 picks a free port
+	 */
+	public ReversiGameServer(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Starts the server
+	 *
+	 * @param args : optional port, 4000 by default
+	 * @throws IOException : when the port cannot be opened
+	 * @throws InterruptedException : when interrupted while reporting
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		ReversiGameServer gameServer = new ReversiGameServer(args.length > 0 ? Integer.parseInt(args[0]) : 4000);
+		if (args.length > 1) {
+			Path directory = Paths.get(args[1]);
+			Map<Integer, ReversiMessage> recovered = ReversiJournal.recover(directory);
+			ReversiJournal journal = new ReversiJournal(directory, 64 * 1024 * 1024, 16);
+			journal.resume(recovered);
+			gameServer.setJournal(journal);
+			gameServer.resume(recovered);
+			System.out.println("Resumed " + recovered.size() + " games from " + directory);
+		}
+		gameServer.open();
+		new Thread(gameServer, "ReversiGameServer").start();
+		System.out.println("Listening on port " + gameServer.getLocalPort());
+
+		long lastMoves = 0;
+		while (true) {
+			Thread.sleep(5000);
+			long total = gameServer.getMoves();
+			System.out.println("Connections: " + gameServer.getConnections() + " Spectators: "
+					+ gameServer.getSpectators() + " Moves/sec: " + (total - lastMoves) / 5 + " Games finished: "
+					+ gameServer.getGamesFinished() + " Resyncs: " + gameServer.getResyncs());
+			lastMoves = total;
+		}
+	}
+
+	/**
+	 * Setter for the journal of moves, call before running the server
+	 *
+	 * @param journal : journal to write every move to
+	 */
+	public void setJournal(ReversiJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Hosts games recovered from a journal, call before running the server
+	 *
+	 * @param games : snapshot messages of the games by game id
+	 */
+	public void resume(Map<Integer, ReversiMessage> games) {
+		for (Map.Entry<Integer, ReversiMessage> game : games.entrySet()) {
+			tables.put(game.getKey(), new Table(new ReversiMatch(game.getKey(), game.getValue())));
+		}
+	}
+
+	/**
+	 * Opens the listening socket, call before running the server
+	 *
+	 * @throws IOException : when the port cannot be opened
+	 */
+	public void open() throws IOException {
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port), 1024);
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		running = true;
+	}
+
+	/**
+	 * Runs the selector loop until stop is called
+	 */
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				selector.select(1000);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					Session session = (Session) key.attachment();
+					try {
+						if (key.isReadable()) {
+							read(key, session);
+						}
+						if (key.isValid() && key.isWritable() && !session.held) {
+							flush(key, session);
+						}
+					} catch (IOException e) {
+						close(key, session);
+					}
+				}
+				if (journal != null) {
+					journal.flush();
+					release();
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("Game server stopped: " + e.getMessage());
+		} finally {
+			try {
+				selector.close();
+				server.close();
+				if (journal != null) {
+					journal.close();
+				}
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Stops the selector loop
+	 */
+	public void stop() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Accepts every pending connection
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			channel.register(selector, SelectionKey.OP_READ, new Session(channel));
+			connections++;
+		}
+	}
+
+	/**
+	 * Reads what a connection has sent and handles every complete frame
+	 */
+	private void read(SelectionKey key, Session session) throws IOException {
+		session.in.compact();
+		int read = session.channel.read(session.in);
+		session.in.flip();
+		if (read < 0) {
+			close(key, session);
+			return;
+		}
+		ReversiMessage message;
+		while (key.isValid() && (message = ReversiProtocol.decode(session.in)) != null) {
+			handle(session, message);
+		}
+	}
+
+	/**
+	 * Handles one message from a player
+	 */
+	private void handle(Session session, ReversiMessage message) throws IOException {
+		switch (message.getType()) {
+		case ReversiProtocol.JOIN:
+			join(session, message.getGameId(), message.getSize());
+			break;
+		case ReversiProtocol.WATCH:
+			watch(session, message.getGameId());
+			break;
+		case ReversiProtocol.MOVE:
+			if (session.table != null) {
+				move(session, message.getSquare());
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Seats a player at a game, starting the game once both seats are taken
+	 */
+	private void join(Session session, int gameId, int size) throws IOException {
+		if (session.table != null) {
+			return;
+		}
+		Table table = tables.get(gameId);
+		if (table == null) {
+			table = new Table(new ReversiMatch(gameId, size));
+			tables.put(gameId, table);
+			List<Session> early = waiting.remove(gameId);
+			if (early != null) {
+				for (Session spectator : early) {
+					spectator.waitingFor = null;
+					spectator.watching = table;
+					table.spectators.add(spectator);
+				}
+			}
+		}
+		int color = table.match.join();
+		send(session, ReversiProtocol.frame(ReversiMessage.joined(gameId, color)));
+		if (color == 0) {
+			return;
+		}
+		session.table = table;
+		session.color = color;
+		if (color == ReversiModel.W) {
+			table.white = session;
+		} else {
+			table.black = session;
+		}
+		if (table.match.getState() == ReversiMatch.State.PLAYING) {
+			if (journaled(table)) {
+				journal.snapshot(gameId, table.match.snapshot());
+			}
+			broadcast(table, table.match.snapshot());
+		}
+	}
+
+	/**
+	 * Adds a spectator to a game, sending the board if the game has started.
+	 * The reply is a joined frame with no color. A game no player has opened
+	 * is not made here, the spectator waits until a player opens it.
+	 */
+	private void watch(Session session, int gameId) throws IOException {
+		if (session.table != null || session.watching != null || session.waitingFor != null) {
+			return;
+		}
+		send(session, ReversiProtocol.frame(ReversiMessage.joined(gameId, 0)));
+		spectators++;
+		Table table = tables.get(gameId);
+		if (table == null) {
+			List<Session> early = waiting.get(gameId);
+			if (early == null) {
+				early = new ArrayList<Session>();
+				waiting.put(gameId, early);
+			}
+			early.add(session);
+			session.waitingFor = gameId;
+			return;
+		}
+		session.watching = table;
+		table.spectators.add(session);
+		if (table.match.getState() == ReversiMatch.State.PLAYING) {
+			ByteBuffer frame = ReversiProtocol.frame(table.match.snapshot());
+			if (journaled(table)) {
+				hold(session, frame);
+			} else {
+				send(session, frame);
+			}
+		}
+	}
+
+	/**
+	 * Plays a move and sends it to both players
+	 */
+	private void move(Session session, int square) throws IOException {
+		Table table = session.table;
+		List<ReversiMessage> played = table.match.play(session.color, square);
+		if (played == null) {
+			send(session, ReversiProtocol.frame(table.match.snapshot()));
+			return;
+		}
+		moves.incrementAndGet();
+		int color = session.color;
+		for (ReversiMessage message : played) {
+			if (journaled(table)) {
+				journal.move(table.match.getGameId(), message.getSeq(), color, message.getSquare());
+			}
+			broadcast(table, message);
+			if (session.table == null) {
+				// The opponent's connection failed and the game was abandoned
+				return;
+			}
+			// A pass that follows a move is for the opponent
+			color = color == ReversiModel.W ? ReversiModel.B : ReversiModel.W;
+		}
+		if (table.match.getState() == ReversiMatch.State.FINISHED) {
+			gamesFinished.incrementAndGet();
+			closeTable(table);
+		} else if (journaled(table)) {
+			journal.checkpoint(table.match.getGameId(), table.match.snapshot());
+		}
+	}
+
+	/**
+	 * Checks whether the moves of a game go to the journal
+	 */
+	private boolean journaled(Table table) {
+		return journal != null && table.match.getSize() == ReversiModel.BOARD_DIMENSION;
+	}
+
+	/**
+	 * Sends one message to both players and every spectator, encoding it once.
+	 * Spectators too far behind get a snapshot, which already includes the message.
+	 * A connection that fails to take the message is closed on its own, the
+	 * others still get it. The message of a journaled game is held until the
+	 * journal is flushed.
+	 */
+	private void broadcast(Table table, ReversiMessage message) {
+		boolean hold = journaled(table);
+		ByteBuffer frame = ReversiProtocol.frame(message);
+		sendOrClose(table.white, frame.duplicate(), hold);
+		sendOrClose(table.black, frame.duplicate(), hold);
+		ByteBuffer snapshot = null;
+		for (int i = table.spectators.size() - 1; i >= 0; i--) {
+			Session spectator = table.spectators.get(i);
+			try {
+				if (spectator.out.size() < SPECTATOR_QUEUE) {
+					if (hold) {
+						hold(spectator, frame.duplicate());
+					} else {
+						send(spectator, frame.duplicate());
+					}
+					continue;
+				}
+				// Keep the frame being written so the stream stays whole, drop the rest
+				ByteBuffer writing = spectator.out.poll();
+				spectator.out.clear();
+				spectator.out.add(writing);
+				if (snapshot == null) {
+					snapshot = ReversiProtocol.frame(table.match.snapshot());
+				}
+				spectator.out.add(snapshot.duplicate());
+				if (hold) {
+					hold(spectator, null);
+				}
+				resyncs.incrementAndGet();
+			} catch (IOException e) {
+				close(spectator.channel.keyFor(selector), spectator);
+			}
+		}
+	}
+
+	/**
+	 * Removes a finished game so its players may join another
+	 */
+	private void closeTable(Table table) throws IOException {
+		tables.remove(table.match.getGameId());
+		if (journaled(table)) {
+			journal.end(table.match.getGameId(), table.match.snapshot().getSeq());
+		}
+		if (table.white != null) {
+			table.white.table = null;
+		}
+		if (table.black != null) {
+			table.black.table = null;
+		}
+		for (Session spectator : table.spectators) {
+			spectator.watching = null;
+			spectators--;
+		}
+		table.spectators.clear();
+	}
+
+	/**
+	 * Writes a frame now if the connection can take it, otherwise queues it
+	 */
+	private void send(Session session, ByteBuffer frame) throws IOException {
+		if (session.out.isEmpty()) {
+			session.channel.write(frame);
+			if (!frame.hasRemaining()) {
+				return;
+			}
+			session.channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+		session.out.add(frame);
+	}
+
+	/**
+	 * Sends or holds a frame for a player, closing that player's connection
+	 * if the write fails
+	 */
+	private void sendOrClose(Session session, ByteBuffer frame, boolean hold) {
+		if (session == null || !session.channel.isOpen()) {
+			return;
+		}
+		if (hold) {
+			hold(session, frame);
+			return;
+		}
+		try {
+			send(session, frame);
+		} catch (IOException e) {
+			close(session.channel.keyFor(selector), session);
+		}
+	}
+
+	/**
+	 * Queues a frame without writing it until the journal is flushed
+	 *
+	 * @param frame : frame to queue, or null to only hold what is queued
+	 */
+	private void hold(Session session, ByteBuffer frame) {
+		if (frame != null) {
+			session.out.add(frame);
+		}
+		if (!session.held) {
+			session.held = true;
+			held.add(session);
+		}
+	}
+
+	/**
+	 * Writes the frames held for the journal, once it is on disk
+	 */
+	private void release() {
+		for (Session session : held) {
+			session.held = false;
+			if (!session.channel.isOpen()) {
+				continue;
+			}
+			SelectionKey key = session.channel.keyFor(selector);
+			try {
+				flush(key, session);
+				if (!session.out.isEmpty()) {
+					key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				}
+			} catch (IOException e) {
+				close(key, session);
+			}
+		}
+		held.clear();
+	}
+
+	/**
+	 * Writes queued frames until the connection cannot take more
+	 */
+	private void flush(SelectionKey key, Session session) throws IOException {
+		while (!session.out.isEmpty()) {
+			ByteBuffer frame = session.out.peek();
+			session.channel.write(frame);
+			if (frame.hasRemaining()) {
+				return;
+			}
+			session.out.poll();
+		}
+		key.interestOps(SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Closes a connection and abandons its game
+	 */
+	private void close(SelectionKey key, Session session) {
+		if (!session.channel.isOpen()) {
+			return;
+		}
+		key.cancel();
+		try {
+			session.channel.close();
+		} catch (IOException e) {
+		}
+		connections--;
+		if (session.watching != null) {
+			session.watching.spectators.remove(session);
+			session.watching = null;
+			spectators--;
+		}
+		if (session.waitingFor != null) {
+			List<Session> early = waiting.get(session.waitingFor);
+			early.remove(session);
+			if (early.isEmpty()) {
+				waiting.remove(session.waitingFor);
+			}
+			session.waitingFor = null;
+			spectators--;
+		}
+		Table table = session.table;
+		if (table != null) {
+			table.match.abandon();
+			try {
+				closeTable(table);
+			} catch (IOException e) {
+				System.out.println("Couldn't journal the end of game " + table.match.getGameId() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * @return the port the server listens on
+	 * @throws IOException : when the socket is closed
+	 */
+	public int getLocalPort() throws IOException {
+		return ((InetSocketAddress) server.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * @return the number of open connections
+	 */
+	public int getConnections() {
+		return connections;
+	}
+
+	/**
+	 * @return the number of connections watching a game
+	 */
+	public int getSpectators() {
+		return spectators;
+	}
+
+	/**
+	 * @return the number of times a slow spectator was sent a snapshot in
+	 *         place of the moves it had queued
+	 */
+	public long getResyncs() {
+		return resyncs.get();
+	}
+
+	/**
+	 * @return the number of games being played or waiting for a player
+	 */
+	public int getGames() {
+		return tables.size();
+	}
+
+	/**
+	 * @return the number of moves played since the server started
+	 */
+	public long getMoves() {
+		return moves.get();
+	}
+
+	/**
+	 * @return the number of games played to the end since the server started
+	 */
+	public long getGamesFinished() {
+		return gamesFinished.get();
+	}
+}
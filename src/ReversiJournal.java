@@ -0,0 +1,446 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * ReversiJournal is an append-only log of the moves of many games.
+ *
+ * Every move is one 16 byte record holding the game id, the sequence number,
+ * the color that moved and the square. Every few moves of a game a 32 byte
+ * snapshot record of the whole board is added, and a game that ends gets an
+ * end record. Records of all games go to the same segment files, named
+ * journal-000001.log and up, and a new segment is started when the current
+ * one is full and whenever a journal is opened, so a segment is never
+ * appended to after a crash.
+ *
+ * Records are buffered and written by flush, which also forces them to disk,
+ * so a caller can commit every record added since the last flush at once.
+ * Recovery reads the segments in order, keeps the last snapshot of each game
+ * that has not ended and replays only the moves after it. Each record ends
+ * with a CRC32, and a segment is read up to its first bad or torn record.
+ *
+ * Old segments are retired so recovery only reads a few. When a segment is
+ * full, every open game whose last snapshot is in an older segment is
+ * snapshotted again into the next one, and segments no open game needs are
+ * deleted. A journal opened after recovery starts from a checkpoint: resume
+ * snapshots the recovered games into the new segment and deletes the rest.
+ *
+ * @author Ryan Luu and Denny Ho
+ *
+ */
+public class ReversiJournal {
+	private static final byte MOVE = 1;
+	private static final byte SNAPSHOT = 2;
+	private static final byte END = 3;
+	private static final int MOVE_SIZE = 16;
+	private static final int SNAPSHOT_SIZE = 32;
+
+	private final Path directory;
+	private final long segmentSize;
+	private final int snapshotInterval;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+	private final CRC32 crc = new CRC32();
+	private FileChannel channel;
+	private int segment;
+
+	// Open games by game id
+	private final Map<Integer, Game> games = new HashMap<Integer, Game>();
+
+	/**
+	 * What the journal holds of one open game
+	 */
+	private static class Game {
+		// Moves written since the last snapshot
+		private int moves;
+		// Segment of the last snapshot, 0 if none was written
+		private int segment;
+		// Sequence number of the last record written
+		private int seq;
+		// Board after the last move, as given to checkpoint
+		private ReversiMessage latest;
+	}
+
+	/**
+	 * Constructor for ReversiJournal, starts a new segment after any that exist
+	 *
+	 * @param directory        : directory of the segment files
+	 * @param segmentSize      : bytes after which a new segment is started
+	 * @param snapshotInterval : moves of a game between snapshots
+	 * @throws IOException : when the directory or segment cannot be created
+	 */
+	public ReversiJournal(Path directory, long segmentSize, int snapshotInterval) throws IOException {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.snapshotInterval = snapshotInterval;
+		Files.createDirectories(directory);
+		List<Path> segments = segments(directory);
+		segment = segments.isEmpty() ? 0 : number(segments.get(segments.size() - 1));
+		openSegment();
+	}
+
+	/**
+	 * Adds a snapshot of a game's board
+	 *
+	 * @param gameId   : id of the game
+	 * @param snapshot : snapshot message of the board, the color to move and
+	 *                 the sequence number of the last move
+	 * @throws IOException : when the buffer cannot be written out
+	 */
+	public synchronized void snapshot(int gameId, ReversiMessage snapshot) throws IOException {
+		reserve(SNAPSHOT_SIZE);
+		int start = buffer.position();
+		buffer.put(SNAPSHOT);
+		buffer.put((byte) snapshot.getToMove());
+		buffer.putShort((short) 0);
+		buffer.putInt(gameId);
+		buffer.putInt(snapshot.getSeq());
+		buffer.putLong(snapshot.getWBits());
+		buffer.putLong(snapshot.getBBits());
+		seal(start);
+		Game game = game(gameId);
+		game.moves = 0;
+		game.segment = segment;
+		game.seq = snapshot.getSeq();
+		game.latest = snapshot;
+	}
+
+	/**
+	 * Adds a move of a game
+	 *
+	 * @param gameId : id of the game
+	 * @param seq    : sequence number of the move
+	 * @param color  : color of the player who moved
+	 * @param square : index of the square played, or ReversiMessage.PASS
+	 * @throws IOException : when the buffer cannot be written out
+	 */
+	public synchronized void move(int gameId, int seq, int color, int square) throws IOException {
+		reserve(MOVE_SIZE);
+		int start = buffer.position();
+		buffer.put(MOVE);
+		buffer.put((byte) color);
+		buffer.put((byte) square);
+		buffer.put((byte) 0);
+		buffer.putInt(gameId);
+		buffer.putInt(seq);
+		seal(start);
+		Game game = game(gameId);
+		game.moves++;
+		game.seq = seq;
+	}
+
+	/**
+	 * Adds a snapshot of a game if enough moves were added since its last one.
+	 * The board is kept either way, to snapshot the game again when its last
+	 * snapshot is in a segment about to be retired.
+	 *
+	 * @param gameId   : id of the game
+	 * @param snapshot : snapshot message of the board after the last move
+	 * @throws IOException : when the buffer cannot be written out
+	 */
+	public synchronized void checkpoint(int gameId, ReversiMessage snapshot) throws IOException {
+		Game game = games.get(gameId);
+		if (game == null) {
+			return;
+		}
+		if (game.moves >= snapshotInterval) {
+			snapshot(gameId, snapshot);
+		} else {
+			game.latest = snapshot;
+		}
+	}
+
+	/**
+	 * Starts the journal from the games recovered from it. Each game is
+	 * snapshotted into the new segment and, once the snapshots are on disk,
+	 * every older segment is deleted, so the next recovery starts here.
+	 *
+	 * @param recovered : snapshot messages of the games by game id, as
+	 *                  returned by recover
+	 * @throws IOException : when the segment cannot be written
+	 */
+	public synchronized void resume(Map<Integer, ReversiMessage> recovered) throws IOException {
+		for (Map.Entry<Integer, ReversiMessage> game : recovered.entrySet()) {
+			snapshot(game.getKey(), game.getValue());
+		}
+		write();
+		channel.force(false);
+		retire(segment);
+	}
+
+	/**
+	 * Marks a game as over, recovery will skip it
+	 *
+	 * @param gameId : id of the game
+	 * @param seq    : sequence number of the last move
+	 * @throws IOException : when the buffer cannot be written out
+	 */
+	public synchronized void end(int gameId, int seq) throws IOException {
+		reserve(MOVE_SIZE);
+		int start = buffer.position();
+		buffer.put(END);
+		buffer.put((byte) 0);
+		buffer.putShort((short) 0);
+		buffer.putInt(gameId);
+		buffer.putInt(seq);
+		seal(start);
+		games.remove(gameId);
+	}
+
+	/**
+	 * Writes every buffered record and forces them to disk
+	 *
+	 * @throws IOException : when the segment cannot be written
+	 */
+	public synchronized void flush() throws IOException {
+		if (buffer.position() == 0) {
+			return;
+		}
+		write();
+		channel.force(false);
+		if (channel.size() >= segmentSize) {
+			channel.close();
+			openSegment();
+			compact();
+		}
+	}
+
+	/**
+	 * Flushes and closes the journal
+	 *
+	 * @throws IOException : when the segment cannot be written
+	 */
+	public synchronized void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	/**
+	 * Snapshots every open game whose last snapshot is in an older segment
+	 * into the current one, then deletes the segments no open game needs.
+	 * A game whose board after its last move is not known keeps the segment
+	 * of its last snapshot.
+	 */
+	private void compact() throws IOException {
+		int keep = segment;
+		for (Map.Entry<Integer, Game> entry : games.entrySet()) {
+			Game game = entry.getValue();
+			if (game.segment == 0 || game.segment == segment) {
+				continue;
+			}
+			if (game.latest != null && game.latest.getSeq() == game.seq) {
+				snapshot(entry.getKey(), game.latest);
+			} else {
+				keep = Math.min(keep, game.segment);
+			}
+		}
+		write();
+		channel.force(false);
+		retire(keep);
+	}
+
+	/**
+	 * Deletes the segments before one
+	 */
+	private void retire(int keep) throws IOException {
+		for (Path old : segments(directory)) {
+			if (number(old) < keep) {
+				Files.deleteIfExists(old);
+			}
+		}
+	}
+
+	/**
+	 * Gets the state of an open game, adding it when first seen
+	 */
+	private Game game(int gameId) {
+		Game game = games.get(gameId);
+		if (game == null) {
+			game = new Game();
+			games.put(gameId, game);
+		}
+		return game;
+	}
+
+	/**
+	 * Makes room for a record, writing the buffer out when it is full
+	 */
+	private void reserve(int size) throws IOException {
+		if (buffer.remaining() < size) {
+			write();
+		}
+	}
+
+	/**
+	 * Ends the record started at an offset of the buffer with its CRC32
+	 */
+	private void seal(int start) {
+		ByteBuffer record = buffer.duplicate();
+		record.flip();
+		record.position(start);
+		crc.reset();
+		crc.update(record);
+		buffer.putInt((int) crc.getValue());
+	}
+
+	/**
+	 * Writes the buffer to the current segment
+	 */
+	private void write() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Starts the next segment file
+	 */
+	private void openSegment() throws IOException {
+		segment++;
+		channel = FileChannel.open(directory.resolve(String.format("journal-%06d.log", segment)),
+				StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Recovers every game that has not ended from the segments of a directory
+	 *
+	 * @param directory : directory of the segment files
+	 * @return snapshot messages of the games by game id, in the order the
+	 *         games were first seen
+	 * @throws IOException : when a segment cannot be read
+	 */
+	public static Map<Integer, ReversiMessage> recover(Path directory) throws IOException {
+		Map<Integer, long[]> games = new LinkedHashMap<Integer, long[]>();
+		for (Path segment : segments(directory)) {
+			ByteBuffer records = read(segment);
+			while (records.remaining() >= MOVE_SIZE) {
+				int start = records.position();
+				byte type = records.get(start);
+				int size = type == SNAPSHOT ? SNAPSHOT_SIZE : MOVE_SIZE;
+				if (records.remaining() < size || !valid(records, start, size)) {
+					break;
+				}
+				int gameId = records.getInt(start + 4);
+				int seq = records.getInt(start + 8);
+				if (type == SNAPSHOT) {
+					// Game state as {White bitboard, Black bitboard, color to move, sequence number}
+					games.put(gameId, new long[] { records.getLong(start + 12), records.getLong(start + 20),
+							records.get(start + 1), seq });
+				} else if (type == END) {
+					games.remove(gameId);
+				} else {
+					long[] game = games.get(gameId);
+					if (game != null) {
+						replay(game, records.get(start + 1), records.get(start + 2), seq);
+					}
+				}
+				records.position(start + size);
+			}
+		}
+
+		Map<Integer, ReversiMessage> recovered = new LinkedHashMap<Integer, ReversiMessage>();
+		for (Map.Entry<Integer, long[]> entry : games.entrySet()) {
+			long[] game = entry.getValue();
+			recovered.put(entry.getKey(), ReversiMessage.snapshot((int) game[3], game[0], game[1], (int) game[2]));
+		}
+		return recovered;
+	}
+
+	/**
+	 * Gets every move of a game still held by the journal, in order. Moves in
+	 * segments that were retired are not included.
+	 *
+	 * @param directory : directory of the segment files
+	 * @param gameId    : id of the game
+	 * @return move messages with the sequence number and square of each move
+	 * @throws IOException : when a segment cannot be read
+	 */
+	public static List<ReversiMessage> history(Path directory, int gameId) throws IOException {
+		List<ReversiMessage> moves = new ArrayList<ReversiMessage>();
+		for (Path segment : segments(directory)) {
+			ByteBuffer records = read(segment);
+			while (records.remaining() >= MOVE_SIZE) {
+				int start = records.position();
+				byte type = records.get(start);
+				int size = type == SNAPSHOT ? SNAPSHOT_SIZE : MOVE_SIZE;
+				if (records.remaining() < size || !valid(records, start, size)) {
+					break;
+				}
+				if (type == MOVE && records.getInt(start + 4) == gameId) {
+					moves.add(ReversiMessage.move(records.getInt(start + 8), records.get(start + 2)));
+				}
+				records.position(start + size);
+			}
+		}
+		return moves;
+	}
+
+	/**
+	 * Plays a journaled move on a recovered game state
+	 */
+	private static void replay(long[] game, int color, int square, int seq) {
+		if (square != ReversiMessage.PASS) {
+			long own = color == ReversiModel.W ? game[0] : game[1];
+			long opp = color == ReversiModel.W ? game[1] : game[0];
+			long flips = ReversiBitboard.flips(own, opp, square);
+			own |= flips | (1L << square);
+			opp ^= flips;
+			game[0] = color == ReversiModel.W ? own : opp;
+			game[1] = color == ReversiModel.W ? opp : own;
+		}
+		game[2] = color == ReversiModel.W ? ReversiModel.B : ReversiModel.W;
+		game[3] = seq;
+	}
+
+	/**
+	 * Checks the CRC32 at the end of a record
+	 */
+	private static boolean valid(ByteBuffer records, int start, int size) {
+		CRC32 check = new CRC32();
+		check.update(records.array(), start, size - 4);
+		return (int) check.getValue() == records.getInt(start + size - 4);
+	}
+
+	/**
+	 * Reads a whole segment
+	 */
+	private static ByteBuffer read(Path segment) throws IOException {
+		return ByteBuffer.wrap(Files.readAllBytes(segment));
+	}
+
+	/**
+	 * Gets the segment files of a directory in order
+	 */
+	private static List<Path> segments(Path directory) throws IOException {
+		List<Path> segments = new ArrayList<Path>();
+		if (!Files.isDirectory(directory)) {
+			return segments;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "journal-*.log")) {
+			for (Path path : stream) {
+				segments.add(path);
+			}
+		}
+		segments.sort((a, b) -> Integer.compare(number(a), number(b)));
+		return segments;
+	}
+
+	/**
+	 * Gets the number of a segment from its file name
+	 */
+	private static int number(Path segment) {
+		String name = segment.getFileName().toString();
+		return Integer.parseInt(name.substring("journal-".length(), name.length() - ".log".length()));
+	}
+}
@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * ReversiLoadTest plays many games at once against a ReversiGameServer and
+ * reports how many connections it holds and how many moves it plays.
+ *
+ * Every game has two simulated players that pick random legal moves as soon
+ * as it is their turn. When a game ends both players join a new one, so the
+ * number of open games stays the same for the whole run. Spectators watch
+ * each game and follow their game to the next one the same way.
+ *
+ * Usage: java ReversiLoadTest [host|local] [port] [games] [seconds] [spectators per game]
+ *
+ * With the host "local" a server is started in the same process.
+ *
+ * @author Ryan Luu and Denny Ho
+ *
+ */
+public class ReversiLoadTest {
+	private final Selector selector;
+	private long movesPlayed;
+	private long gamesPlayed;
+	private long framesWatched;
+	private int connected;
+	private final int games;
+	private final int spectators;
+
+	/**
+	 * One simulated player
+	 */
+	private static class Player {
+		private final SocketChannel channel;
+		private final ByteBuffer in = ByteBuffer.allocate(1024);
+		private final ArrayDeque<ByteBuffer> out = new ArrayDeque<ByteBuffer>();
+		private final Random random;
+		private int gameId;
+		private int color;
+		private long wBits;
+		private long bBits;
+		private int toMove;
+		private int seq;
+		private boolean started;
+		private final boolean spectator;
+
+		private Player(SocketChannel channel, int gameId, boolean spectator, long seed) {
+			this.channel = channel;
+			this.gameId = gameId;
+			this.spectator = spectator;
+			this.random = new Random(seed);
+			in.flip();
+		}
+	}
+
+	/**
+	 * Constructor for ReversiLoadTest
+	 *
+	 * @param games      : number of games to keep running
+	 * @param spectators : number of spectators watching each game
+	 * @throws IOException : when the selector cannot be opened
+	 */
+	public ReversiLoadTest(int games, int spectators) throws IOException {
+		this.games = games;
+		this.spectators = spectators;
+		this.selector = Selector.open();
+	}
+
+	/**
+	 * Runs the load test
+	 *
+	 * @param args : host, port, number of games, seconds to run and spectators per game
+	 * @throws Exception : when the server cannot be reached
+	 */
+	public static void main(String[] args) throws Exception {
+		String host = args.length > 0 ? args[0] : "local";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+		int games = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+		int spectators = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+
+		ReversiGameServer server = null;
+		if (host.equals("local")) {
+			server = new ReversiGameServer(0);
+			server.open();
+			new Thread(server, "ReversiGameServer").start();
+			host = "127.0.0.1";
+			port = server.getLocalPort();
+		}
+		new ReversiLoadTest(games, spectators).run(host, port, seconds);
+		if (server != null) {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Connects every player and plays until the time is up
+	 *
+	 * @param host    : address of the server
+	 * @param port    : port of the server
+	 * @param seconds : how long to play
+	 * @throws IOException : when the server cannot be reached
+	 */
+	public void run(String host, int port, int seconds) throws IOException {
+		InetSocketAddress address = new InetSocketAddress(host, port);
+		int perGame = 2 + spectators;
+		for (int i = 0; i < games * perGame; i++) {
+			SocketChannel channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			channel.connect(address);
+			channel.register(selector, SelectionKey.OP_CONNECT, new Player(channel, i / perGame, i % perGame >= 2, i));
+		}
+
+		long start = System.nanoTime();
+		long end = start + seconds * 1000000000L;
+		long nextReport = start + 1000000000L;
+		long lastMoves = 0;
+		while (System.nanoTime() < end) {
+			selector.select(100);
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				Player player = (Player) key.attachment();
+				try {
+					if (key.isConnectable()) {
+						player.channel.finishConnect();
+						key.interestOps(SelectionKey.OP_READ);
+						connected++;
+						send(player, player.spectator ? ReversiMessage.watch(player.gameId)
+								: ReversiMessage.join(player.gameId));
+					} else {
+						if (key.isReadable()) {
+							read(key, player);
+						}
+						if (key.isValid() && key.isWritable()) {
+							flush(key, player);
+						}
+					}
+				} catch (IOException e) {
+					key.cancel();
+					player.channel.close();
+					connected--;
+				}
+			}
+			long now = System.nanoTime();
+			if (now >= nextReport) {
+				System.out.println("Connections: " + connected + " Moves/sec: " + (movesPlayed - lastMoves)
+						+ " Games: " + gamesPlayed);
+				lastMoves = movesPlayed;
+				nextReport += 1000000000L;
+			}
+		}
+
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("Held %d connections in %d games, %d moves in %.1f s, %.0f moves/sec, %d games finished",
+				connected, games, movesPlayed, elapsed, movesPlayed / elapsed, gamesPlayed));
+		if (spectators > 0) {
+			System.out.println(String.format("Spectators received %d frames, %.0f frames/sec", framesWatched,
+					framesWatched / elapsed));
+		}
+		for (SelectionKey key : selector.keys()) {
+			key.channel().close();
+		}
+		selector.close();
+	}
+
+	/**
+	 * Reads frames from the server and plays when it is this player's turn
+	 */
+	private void read(SelectionKey key, Player player) throws IOException {
+		player.in.compact();
+		int read = player.channel.read(player.in);
+		player.in.flip();
+		if (read < 0) {
+			throw new IOException("Server closed the connection");
+		}
+		ReversiMessage message;
+		while ((message = ReversiProtocol.decode(player.in)) != null) {
+			if (player.spectator && message.getType() != ReversiProtocol.JOINED) {
+				framesWatched++;
+			}
+			switch (message.getType()) {
+			case ReversiProtocol.JOINED:
+				player.color = message.getColor();
+				break;
+			case ReversiProtocol.SNAPSHOT:
+				player.wBits = message.getWBits();
+				player.bBits = message.getBBits();
+				player.toMove = message.getToMove();
+				player.seq = message.getSeq();
+				player.started = true;
+				break;
+			case ReversiProtocol.MOVE:
+				// A spectator resynced with a snapshot may still get moves it includes
+				if (message.getSeq() > player.seq) {
+					player.seq = message.getSeq();
+					apply(player, message.getSquare());
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		if (!player.started) {
+			return;
+		}
+
+		// Join the next game once neither player can move
+		long white = player.wBits;
+		long black = player.bBits;
+		if (ReversiBitboard.legalMoves(white, black) == 0 && ReversiBitboard.legalMoves(black, white) == 0) {
+			if (player.color == ReversiModel.W && !player.spectator) {
+				gamesPlayed++;
+			}
+			player.started = false;
+			player.gameId += games;
+			send(player, player.spectator ? ReversiMessage.watch(player.gameId) : ReversiMessage.join(player.gameId));
+			return;
+		}
+		if (!player.spectator && player.toMove == player.color) {
+			long own = player.color == ReversiModel.W ? white : black;
+			long opp = player.color == ReversiModel.W ? black : white;
+			long moves = ReversiBitboard.legalMoves(own, opp);
+			if (moves == 0) {
+				// The server sends the pass in its own frame, wait for it
+				return;
+			}
+			for (int skip = player.random.nextInt(ReversiBitboard.count(moves)); skip > 0; skip--) {
+				moves &= moves - 1;
+			}
+			player.toMove = 0;
+			movesPlayed++;
+			send(player, ReversiMessage.move(0, Long.numberOfTrailingZeros(moves)));
+		}
+	}
+
+	/**
+	 * Applies a move sent by the server to a player's copy of the board
+	 */
+	private static void apply(Player player, int square) {
+		int mover = player.toMove != 0 ? player.toMove : player.color;
+		int next = mover == ReversiModel.W ? ReversiModel.B : ReversiModel.W;
+		if (square != ReversiMessage.PASS) {
+			long own = mover == ReversiModel.W ? player.wBits : player.bBits;
+			long opp = mover == ReversiModel.W ? player.bBits : player.wBits;
+			long flips = ReversiBitboard.flips(own, opp, square);
+			own |= flips | (1L << square);
+			opp ^= flips;
+			player.wBits = mover == ReversiModel.W ? own : opp;
+			player.bBits = mover == ReversiModel.W ? opp : own;
+		}
+		player.toMove = next;
+	}
+
+	/**
+	 * Writes a message now if the connection can take it, otherwise queues it
+	 */
+	private void send(Player player, ReversiMessage message) throws IOException {
+		ByteBuffer frame = ReversiProtocol.frame(message);
+		if (player.out.isEmpty()) {
+			player.channel.write(frame);
+			if (!frame.hasRemaining()) {
+				return;
+			}
+			player.channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+		player.out.add(frame);
+	}
+
+	/**
+	 * Writes queued frames until the connection cannot take more
+	 */
+	private void flush(SelectionKey key, Player player) throws IOException {
+		while (!player.out.isEmpty()) {
+			ByteBuffer frame = player.out.peek();
+			player.channel.write(frame);
+			if (frame.hasRemaining()) {
+				return;
+			}
+			player.out.poll();
+		}
+		key.interestOps(SelectionKey.OP_READ);
+	}
+}
@@ -0,0 +1,159 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ReversiMatch is one game hosted by ReversiGameServer.
+ * 
+ * A match waits for two players, is played until neither player can move,
+ * and is then finished. It keeps its own ReversiModel and ReversiController
+ * and has no JavaFX dependency, so thousands can run in one server.
+ * 
+ * White joins first and moves first, as in ReversiView. When a player has
+ * no legal move the match passes for them. The board size is chosen by the
+ * player who opens the match, 8x8 unless they ask for another.
+ * 
+ * @author Ryan Luu and Denny Ho
+ *
+ */
+public class ReversiMatch {
+	public enum State {
+		WAITING, PLAYING, FINISHED
+	}
+
+	private final int gameId;
+	private final ReversiModel model;
+	private final ReversiController controller;
+	private State state = State.WAITING;
+	private int players;
+	private int seq;
+
+	/**
+	 * Constructor for ReversiMatch on an 8x8 board
+	 * 
+	 * @param gameId : id of the game
+	 */
+	public ReversiMatch(int gameId) {
+		this(gameId, ReversiModel.BOARD_DIMENSION);
+	}
+
+	/**
+	 * Constructor for ReversiMatch
+	 * 
+	 * @param gameId : id of the game
+	 * @param size   : number of rows and columns of the board
+	 */
+	public ReversiMatch(int gameId, int size) {
+		this.gameId = gameId;
+		this.model = new ReversiModel(size);
+		this.controller = new ReversiController(model);
+	}
+
+	/**
+	 * Constructor for ReversiMatch that resumes a game, for example one
+	 * recovered from a ReversiJournal. Players are seated again as they join.
+	 * 
+	 * @param gameId   : id of the game
+	 * @param snapshot : snapshot message of the board, the color to move and
+	 *                 the sequence number of the last move
+	 */
+	public ReversiMatch(int gameId, ReversiMessage snapshot) {
+		this(gameId, snapshot.getSize());
+		model.setPosition(snapshot.toPosition());
+		controller.updateScore();
+		seq = snapshot.getSeq();
+	}
+
+	/**
+	 * Seats a player
+	 * 
+	 * @return the color of the new player, or 0 if the match is full
+	 */
+	public int join() {
+		if (state != State.WAITING) {
+			return 0;
+		}
+		players++;
+		if (players == 2) {
+			state = State.PLAYING;
+			return ReversiModel.B;
+		}
+		return ReversiModel.W;
+	}
+
+	/**
+	 * Plays a move for a player
+	 * 
+	 * @param color  : color of the player
+	 * @param square : index of the square played
+	 * @return the moves to send to both players, including any pass that
+	 *         follows, or null if the move was out of turn or illegal
+	 */
+	public List<ReversiMessage> play(int color, int square) {
+		int size = model.getSize();
+		if (state != State.PLAYING || model.getCurrentPlayer() != color || square < 0
+				|| !controller.isValidMove(square / size, square % size, color)) {
+			return null;
+		}
+		List<ReversiMessage> moves = new ArrayList<ReversiMessage>(2);
+		try {
+			controller.humanTurn(square / size, square % size, color);
+		} catch (ReversiIllegalLocationException e) {
+			return null;
+		}
+		moves.add(ReversiMessage.move(++seq, square));
+
+		int opponent = model.getCurrentPlayer();
+		if (controller.isGameOver()) {
+			state = State.FINISHED;
+			controller.updateScore();
+		} else if (model.getLegalMoveCount(opponent) == 0) {
+			model.setCurrentPlayer(color);
+			moves.add(ReversiMessage.move(++seq, ReversiMessage.PASS));
+		}
+		return moves;
+	}
+
+	/**
+	 * Ends the match early, used when a player leaves
+	 */
+	public void abandon() {
+		state = State.FINISHED;
+	}
+
+	/**
+	 * Gets the whole board, sent to start the match and to resync a player
+	 * 
+	 * @return a snapshot message of the board
+	 */
+	public ReversiMessage snapshot() {
+		return ReversiMessage.snapshot(seq, model.getPosition());
+	}
+
+	/**
+	 * @return id of the game
+	 */
+	public int getGameId() {
+		return gameId;
+	}
+
+	/**
+	 * @return number of rows and columns of the board
+	 */
+	public int getSize() {
+		return model.getSize();
+	}
+
+	/**
+	 * @return state of the match
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the model of the match
+	 */
+	public ReversiModel getModel() {
+		return model;
+	}
+}
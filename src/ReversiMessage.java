@@ -0,0 +1,276 @@
+/**
+ * ReversiMessage is one message of the network protocol.
+ * 
+ * A message is either a move, the square played by the sender, or a
+ * snapshot of the whole board as its size and a pair of bitboards. Both carry the
+ * sequence number of the turn they belong to. The game server also uses
+ * join messages, with the board size to open a game at, to seat players in
+ * a game and watch messages to add
+ * spectators to one, and peers exchange heartbeat and
+ * resume messages to keep a connection alive and to catch up after it drops.
+ * 
+ * @author Ryan Luu and Denny Ho
+ *
+ */
+public final class ReversiMessage {
+	public static final int PASS = -1;
+
+	private final int type;
+	private final int seq;
+	private final int square;
+	private final int size;
+	private final long[] wBits;
+	private final long[] bBits;
+	private final int toMove;
+	private final int gameId;
+
+	private ReversiMessage(int type, int seq, int square, int size, long[] wBits, long[] bBits, int toMove,
+			int gameId) {
+		this.type = type;
+		this.seq = seq;
+		this.square = square;
+		this.size = size;
+		this.wBits = wBits;
+		this.bBits = bBits;
+		this.toMove = toMove;
+		this.gameId = gameId;
+	}
+
+	private ReversiMessage(int type, int seq, int square, int toMove, int gameId) {
+		this(type, seq, square, 0, null, null, toMove, gameId);
+	}
+
+	/**
+	 * Creates a move message
+	 * 
+	 * @param seq    : sequence number of the move
+	 * @param square : index of the square played, or PASS
+	 * @return the message
+	 */
+	public static ReversiMessage move(int seq, int square) {
+		return new ReversiMessage(ReversiProtocol.MOVE, seq, square, 0, 0);
+	}
+
+	/**
+	 * Creates a snapshot message of an 8x8 board
+	 * 
+	 * @param seq    : sequence number of the last move on the board
+	 * @param wBits  : bitboard of the White tokens
+	 * @param bBits  : bitboard of the Black tokens
+	 * @param toMove : color of the player to move, or 0 if unknown
+	 * @return the message
+	 */
+	public static ReversiMessage snapshot(int seq, long wBits, long bBits, int toMove) {
+		return snapshot(seq, ReversiModel.BOARD_DIMENSION, new long[] { wBits }, new long[] { bBits }, toMove);
+	}
+
+	/**
+	 * Creates a snapshot message of a board of any size. The arrays are not
+	 * copied and must not be changed afterwards.
+	 * 
+	 * @param seq    : sequence number of the last move on the board
+	 * @param size   : number of rows and columns
+	 * @param wBits  : bitboard of the White tokens, one long per 64 squares
+	 * @param bBits  : bitboard of the Black tokens, one long per 64 squares
+	 * @param toMove : color of the player to move, or 0 if unknown
+	 * @return the message
+	 */
+	public static ReversiMessage snapshot(int seq, int size, long[] wBits, long[] bBits, int toMove) {
+		return new ReversiMessage(ReversiProtocol.SNAPSHOT, seq, PASS, size, wBits, bBits, toMove, 0);
+	}
+
+	/**
+	 * Creates a message asking the game server for a seat in an 8x8 game
+	 * 
+	 * @param gameId : id of the game to join
+	 * @return the message
+	 */
+	public static ReversiMessage join(int gameId) {
+		return join(gameId, ReversiModel.BOARD_DIMENSION);
+	}
+
+	/**
+	 * Creates a message asking the game server for a seat in a game
+	 * 
+	 * @param gameId : id of the game to join
+	 * @param size   : board size to open the game at, if it is not open yet
+	 * @return the message
+	 */
+	public static ReversiMessage join(int gameId, int size) {
+		return new ReversiMessage(ReversiProtocol.JOIN, 0, PASS, size, null, null, 0, gameId);
+	}
+
+	/**
+	 * Creates a message asking to watch a game as a spectator
+	 * 
+	 * @param gameId : id of the game to watch
+	 * @return the message
+	 */
+	public static ReversiMessage watch(int gameId) {
+		return new ReversiMessage(ReversiProtocol.WATCH, 0, PASS, 0, gameId);
+	}
+
+	/**
+	 * Creates a message telling a player which color they were seated as
+	 * 
+	 * @param gameId : id of the game joined
+	 * @param color  : color of the player
+	 * @return the message
+	 */
+	public static ReversiMessage joined(int gameId, int color) {
+		return new ReversiMessage(ReversiProtocol.JOINED, 0, PASS, color, gameId);
+	}
+
+	/**
+	 * Creates a heartbeat message
+	 * 
+	 * @param seq : sequence number of the last move received
+	 * @return the message
+	 */
+	public static ReversiMessage heartbeat(int seq) {
+		return new ReversiMessage(ReversiProtocol.HEARTBEAT, seq, PASS, 0, 0);
+	}
+
+	/**
+	 * Creates a message asking the peer for every move after a sequence number
+	 * 
+	 * @param seq : sequence number of the last move received
+	 * @return the message
+	 */
+	public static ReversiMessage resume(int seq) {
+		return new ReversiMessage(ReversiProtocol.RESUME, seq, PASS, 0, 0);
+	}
+
+	/**
+	 * Creates a snapshot message from a board
+	 * 
+	 * @param seq    : sequence number of the last move on the board
+	 * @param board  : the board
+	 * @param toMove : color of the player to move, or 0 if unknown
+	 * @return the message
+	 */
+	public static ReversiMessage snapshot(int seq, ReversiBoard board, int toMove) {
+		return snapshot(seq, ReversiPosition.of(board.getBoard(), toMove));
+	}
+
+	/**
+	 * Creates a snapshot message from a position
+	 * 
+	 * @param seq      : sequence number of the last move on the board
+	 * @param position : the position
+	 * @return the message
+	 */
+	public static ReversiMessage snapshot(int seq, ReversiPosition position) {
+		return snapshot(seq, position.getSize(), position.getWords(ReversiModel.W), position.getWords(ReversiModel.B),
+				position.getToMove());
+	}
+
+	/**
+	 * Builds the position of a snapshot message
+	 * 
+	 * @return the position
+	 */
+	public ReversiPosition toPosition() {
+		return new ReversiPosition(size, wBits, bBits, toMove);
+	}
+
+	/**
+	 * Builds the 2D array of a snapshot message
+	 * 
+	 * @return a new board array
+	 */
+	public int[][] toBoard() {
+		return toPosition().toBoard();
+	}
+
+	/**
+	 * @return the message type, one of the types in ReversiProtocol
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * @return the sequence number
+	 */
+	public int getSeq() {
+		return seq;
+	}
+
+	/**
+	 * @return the square played, or PASS
+	 */
+	public int getSquare() {
+		return square;
+	}
+
+	/**
+	 * @return the board size of a snapshot, or the size a join opens its game at
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the White tokens of a snapshot, the whole board up to 8x8
+	 */
+	public long getWBits() {
+		return wBits[0];
+	}
+
+	/**
+	 * @return the Black tokens of a snapshot, the whole board up to 8x8
+	 */
+	public long getBBits() {
+		return bBits[0];
+	}
+
+	/**
+	 * @param color : color of the tokens
+	 * @return the tokens of one color of a snapshot, one long per 64 squares
+	 */
+	public long[] getWords(int color) {
+		return (color == ReversiModel.B ? bBits : wBits).clone();
+	}
+
+	/**
+	 * @return the color to move of a snapshot, or 0 if unknown
+	 */
+	public int getToMove() {
+		return toMove;
+	}
+
+	/**
+	 * @return the color a joined message seats the player as
+	 */
+	public int getColor() {
+		return toMove;
+	}
+
+	/**
+	 * @return the game id of a join, joined or watch message
+	 */
+	public int getGameId() {
+		return gameId;
+	}
+
+	@Override
+	public String toString() {
+		if (type == ReversiProtocol.MOVE) {
+			return "Move #" + seq + " " + (square == PASS ? "pass" : "square " + square);
+		}
+		if (type == ReversiProtocol.SNAPSHOT) {
+			return "Snapshot #" + seq + " " + size + "x" + size;
+		}
+		if (type == ReversiProtocol.HEARTBEAT) {
+			return "Heartbeat #" + seq;
+		}
+		if (type == ReversiProtocol.RESUME) {
+			return "Resume after #" + seq;
+		}
+		if (type == ReversiProtocol.WATCH) {
+			return "Watch game " + gameId;
+		}
+		return (type == ReversiProtocol.JOIN ? "Join game " : "Joined game ") + gameId;
+	}
+}
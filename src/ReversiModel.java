@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.Observable;
 
 /**
@@ -5,6 +6,26 @@ import java.util.Observable;
  * 
  * Game data includes the state of the board, the scores, the current player, and legal moves.
  * 
+ * The number of tokens of each color is kept up to date as tokens are placed
+ * and flipped, and the legal moves of both colors are computed once per board
+ * and kept until the board changes, so the controller can ask for them as
+ * often as it likes without rescanning the board.
+ * 
+ * Moves played with makeMove are recorded on an undo stack as the square and
+ * the mask of flipped tokens, so they can be taken back with unmakeMove and
+ * played again with redoMove without copying the board. getRecord and
+ * setRecord save and restore the game with that history.
+ * 
+ * The board size is chosen when the model is made, 8x8 unless asked
+ * otherwise, and the moves are found by the ReversiEngine for that size.
+ * Bitboards are arrays with one long per 64 squares, a single long on
+ * boards up to 8x8.
+ * 
+ * Every change publishes a new immutable ReversiPosition through a volatile
+ * field. The model itself belongs to one thread, but getPosition may be
+ * called from any thread and always gives a whole board with its player to
+ * move.
+ * 
  * @author DennyHo and Ryan Luu
  *
  */
@@ -13,8 +34,38 @@ public class ReversiModel extends Observable {
 	public static int W = 1;
 	public static int B = 2;
 
-	public static int BOARD_DIMENSION = 8;	
+	// Size of the standard board, used unless a game asks for another
+	public static final int BOARD_DIMENSION = 8;
+	private final int size;
+	private final ReversiEngine engine;
+	private final int words;
 	private int[][] board;
+	private final long[] wBits;
+	private final long[] bBits;
+	private long hash;
+	private volatile ReversiPosition position;
+	private int wCount;
+	private int bCount;
+	
+	// Legal moves of both colors, valid until the board changes
+	private final long[] wMoves;
+	private final long[] bMoves;
+	private boolean movesValid;
+	
+	// Squares changed since the last endTurn
+	private final long[] changed;
+	
+	// Undo stack, entries past undoSize up to redoSize can be redone. The
+	// flips of each entry take one long per 64 squares.
+	private int[] undoSquares = new int[128];
+	private long[] undoFlips;
+	private int[] undoColors = new int[128];
+	private int[] undoPlayers = new int[128];
+	private int undoSize;
+	private int redoSize;
+	// Position the undo stack starts from
+	private ReversiPosition start;
+	private final long[] flips;
 	
 	private int validMoves = 4;
 	private int currentPlayer = 1;
@@ -22,26 +73,54 @@ public class ReversiModel extends Observable {
 	private int bScore = 2;
 	
 	/**
-	 * Constructor that uses a preset board.
+	 * Constructor that uses a preset board. The board size is the length of
+	 * the array.
 	 * 
 	 * Meant for testing.
 	 * 
 	 * @param board : preset board that is an 2D array of ints
 	 */
 	public ReversiModel(int[][] board) {
+		this(ReversiEngine.forSize(board.length));
 		this.board = board;
+		syncBits();
 	}
 	/**
 	 * Constructor for ReversiModel
 	 *
-	 * Initializes the board and sets the first four tokens.
+	 * Initializes an 8x8 board and sets the first four tokens.
 	 */
 	public ReversiModel() {
-		board = new int[BOARD_DIMENSION][BOARD_DIMENSION];
-		board[3][3] = W; 
-		board[3][4] = B; 
-		board[4][3] = B; 
-		board[4][4] = W; 
+		this(BOARD_DIMENSION);
+	}
+	/**
+	 * Constructor for ReversiModel on a board of any size
+	 *
+	 * Initializes the board and sets the first four tokens in the center.
+	 * 
+	 * @param size : number of rows and columns, even from 4 to 16
+	 */
+	public ReversiModel(int size) {
+		this(ReversiEngine.forSize(size));
+		engine.start(wBits, bBits);
+		this.board = new int[size][size];
+		syncBoard();
+		syncBits();
+	}
+	/**
+	 * Sets up the arrays sized for the board
+	 */
+	private ReversiModel(ReversiEngine engine) {
+		this.engine = engine;
+		this.size = engine.getSize();
+		this.words = engine.getWords();
+		wBits = engine.newBoard();
+		bBits = engine.newBoard();
+		wMoves = engine.newBoard();
+		bMoves = engine.newBoard();
+		changed = engine.newBoard();
+		flips = engine.newBoard();
+		undoFlips = new long[undoSquares.length * words];
 	}
 	/**
 	 * Places a white token on the board at given row col
@@ -51,8 +130,23 @@ public class ReversiModel extends Observable {
 	 * @throws ReversiIllegalLocationException : exception for off board placement
 	 */
 	public void placeW(int row, int col) {
-		if (!(row < 0 || row > BOARD_DIMENSION-1 || col < 0 || col > BOARD_DIMENSION-1)) {
+		if (!(row < 0 || row > size-1 || col < 0 || col > size-1)) {
+			int square = engine.square(row, col);
+			if (board[row][col] == B) {
+				hash ^= ReversiZobrist.flipKey(square);
+				bCount--;
+			} else if (board[row][col] == BLANK) {
+				hash ^= ReversiZobrist.key(W, square);
+			} else {
+				return;
+			}
+			wCount++;
+			movesValid = false;
+			ReversiEngine.set(changed, square);
 			board[row][col] = W;
+			ReversiEngine.set(wBits, square);
+			bBits[square >>> 6] &= ~(1L << square);
+			publish();
 		}
 //		setChanged();
 //        notifyObservers(new ReversiBoard(board)); 
@@ -65,8 +159,23 @@ public class ReversiModel extends Observable {
 	 * @throws ReversiIllegalLocationException : exception for off board placement
 	 */	
 	public void placeB(int row, int col) {
-		if (!(row < 0 || row > BOARD_DIMENSION-1 || col < 0 || col > BOARD_DIMENSION-1)) {
+		if (!(row < 0 || row > size-1 || col < 0 || col > size-1)) {
+			int square = engine.square(row, col);
+			if (board[row][col] == W) {
+				hash ^= ReversiZobrist.flipKey(square);
+				wCount--;
+			} else if (board[row][col] == BLANK) {
+				hash ^= ReversiZobrist.key(B, square);
+			} else {
+				return;
+			}
+			bCount++;
+			movesValid = false;
+			ReversiEngine.set(changed, square);
 			board[row][col] = B;
+			ReversiEngine.set(bBits, square);
+			wBits[square >>> 6] &= ~(1L << square);
+			publish();
 		}
 //		setChanged();
 //        notifyObservers(new ReversiBoard(board)); 		
@@ -78,17 +187,219 @@ public class ReversiModel extends Observable {
 	 * @param col : col token is placed
 	 */
 	public void flip(int row, int col) {
-		if (!(row < 0 || row > BOARD_DIMENSION-1 || col < 0 || col > BOARD_DIMENSION-1)) {
+		if (!(row < 0 || row > size-1 || col < 0 || col > size-1)) {
+			int square = engine.square(row, col);
+			long bit = 1L << square;
+			int word = square >>> 6;
+			if (board[row][col] != BLANK) {
+				hash ^= ReversiZobrist.flipKey(square);
+				movesValid = false;
+				changed[word] |= bit;
+			}
 			if (board[row][col] == B) {
 				board[row][col] = W;
+				bBits[word] &= ~bit;
+				wBits[word] |= bit;
+				bCount--;
+				wCount++;
 			}
 			else if (board[row][col] == W) {
 				board[row][col] = B;
+				wBits[word] &= ~bit;
+				bBits[word] |= bit;
+				wCount--;
+				bCount++;
 			}
+			publish();
 		}
 //		setChanged();
 //        notifyObservers(new ReversiBoard(board)); 
 	}
+	/**
+	 * Plays a move, capturing the tokens it surrounds, and records it on the
+	 * undo stack. Any moves that could have been redone are forgotten.
+	 * 
+	 * @param square : index of the square played, or -1 to pass
+	 * @param color  : color of the player moving
+	 * @return number of captured tokens
+	 */
+	public int makeMove(int square, int color) {
+		int captured = 0;
+		if (square >= 0) {
+			captured = engine.flips(color == B ? bBits : wBits, color == B ? wBits : bBits, square, flips);
+		} else {
+			ReversiEngine.clear(flips);
+		}
+		if (undoSize == undoSquares.length) {
+			int length = undoSize * 2;
+			undoSquares = Arrays.copyOf(undoSquares, length);
+			undoFlips = Arrays.copyOf(undoFlips, length * words);
+			undoColors = Arrays.copyOf(undoColors, length);
+			undoPlayers = Arrays.copyOf(undoPlayers, length);
+		}
+		undoSquares[undoSize] = square;
+		System.arraycopy(flips, 0, undoFlips, undoSize * words, words);
+		undoColors[undoSize] = color;
+		undoPlayers[undoSize] = currentPlayer;
+		undoSize++;
+		redoSize = undoSize;
+		apply(square, flips, color);
+		setCurrentPlayer(color == B ? W : B);
+		return captured;
+	}
+	/**
+	 * Takes back the last move on the undo stack. The player who made it
+	 * becomes the current player again.
+	 * 
+	 * @return whether there was a move to take back
+	 */
+	public boolean unmakeMove() {
+		if (undoSize == 0) {
+			return false;
+		}
+		undoSize--;
+		System.arraycopy(undoFlips, undoSize * words, flips, 0, words);
+		revert(undoSquares[undoSize], flips, undoColors[undoSize]);
+		setCurrentPlayer(undoPlayers[undoSize]);
+		return true;
+	}
+	/**
+	 * Plays the last move taken back by unmakeMove again
+	 * 
+	 * @return whether there was a move to play again
+	 */
+	public boolean redoMove() {
+		if (undoSize == redoSize) {
+			return false;
+		}
+		int square = undoSquares[undoSize];
+		int color = undoColors[undoSize];
+		System.arraycopy(undoFlips, undoSize * words, flips, 0, words);
+		apply(square, flips, color);
+		undoSize++;
+		setCurrentPlayer(color == B ? W : B);
+		return true;
+	}
+	/**
+	 * Getter for the game with its history, to save it
+	 * @return the position the undo stack starts from, every move on it and
+	 *         the current position
+	 */
+	public ReversiGameRecord getRecord() {
+		return new ReversiGameRecord(start, Arrays.copyOf(undoSquares, redoSize), Arrays.copyOf(undoColors, redoSize),
+				Arrays.copyOf(undoPlayers, redoSize), redoSize - undoSize, position);
+	}
+	/**
+	 * Setter for a saved game. Its moves are played from its start position,
+	 * so they can be taken back, and the ones that had been taken back are
+	 * taken back again. A record whose moves do not lead to its position is
+	 * set up without its history.
+	 * 
+	 * @param record : the game, the size of this board
+	 */
+	public void setRecord(ReversiGameRecord record) {
+		setPosition(record.getStart());
+		int moves = record.getMoveCount();
+		for (int i = 0; i < moves; i++) {
+			int square = record.getSquare(i);
+			int color = record.getColor(i);
+			if (square >= 0 && !isLegalMove(color, square)) {
+				setPosition(record.getPosition());
+				return;
+			}
+			setCurrentPlayer(record.getPlayer(i));
+			makeMove(square, color);
+		}
+		for (int i = 0; i < record.getUndone() && i < moves; i++) {
+			unmakeMove();
+		}
+		setCurrentPlayer(record.getPosition().getToMove());
+		if (!position.equals(record.getPosition())) {
+			setPosition(record.getPosition());
+		}
+	}
+	/**
+	 * Getter for the number of moves that can be taken back
+	 * @return size of the undo stack
+	 */
+	public int getUndoCount() {
+		return undoSize;
+	}
+	/**
+	 * Getter for the number of moves that can be played again
+	 * @return number of moves taken back since the last new move
+	 */
+	public int getRedoCount() {
+		return redoSize - undoSize;
+	}
+	/**
+	 * Places a token and flips the captured tokens to its color
+	 */
+	private void apply(int square, long[] flips, int color) {
+		int captured = ReversiEngine.count(flips);
+		int added = captured + (square >= 0 ? 1 : 0);
+		long[] own = color == B ? bBits : wBits;
+		long[] opp = color == B ? wBits : bBits;
+		for (int i = 0; i < words; i++) {
+			own[i] |= flips[i];
+			opp[i] &= ~flips[i];
+			changed[i] |= flips[i];
+		}
+		if (color == B) {
+			bCount += added;
+			wCount -= captured;
+		} else {
+			wCount += added;
+			bCount -= captured;
+		}
+		hash ^= ReversiZobrist.flipKeys(flips);
+		if (square >= 0) {
+			ReversiEngine.set(own, square);
+			ReversiEngine.set(changed, square);
+			hash ^= ReversiZobrist.key(color, square);
+			board[square / size][square % size] = color;
+		}
+		setCells(flips, color);
+		movesValid = false;
+	}
+	/**
+	 * Removes a placed token and flips the captured tokens back
+	 */
+	private void revert(int square, long[] flips, int color) {
+		int captured = ReversiEngine.count(flips);
+		int removed = captured + (square >= 0 ? 1 : 0);
+		long[] own = color == B ? bBits : wBits;
+		long[] opp = color == B ? wBits : bBits;
+		for (int i = 0; i < words; i++) {
+			own[i] &= ~flips[i];
+			opp[i] |= flips[i];
+			changed[i] |= flips[i];
+		}
+		if (color == B) {
+			bCount -= removed;
+			wCount += captured;
+		} else {
+			wCount -= removed;
+			bCount += captured;
+		}
+		hash ^= ReversiZobrist.flipKeys(flips);
+		if (square >= 0) {
+			own[square >>> 6] &= ~(1L << square);
+			ReversiEngine.set(changed, square);
+			hash ^= ReversiZobrist.key(color, square);
+			board[square / size][square % size] = BLANK;
+		}
+		setCells(flips, color == B ? W : B);
+		movesValid = false;
+	}
+	/**
+	 * Sets every square of a bitboard to a color in the 2D array
+	 */
+	private void setCells(long[] squares, int color) {
+		for (int square = ReversiEngine.next(squares, 0); square >= 0; square = ReversiEngine.next(squares, square + 1)) {
+			board[square / size][square % size] = color;
+		}
+	}
 	/**
 	 * Gets the token color at a given on the board
 	 * 
@@ -100,6 +411,20 @@ public class ReversiModel extends Observable {
 	public int getAtLocation(int row, int col) {
 		return board[row][col];
 	}
+	/**
+	 * Getter for the number of rows and columns of the board
+	 * @return the board size
+	 */
+	public int getSize() {
+		return size;
+	}
+	/**
+	 * Getter for the engine that finds moves on this board size
+	 * @return the engine
+	 */
+	public ReversiEngine getEngine() {
+		return engine;
+	}
 	/**
 	 * Getter for the number of legal moves on the board for current player
 	 * @return number of legal moves
@@ -126,7 +451,11 @@ public class ReversiModel extends Observable {
 	 * @param currentPlayer : color of the current player
 	 */
 	public void setCurrentPlayer(int currentPlayer) {
+		if (currentPlayer != this.currentPlayer) {
+			hash ^= ReversiZobrist.sideKey();
+		}
 		this.currentPlayer = currentPlayer;
+		publish();
 	}
 	/**
 	 * Getter for White player's score
@@ -162,21 +491,212 @@ public class ReversiModel extends Observable {
 	}
 	
 	/**
-	 * Setter for Loading a Previously Played Board
-	 * @param loadBoard : A Previously Played Board
+	 * Setter for Loading a Previously Played Board. The array is copied, so
+	 * the caller may keep using it.
+	 * @param loadBoard : A Previously Played Board, the size of this board
 	 */
 	public void setBoard(int[][] loadBoard) {
-		this.board = loadBoard;
+		if (loadBoard.length != size) {
+			throw new IllegalArgumentException("Board is " + loadBoard.length + "x" + loadBoard.length + ", not " + size + "x" + size);
+		}
+		this.board = new int[size][];
+		for (int i = 0; i < size; i++) {
+			this.board[i] = Arrays.copyOf(loadBoard[i], size);
+		}
+		syncBits();
 	}
 	
+	/**
+	 * Setter for the whole board and the player to move
+	 * @param position : the position to set up, the size of this board
+	 */
+	public void setPosition(ReversiPosition position) {
+		if (position.getSize() != size) {
+			throw new IllegalArgumentException("Position is " + position.getSize() + "x" + position.getSize() + ", not " + size + "x" + size);
+		}
+		this.board = position.toBoard();
+		this.currentPlayer = position.getToMove();
+		syncBits();
+	}
+	
+	/**
+	 * Getter for the latest position, safe to call from any thread
+	 * @return immutable snapshot of the board and the player to move
+	 */
+	public ReversiPosition getPosition() {
+		return position;
+	}
+	
+	/**
+	 * Publishes the board as a new position
+	 */
+	private void publish() {
+		position = new ReversiPosition(engine, wBits, bBits, currentPlayer);
+	}
+	
+	/**
+	 * Getter for the White tokens as a bitboard, the whole board up to 8x8
+	 * @return bitboard with a bit set on every White token of the first 64 squares
+	 */
+	public long getWBits() {
+		return wBits[0];
+	}
+	
+	/**
+	 * Getter for the Black tokens as a bitboard, the whole board up to 8x8
+	 * @return bitboard with a bit set on every Black token of the first 64 squares
+	 */
+	public long getBBits() {
+		return bBits[0];
+	}
+	
+	/**
+	 * Getter for the tokens of one color as a bitboard, the whole board up to 8x8
+	 * @param color : color of the tokens
+	 * @return bitboard with a bit set on every token of that color of the first 64 squares
+	 */
+	public long getBits(int color) {
+		return color == B ? bBits[0] : wBits[0];
+	}
+	
+	/**
+	 * Getter for the tokens of one color on a board of any size
+	 * @param color : color of the tokens
+	 * @return a copy of the bitboard, one long per 64 squares
+	 */
+	public long[] getWords(int color) {
+		return (color == B ? bBits : wBits).clone();
+	}
+	
+	/**
+	 * Getter for the number of White tokens on the board
+	 * @return number of White tokens
+	 */
+	public int getWCount() {
+		return wCount;
+	}
+	
+	/**
+	 * Getter for the number of Black tokens on the board
+	 * @return number of Black tokens
+	 */
+	public int getBCount() {
+		return bCount;
+	}
+	
+	/**
+	 * Getter for the number of empty squares on the board
+	 * @return number of empty squares
+	 */
+	public int getEmptyCount() {
+		return size * size - wCount - bCount;
+	}
+	
+	/**
+	 * Getter for the legal moves of a color, computed at most once per board
+	 * @param color : color of the player
+	 * @return bitboard with a bit set on every legal location of the first 64 squares
+	 */
+	public long getLegalMoves(int color) {
+		return legalMoves(color)[0];
+	}
+	
+	/**
+	 * Checks whether a square is a legal move for a color
+	 * @param color  : color of the player
+	 * @param square : index of the square
+	 * @return whether the player may play there
+	 */
+	public boolean isLegalMove(int color, int square) {
+		return ReversiEngine.get(legalMoves(color), square);
+	}
+	
+	/**
+	 * Getter for the number of legal moves of a color
+	 * @param color : color of the player
+	 * @return number of legal locations
+	 */
+	public int getLegalMoveCount(int color) {
+		return ReversiEngine.count(legalMoves(color));
+	}
+	
+	/**
+	 * Finds the legal moves of both colors if the board changed
+	 */
+	private long[] legalMoves(int color) {
+		if (!movesValid) {
+			engine.legalMoves(wBits, bBits, wMoves);
+			engine.legalMoves(bBits, wBits, bMoves);
+			movesValid = true;
+		}
+		return color == B ? bMoves : wMoves;
+	}
+	
+	/**
+	 * Getter for the Zobrist hash of the board and the player to move
+	 * @return hash of the position
+	 */
+	public long getHash() {
+		return hash;
+	}
+	
+	/**
+	 * Fills the 2D array from the bitboards
+	 */
+	private void syncBoard() {
+		for (int square = 0; square < size * size; square++) {
+			board[square / size][square % size] = ReversiEngine.get(wBits, square) ? W
+					: ReversiEngine.get(bBits, square) ? B : BLANK;
+		}
+	}
+	
+	/**
+	 * Rebuilds the bitboards and hash from the 2D array. Moves made before
+	 * can no longer be taken back.
+	 */
+	private void syncBits() {
+		ReversiEngine.clear(wBits);
+		ReversiEngine.clear(bBits);
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				if (board[i][j] == W) {
+					ReversiEngine.set(wBits, engine.square(i, j));
+				} else if (board[i][j] == B) {
+					ReversiEngine.set(bBits, engine.square(i, j));
+				}
+			}
+		}
+		hash = ReversiZobrist.hash(wBits, bBits, currentPlayer);
+		wCount = ReversiEngine.count(wBits);
+		bCount = ReversiEngine.count(bBits);
+		movesValid = false;
+		undoSize = 0;
+		redoSize = 0;
+		for (int square = 0; square < size * size; square++) {
+			ReversiEngine.set(changed, square);
+		}
+		publish();
+		start = position;
+	}
+	
+	/**
+	 * Getter for a copy of the board, for code that works on ReversiBoard
+	 * @return a ReversiBoard with its own array
+	 */
 	public ReversiBoard getBoardObj() {
-		return new ReversiBoard(board);
+		return new ReversiBoard(position.toBoard());
 	}
 	
+	/**
+	 * Tells the observers the turn has ended, with the squares changed since
+	 * the last time
+	 */
 	public void endTurn() {
+		long[] squares = changed.clone();
+		ReversiEngine.clear(changed);
 		setChanged();
-        notifyObservers(new ReversiBoard(board)); 
+		notifyObservers(new ReversiChange(position, squares));
 	}
 	
 
-}
+}
\ No newline at end of file
@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * ReversiOpeningBook holds good replies to known opening positions.
+ *
+ * Positions are keyed by a canonical hash: the smallest Zobrist hash of the
+ * position under the 8 symmetries of the board, so a position and its
+ * rotations and reflections share one key. Replies are stored as squares of
+ * the canonical position and turned back to the real board when looked up.
+ *
+ * The book file is a 16 byte header with the magic number, the format version
+ * and the number of entries, followed by 16 byte entries sorted by key: the
+ * key, the weight of the reply and the square. The file is memory-mapped and
+ * searched in place, so opening a book does not read it.
+ *
+ * Build a book with ReversiBookBuilder.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiOpeningBook {
+	static final int MAGIC = 0x5256424B;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+	static final int ENTRY_SIZE = 16;
+
+	private final MappedByteBuffer entries;
+	private final int size;
+
+	private ReversiOpeningBook(MappedByteBuffer entries, int size) {
+		this.entries = entries;
+		this.size = size;
+	}
+
+	/**
+	 * Maps a book file
+	 *
+	 * @param path : path of the book file
+	 * @return the book
+	 * @throws IOException : when the file cannot be mapped or is not a book
+	 */
+	public static ReversiOpeningBook open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Not an opening book");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			long size = buffer.getLong(8);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+					|| HEADER_SIZE + size * ENTRY_SIZE != channel.size()) {
+				throw new IOException("Not an opening book");
+			}
+			return new ReversiOpeningBook(buffer, (int) size);
+		}
+	}
+
+	/**
+	 * Gets the canonical key of a position
+	 *
+	 * @param wBits  : bitboard of the White tokens
+	 * @param bBits  : bitboard of the Black tokens
+	 * @param toMove : color of the player to move
+	 * @return the smallest hash of the position under the 8 symmetries
+	 */
+	public static long canonicalKey(long wBits, long bBits, int toMove) {
+		int symmetry = canonicalSymmetry(wBits, bBits, toMove);
+		return ReversiZobrist.hash(ReversiBitboard.transform(wBits, symmetry), ReversiBitboard.transform(bBits, symmetry),
+				toMove);
+	}
+
+	/**
+	 * Gets the symmetry that turns a position into its canonical form
+	 *
+	 * @param wBits  : bitboard of the White tokens
+	 * @param bBits  : bitboard of the Black tokens
+	 * @param toMove : color of the player to move
+	 * @return symmetry from 0 to 7, as in ReversiBitboard.transform
+	 */
+	public static int canonicalSymmetry(long wBits, long bBits, int toMove) {
+		int best = 0;
+		long bestKey = ReversiZobrist.hash(wBits, bBits, toMove);
+		for (int symmetry = 1; symmetry < 8; symmetry++) {
+			long key = ReversiZobrist.hash(ReversiBitboard.transform(wBits, symmetry),
+					ReversiBitboard.transform(bBits, symmetry), toMove);
+			if (key < bestKey) {
+				bestKey = key;
+				best = symmetry;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Chooses a reply from the book, at random with the chance of each reply
+	 * in proportion to its weight
+	 *
+	 * @param own    : bitboard of the player to move
+	 * @param opp    : bitboard of the opponent
+	 * @param color  : color of the player to move
+	 * @param random : random to choose with, or null to take the heaviest reply
+	 * @return index of the square to play, or -1 if the position is not in
+	 *         the book
+	 */
+	public int chooseMove(long own, long opp, int color, Random random) {
+		long wBits = color == ReversiModel.W ? own : opp;
+		long bBits = color == ReversiModel.W ? opp : own;
+		int symmetry = canonicalSymmetry(wBits, bBits, color);
+		long key = ReversiZobrist.hash(ReversiBitboard.transform(wBits, symmetry),
+				ReversiBitboard.transform(bBits, symmetry), color);
+
+		int first = find(key);
+		if (first < 0) {
+			return -1;
+		}
+		long total = 0;
+		int end = first;
+		while (end < size && entries.getLong(offset(end)) == key) {
+			total += entries.getInt(offset(end) + 8);
+			end++;
+		}
+		int chosen = first;
+		if (random != null && total > 0) {
+			long pick = (long) (random.nextDouble() * total);
+			for (int i = first; i < end; i++) {
+				pick -= entries.getInt(offset(i) + 8);
+				if (pick < 0) {
+					chosen = i;
+					break;
+				}
+			}
+		}
+		int square = ReversiBitboard.inverseSquare(entries.get(offset(chosen) + 12), symmetry);
+		return (ReversiBitboard.legalMoves(own, opp) & (1L << square)) != 0 ? square : -1;
+	}
+
+	/**
+	 * @return the number of entries in the book
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Finds the first entry with a key by binary search
+	 */
+	private int find(long key) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (entries.getLong(offset(mid)) < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low < size && entries.getLong(offset(low)) == key ? low : -1;
+	}
+
+	/**
+	 * Gets the offset of an entry in the file
+	 */
+	private static int offset(int entry) {
+		return HEADER_SIZE + entry * ENTRY_SIZE;
+	}
+
+	/**
+	 * Writes a book entry, used by ReversiBookBuilder
+	 */
+	static void putEntry(ByteBuffer buffer, long key, int weight, int square) {
+		buffer.putLong(key);
+		buffer.putInt(weight);
+		buffer.put((byte) square);
+		buffer.put((byte) 0);
+		buffer.putShort((short) 0);
+	}
+}
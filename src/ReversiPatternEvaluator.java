@@ -0,0 +1,353 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ReversiPatternEvaluator scores a position by looking up the contents of
+ * lines and regions of the board in tables of learned weights.
+ *
+ * Each pattern is a list of squares: the edges with their X-squares, the
+ * 3x3 and 2x5 corner regions, the rows and columns next to the edges and the
+ * diagonals. A pattern is read as a base 3 number, one digit per square that
+ * is 0 for empty, 1 for the player to move and 2 for the opponent, and that
+ * number indexes the pattern's table. The rotations and reflections of a
+ * pattern read their squares in the matching order and share its table, and
+ * are read by gathering the pattern from a transformed copy of the board. On
+ * top of the patterns come a mobility term, the difference in legal moves,
+ * and a parity term for an odd number of empty squares.
+ *
+ * The game is split into stages by the number of discs, each with its own
+ * weights. Scores are the expected final disc difference for the player to
+ * move, times SCALE. Evaluating allocates nothing.
+ *
+ * Weights are learned from archived games by ReversiPatternTrainer and saved
+ * as a binary file: the magic number, the format version, the number of
+ * stages and the number of weights per stage, then every weight as a short.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiPatternEvaluator {
+	static final int MAGIC = 0x52565057;
+	static final int VERSION = 1;
+	static final int STAGES = 6;
+
+	/**
+	 * Score of one disc of final difference
+	 */
+	public static final int SCALE = 128;
+
+	// One instance of each pattern, the others are its symmetries. The squares
+	// are listed in the order gather packs them, lowest digit first.
+	private static final int[][] PATTERNS = {
+			{ 0, 1, 2, 3, 4, 5, 6, 7, 9, 14 },
+			{ 0, 1, 2, 8, 9, 10, 16, 17, 18 },
+			{ 0, 1, 2, 3, 4, 8, 9, 10, 11, 12 },
+			{ 8, 9, 10, 11, 12, 13, 14, 15 },
+			{ 16, 17, 18, 19, 20, 21, 22, 23 },
+			{ 24, 25, 26, 27, 28, 29, 30, 31 },
+			{ 0, 9, 18, 27, 36, 45, 54, 63 },
+			{ 1, 10, 19, 28, 37, 46, 55 },
+			{ 2, 11, 20, 29, 38, 47 },
+			{ 3, 12, 21, 30, 39 },
+			{ 24, 17, 10, 3 } };
+
+	// Base 3 value of a row of bits, bit j is worth 3 to the power j
+	private static final int[] TERNARY = new int[1 << 10];
+
+	// Offset of each pattern's table in a stage, and the inverse of each symmetry
+	private static final int[] TABLE_OFFSETS = new int[PATTERNS.length];
+	private static final int[] INVERSE = new int[8];
+
+	// Patterns read under each symmetry, as a bit per pattern. A symmetry that
+	// maps a pattern onto squares an earlier symmetry covered reads nothing.
+	private static final int[] READS = new int[8];
+	private static final int INSTANCE_COUNT;
+
+	/**
+	 * Number of weights of each stage, the pattern tables then mobility and parity
+	 */
+	static final int STAGE_SIZE;
+	static final int MOBILITY;
+	static final int PARITY;
+
+	static {
+		for (int bits = 0; bits < TERNARY.length; bits++) {
+			int power = 1;
+			for (int j = 0; j < 10; j++) {
+				if ((bits & (1 << j)) != 0) {
+					TERNARY[bits] += power;
+				}
+				power *= 3;
+			}
+		}
+		for (int symmetry = 0; symmetry < 8; symmetry++) {
+			for (int inverse = 0; inverse < 8; inverse++) {
+				if (ReversiBitboard.transformSquare(ReversiBitboard.transformSquare(1, symmetry), inverse) == 1
+						&& ReversiBitboard.transformSquare(ReversiBitboard.transformSquare(8, symmetry), inverse) == 8) {
+					INVERSE[symmetry] = inverse;
+				}
+			}
+		}
+		int offset = 0;
+		int instances = 0;
+		for (int k = 0; k < PATTERNS.length; k++) {
+			List<Long> seen = new ArrayList<Long>();
+			for (int symmetry = 0; symmetry < 8; symmetry++) {
+				long set = 0;
+				for (int square : PATTERNS[k]) {
+					set |= 1L << ReversiBitboard.transformSquare(square, symmetry);
+				}
+				if (!seen.contains(set)) {
+					seen.add(set);
+					READS[symmetry] |= 1 << k;
+					instances++;
+				}
+			}
+			TABLE_OFFSETS[k] = offset;
+			offset += pow3(PATTERNS[k].length);
+		}
+		INSTANCE_COUNT = instances;
+		MOBILITY = offset;
+		PARITY = offset + 1;
+		STAGE_SIZE = offset + 2;
+	}
+
+	private final short[] weights;
+
+	/**
+	 * Constructor for ReversiPatternEvaluator with every weight 0
+	 */
+	public ReversiPatternEvaluator() {
+		this(new short[STAGES * STAGE_SIZE]);
+	}
+
+	/**
+	 * Constructor for ReversiPatternEvaluator
+	 *
+	 * @param weights : weights of every stage, STAGE_SIZE per stage
+	 */
+	ReversiPatternEvaluator(short[] weights) {
+		if (weights.length != STAGES * STAGE_SIZE) {
+			throw new IllegalArgumentException("Expected " + STAGES * STAGE_SIZE + " weights, got " + weights.length);
+		}
+		this.weights = weights;
+	}
+
+	/**
+	 * Loads weights saved by save
+	 *
+	 * @param path : path of the weights file
+	 * @return the evaluator
+	 * @throws IOException : when the file cannot be read or is not a weights file
+	 */
+	public static ReversiPatternEvaluator load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			}
+			buffer.flip();
+			if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+					|| buffer.getInt() != STAGES || buffer.getInt() != STAGE_SIZE
+					|| buffer.remaining() != STAGES * STAGE_SIZE * 2) {
+				throw new IOException("Not a pattern weights file for this version");
+			}
+			short[] weights = new short[STAGES * STAGE_SIZE];
+			buffer.asShortBuffer().get(weights);
+			return new ReversiPatternEvaluator(weights);
+		}
+	}
+
+	/**
+	 * Saves the weights to a temp file and renames it over the weights file
+	 *
+	 * @param path : path of the weights file
+	 * @throws IOException : when the file cannot be written
+	 */
+	public void save(Path path) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(16 + weights.length * 2);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(STAGES);
+		buffer.putInt(STAGE_SIZE);
+		buffer.asShortBuffer().put(weights);
+		buffer.rewind();
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Scores a position
+	 *
+	 * @param own : bitboard of the player to move
+	 * @param opp : bitboard of the opponent
+	 * @return expected final disc difference for the player to move, times SCALE
+	 */
+	public int evaluate(long own, long opp) {
+		return evaluate(own, opp, ReversiBitboard.legalMoves(own, opp));
+	}
+
+	/**
+	 * Scores a position whose legal moves are already known
+	 *
+	 * @param own   : bitboard of the player to move
+	 * @param opp   : bitboard of the opponent
+	 * @param moves : legal moves of the player to move
+	 * @return expected final disc difference for the player to move, times SCALE
+	 */
+	public int evaluate(long own, long opp, long moves) {
+		int base = stage(own, opp) * STAGE_SIZE;
+		int score = lookup(weights, base, own, opp);
+		int mobility = ReversiBitboard.count(moves) - ReversiBitboard.count(ReversiBitboard.legalMoves(opp, own));
+		score += weights[base + MOBILITY] * mobility;
+		if ((ReversiBitboard.count(~(own | opp)) & 1) != 0) {
+			score += weights[base + PARITY];
+		}
+		return score;
+	}
+
+	/**
+	 * Gets the weights of every stage, STAGE_SIZE per stage, used by
+	 * ReversiPatternTrainer
+	 */
+	short[] getWeights() {
+		return weights;
+	}
+
+	/**
+	 * Writes the index in the weights of every pattern instance of a position,
+	 * used by ReversiPatternTrainer
+	 *
+	 * @param own     : bitboard of the player to move
+	 * @param opp     : bitboard of the opponent
+	 * @param indexes : array of at least getInstanceCount() entries
+	 */
+	static void indexes(long own, long opp, int[] indexes) {
+		int base = stage(own, opp) * STAGE_SIZE;
+		int n = 0;
+		for (int symmetry = 0; symmetry < 8; symmetry++) {
+			long o = ReversiBitboard.transform(own, INVERSE[symmetry]);
+			long p = ReversiBitboard.transform(opp, INVERSE[symmetry]);
+			for (int reads = READS[symmetry]; reads != 0; reads &= reads - 1) {
+				int k = Integer.numberOfTrailingZeros(reads);
+				indexes[n++] = base + TABLE_OFFSETS[k] + TERNARY[gather(k, o)] + 2 * TERNARY[gather(k, p)];
+			}
+		}
+	}
+
+	/**
+	 * @return the number of pattern instances read from each position
+	 */
+	static int getInstanceCount() {
+		return INSTANCE_COUNT;
+	}
+
+	/**
+	 * Gets the stage of the game, from the number of discs on the board
+	 */
+	static int stage(long own, long opp) {
+		return Math.min(STAGES - 1, (ReversiBitboard.count(own | opp) - 5) * STAGES / 60);
+	}
+
+	/**
+	 * Sums the weights of every pattern instance of a position. Each symmetry
+	 * of the board is made once, and the patterns read under it are gathered
+	 * from the transformed bitboards with shifts and masks.
+	 */
+	private static int lookup(short[] weights, int base, long own, long opp) {
+		int score = 0;
+		for (int symmetry = 0; symmetry < 8; symmetry++) {
+			long o = ReversiBitboard.transform(own, INVERSE[symmetry]);
+			long p = ReversiBitboard.transform(opp, INVERSE[symmetry]);
+			int reads = READS[symmetry];
+			// Spelled out per pattern so each gather is a fixed set of shifts
+			if ((reads & 1) != 0) {
+				score += weights[base + TABLE_OFFSETS[0] + TERNARY[gather(0, o)] + 2 * TERNARY[gather(0, p)]];
+			}
+			if ((reads & 2) != 0) {
+				score += weights[base + TABLE_OFFSETS[1] + TERNARY[gather(1, o)] + 2 * TERNARY[gather(1, p)]];
+			}
+			if ((reads & 4) != 0) {
+				score += weights[base + TABLE_OFFSETS[2] + TERNARY[gather(2, o)] + 2 * TERNARY[gather(2, p)]];
+			}
+			if ((reads & 8) != 0) {
+				score += weights[base + TABLE_OFFSETS[3] + TERNARY[gather(3, o)] + 2 * TERNARY[gather(3, p)]];
+			}
+			if ((reads & 16) != 0) {
+				score += weights[base + TABLE_OFFSETS[4] + TERNARY[gather(4, o)] + 2 * TERNARY[gather(4, p)]];
+			}
+			if ((reads & 32) != 0) {
+				score += weights[base + TABLE_OFFSETS[5] + TERNARY[gather(5, o)] + 2 * TERNARY[gather(5, p)]];
+			}
+			if ((reads & 64) != 0) {
+				score += weights[base + TABLE_OFFSETS[6] + TERNARY[gather(6, o)] + 2 * TERNARY[gather(6, p)]];
+			}
+			if ((reads & 128) != 0) {
+				score += weights[base + TABLE_OFFSETS[7] + TERNARY[gather(7, o)] + 2 * TERNARY[gather(7, p)]];
+			}
+			if ((reads & 256) != 0) {
+				score += weights[base + TABLE_OFFSETS[8] + TERNARY[gather(8, o)] + 2 * TERNARY[gather(8, p)]];
+			}
+			if ((reads & 512) != 0) {
+				score += weights[base + TABLE_OFFSETS[9] + TERNARY[gather(9, o)] + 2 * TERNARY[gather(9, p)]];
+			}
+			if ((reads & 1024) != 0) {
+				score += weights[base + TABLE_OFFSETS[10] + TERNARY[gather(10, o)] + 2 * TERNARY[gather(10, p)]];
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * Packs the squares of one of the PATTERNS into the low bits, in the
+	 * order they are listed. Diagonals are packed by a multiply that adds up
+	 * every row, since each of their squares is in a different column.
+	 */
+	private static int gather(int pattern, long b) {
+		switch (pattern) {
+		case 0:
+			return (int) ((b & 0xFF) | ((b >>> 1) & 0x100) | ((b >>> 5) & 0x200));
+		case 1:
+			return (int) ((b & 0x7) | ((b >>> 5) & 0x38) | ((b >>> 10) & 0x1C0));
+		case 2:
+			return (int) ((b & 0x1F) | ((b >>> 3) & 0x3E0));
+		case 3:
+			return (int) ((b >>> 8) & 0xFF);
+		case 4:
+			return (int) ((b >>> 16) & 0xFF);
+		case 5:
+			return (int) ((b >>> 24) & 0xFF);
+		case 6:
+			return (int) (((b & 0x8040201008040201L) * 0x0101010101010101L) >>> 56);
+		case 7:
+			return (int) (((b & 0x0080402010080402L) * 0x0101010101010101L) >>> 57);
+		case 8:
+			return (int) (((b & 0x0000804020100804L) * 0x0101010101010101L) >>> 58);
+		case 9:
+			return (int) (((b & 0x0000008040201008L) * 0x0101010101010101L) >>> 59);
+		default:
+			return (int) (((b & 0x0000000001020408L) * 0x0101010101010101L) >>> 56);
+		}
+	}
+
+	private static int pow3(int n) {
+		int power = 1;
+		for (int i = 0; i < n; i++) {
+			power *= 3;
+		}
+		return power;
+	}
+}
@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * ReversiPatternTrainer learns the weights of ReversiPatternEvaluator from
+ * the games in ReversiArchive files.
+ *
+ * Every position of every game is a sample whose target is the final disc
+ * difference of the game for the player to move. The weights are fitted to
+ * the samples by stochastic gradient descent on the squared error, and one
+ * game in ten is held back to measure the error on games that were not
+ * trained on.
+ *
+ * Usage: java ReversiPatternTrainer [-epochs n] [-rate r] weights archive ...
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiPatternTrainer {
+	private static final int MAX_MOVES = 60;
+
+	// Samples as parallel arrays, the player to move, the opponent and the target
+	private long[] own = new long[1024];
+	private long[] opp = new long[1024];
+	private byte[] targets = new byte[1024];
+	private boolean[] heldOut = new boolean[1024];
+	private int size;
+
+	private final float[] weights = new float[ReversiPatternEvaluator.STAGES * ReversiPatternEvaluator.STAGE_SIZE];
+	private final int[] indexes = new int[ReversiPatternEvaluator.getInstanceCount()];
+
+	/**
+	 * Trains weights from the command line
+	 *
+	 * @param args : options, the weights file and the archives to read
+	 * @throws Exception : when a file cannot be read or written
+	 */
+	public static void main(String[] args) throws Exception {
+		int epochs = 20;
+		float rate = 0.002f;
+		List<String> files = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-epochs")) {
+				epochs = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-rate")) {
+				rate = Float.parseFloat(args[++i]);
+			} else {
+				files.add(args[i]);
+			}
+		}
+		if (files.size() < 2) {
+			System.out.println("Usage: java ReversiPatternTrainer [-epochs n] [-rate r] weights archive ...");
+			return;
+		}
+
+		ReversiPatternTrainer trainer = new ReversiPatternTrainer();
+		for (String file : files.subList(1, files.size())) {
+			try (ReversiArchive archive = ReversiArchive.openReadOnly(Paths.get(file))) {
+				trainer.add(archive);
+			}
+		}
+		System.out.println(trainer.size + " positions");
+		Random random = new Random(1);
+		for (int epoch = 1; epoch <= epochs; epoch++) {
+			double trainError = trainer.train(rate, random);
+			System.out.println(String.format(Locale.ROOT, "Epoch %d: error %.2f discs, held out %.2f discs", epoch,
+					trainError, trainer.error()));
+		}
+		trainer.toEvaluator().save(Paths.get(files.get(0)));
+	}
+
+	/**
+	 * Adds every position of every game of an archive as a sample
+	 *
+	 * @param archive : archive to read
+	 * @throws IOException : when the archive cannot be read
+	 */
+	public void add(ReversiArchive archive) throws IOException {
+		long[] wBits = new long[MAX_MOVES];
+		long[] bBits = new long[MAX_MOVES];
+		int[] toMove = new int[MAX_MOVES];
+		for (long game = 0; game < archive.size(); game++) {
+			int diff = archive.getWScore(game) - archive.getBScore(game);
+			int moves = archive.positions(game, wBits, bBits, toMove);
+			for (int ply = 0; ply < moves; ply++) {
+				boolean white = toMove[ply] == ReversiModel.W;
+				add(white ? wBits[ply] : bBits[ply], white ? bBits[ply] : wBits[ply], white ? diff : -diff,
+						game % 10 == 9);
+			}
+		}
+	}
+
+	/**
+	 * Adds one sample, growing the arrays as needed
+	 */
+	private void add(long ownBits, long oppBits, int target, boolean test) {
+		if (size == own.length) {
+			own = Arrays.copyOf(own, size * 2);
+			opp = Arrays.copyOf(opp, size * 2);
+			targets = Arrays.copyOf(targets, size * 2);
+			heldOut = Arrays.copyOf(heldOut, size * 2);
+		}
+		own[size] = ownBits;
+		opp[size] = oppBits;
+		targets[size] = (byte) target;
+		heldOut[size] = test;
+		size++;
+	}
+
+	/**
+	 * Runs one pass over the training samples in a random order
+	 *
+	 * @param rate   : step size of the pattern weights
+	 * @param random : random to shuffle the samples with
+	 * @return root mean square error of the pass in discs
+	 */
+	public double train(float rate, Random random) {
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		for (int i = size - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+
+		// Mobility counts run to 20 or more, so its weight takes smaller steps
+		float mobilityRate = rate / 64;
+		double squares = 0;
+		int count = 0;
+		for (int sample : order) {
+			if (heldOut[sample]) {
+				continue;
+			}
+			int base = ReversiPatternEvaluator.stage(own[sample], opp[sample]) * ReversiPatternEvaluator.STAGE_SIZE;
+			int mobility = mobility(own[sample], opp[sample]);
+			int parity = ReversiBitboard.count(~(own[sample] | opp[sample])) & 1;
+			float error = targets[sample] - predict(sample, base, mobility, parity);
+			for (int index : indexes) {
+				weights[index] += rate * error;
+			}
+			weights[base + ReversiPatternEvaluator.MOBILITY] += mobilityRate * error * mobility;
+			weights[base + ReversiPatternEvaluator.PARITY] += rate * error * parity;
+			squares += error * error;
+			count++;
+		}
+		return Math.sqrt(squares / Math.max(1, count));
+	}
+
+	/**
+	 * Measures the error on the held out samples
+	 *
+	 * @return root mean square error in discs
+	 */
+	public double error() {
+		double squares = 0;
+		int count = 0;
+		for (int sample = 0; sample < size; sample++) {
+			if (!heldOut[sample]) {
+				continue;
+			}
+			int base = ReversiPatternEvaluator.stage(own[sample], opp[sample]) * ReversiPatternEvaluator.STAGE_SIZE;
+			float error = targets[sample] - predict(sample, base, mobility(own[sample], opp[sample]),
+					ReversiBitboard.count(~(own[sample] | opp[sample])) & 1);
+			squares += error * error;
+			count++;
+		}
+		return Math.sqrt(squares / Math.max(1, count));
+	}
+
+	/**
+	 * Rounds the weights to an evaluator
+	 *
+	 * @return the evaluator
+	 */
+	public ReversiPatternEvaluator toEvaluator() {
+		short[] scaled = new short[weights.length];
+		for (int i = 0; i < weights.length; i++) {
+			long weight = Math.round(weights[i] * ReversiPatternEvaluator.SCALE);
+			scaled[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, weight));
+		}
+		return new ReversiPatternEvaluator(scaled);
+	}
+
+	/**
+	 * Predicts the target of a sample, leaving its pattern indexes in indexes
+	 */
+	private float predict(int sample, int base, int mobility, int parity) {
+		ReversiPatternEvaluator.indexes(own[sample], opp[sample], indexes);
+		float prediction = 0;
+		for (int index : indexes) {
+			prediction += weights[index];
+		}
+		prediction += weights[base + ReversiPatternEvaluator.MOBILITY] * mobility;
+		prediction += weights[base + ReversiPatternEvaluator.PARITY] * parity;
+		return prediction;
+	}
+
+	private static int mobility(long own, long opp) {
+		return ReversiBitboard.count(ReversiBitboard.legalMoves(own, opp))
+				- ReversiBitboard.count(ReversiBitboard.legalMoves(opp, own));
+	}
+}
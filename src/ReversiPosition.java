@@ -0,0 +1,208 @@
+import java.util.Arrays;
+
+/**
+ * ReversiPosition is an immutable snapshot of a board: its size, the White
+ * and Black tokens as bitboards and the color to move.
+ *
+ * ReversiModel publishes a new position after every change, so any thread
+ * can read a consistent board without locking the model or copying its
+ * arrays. On boards up to 8x8 a position is a few fields and two one long
+ * arrays, cheap enough to make on every move.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public final class ReversiPosition {
+	private final int size;
+	private final long[] wBits;
+	private final long[] bBits;
+	private final int toMove;
+
+	/**
+	 * Constructor for ReversiPosition on an 8x8 board
+	 *
+	 * @param wBits  : bitboard of the White tokens
+	 * @param bBits  : bitboard of the Black tokens
+	 * @param toMove : color of the player to move
+	 */
+	public ReversiPosition(long wBits, long bBits, int toMove) {
+		this(ReversiModel.BOARD_DIMENSION, new long[] { wBits }, new long[] { bBits }, toMove);
+	}
+
+	/**
+	 * Constructor for ReversiPosition on a board of any size. The arrays are
+	 * copied, so the caller may keep changing them.
+	 *
+	 * @param size   : number of rows and columns
+	 * @param wBits  : bitboard of the White tokens, one long per 64 squares
+	 * @param bBits  : bitboard of the Black tokens, one long per 64 squares
+	 * @param toMove : color of the player to move
+	 */
+	public ReversiPosition(int size, long[] wBits, long[] bBits, int toMove) {
+		int words = ReversiEngine.forSize(size).getWords();
+		if (wBits.length != words || bBits.length != words) {
+			throw new IllegalArgumentException("A " + size + "x" + size + " board takes " + words + " longs");
+		}
+		for (int i = 0; i < words; i++) {
+			if ((wBits[i] & bBits[i]) != 0) {
+				throw new IllegalArgumentException("Tokens overlap");
+			}
+		}
+		if (ReversiEngine.next(wBits, size * size) >= 0 || ReversiEngine.next(bBits, size * size) >= 0) {
+			throw new IllegalArgumentException("Tokens off the board");
+		}
+		this.size = size;
+		this.wBits = wBits.clone();
+		this.bBits = bBits.clone();
+		this.toMove = toMove;
+	}
+
+	/**
+	 * Constructor for ReversiPosition from a board that is already known to be
+	 * valid, as the model's own board is. Skips the checks but still copies.
+	 *
+	 * @param engine : engine for the board size
+	 * @param wBits  : bitboard of the White tokens, one long per 64 squares
+	 * @param bBits  : bitboard of the Black tokens, one long per 64 squares
+	 * @param toMove : color of the player to move
+	 */
+	ReversiPosition(ReversiEngine engine, long[] wBits, long[] bBits, int toMove) {
+		this.size = engine.getSize();
+		this.wBits = wBits.clone();
+		this.bBits = bBits.clone();
+		this.toMove = toMove;
+	}
+
+	/**
+	 * Makes a position from a 2D array of token colors
+	 *
+	 * @param grid   : board as ReversiModel colors by row and column
+	 * @param toMove : color of the player to move
+	 * @return the position
+	 */
+	public static ReversiPosition of(int[][] grid, int toMove) {
+		ReversiEngine engine = ReversiEngine.forSize(grid.length);
+		long[] wBits = engine.newBoard();
+		long[] bBits = engine.newBoard();
+		for (int i = 0; i < grid.length; i++) {
+			for (int j = 0; j < grid[i].length; j++) {
+				if (grid[i][j] == ReversiModel.W) {
+					ReversiEngine.set(wBits, engine.square(i, j));
+				} else if (grid[i][j] == ReversiModel.B) {
+					ReversiEngine.set(bBits, engine.square(i, j));
+				}
+			}
+		}
+		return new ReversiPosition(grid.length, wBits, bBits, toMove);
+	}
+
+	/**
+	 * Builds a 2D array of the position, for code that still works on arrays
+	 *
+	 * @return a new array of ReversiModel colors by row and column
+	 */
+	public int[][] toBoard() {
+		int[][] board = new int[size][size];
+		for (int square = 0; square < size * size; square++) {
+			board[square / size][square % size] = getAt(square);
+		}
+		return board;
+	}
+
+	/**
+	 * Gets the token on a square
+	 *
+	 * @param square : index of the square
+	 * @return the color of the token, or BLANK
+	 */
+	public int getAt(int square) {
+		return ReversiEngine.get(wBits, square) ? ReversiModel.W
+				: ReversiEngine.get(bBits, square) ? ReversiModel.B : ReversiModel.BLANK;
+	}
+
+	/**
+	 * @return the number of rows and columns
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the White tokens as a bitboard, the whole board up to 8x8
+	 */
+	public long getWBits() {
+		return wBits[0];
+	}
+
+	/**
+	 * @return the Black tokens as a bitboard, the whole board up to 8x8
+	 */
+	public long getBBits() {
+		return bBits[0];
+	}
+
+	/**
+	 * @param color : color of the tokens
+	 * @return the tokens of one color as a bitboard, the whole board up to 8x8
+	 */
+	public long getBits(int color) {
+		return color == ReversiModel.B ? bBits[0] : wBits[0];
+	}
+
+	/**
+	 * @param color : color of the tokens
+	 * @return a copy of the tokens of one color, one long per 64 squares
+	 */
+	public long[] getWords(int color) {
+		return (color == ReversiModel.B ? bBits : wBits).clone();
+	}
+
+	/**
+	 * @return the color of the player to move
+	 */
+	public int getToMove() {
+		return toMove;
+	}
+
+	/**
+	 * @return the number of White tokens
+	 */
+	public int getWCount() {
+		return ReversiEngine.count(wBits);
+	}
+
+	/**
+	 * @return the number of Black tokens
+	 */
+	public int getBCount() {
+		return ReversiEngine.count(bBits);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof ReversiPosition)) {
+			return false;
+		}
+		ReversiPosition position = (ReversiPosition) other;
+		return size == position.size && Arrays.equals(wBits, position.wBits) && Arrays.equals(bBits, position.bBits)
+				&& toMove == position.toMove;
+	}
+
+	@Override
+	public int hashCode() {
+		return (Arrays.hashCode(wBits) * 31 + Arrays.hashCode(bBits)) * 31 + toMove;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int square = 0; square < size * size; square++) {
+			int color = getAt(square);
+			builder.append(color == ReversiModel.W ? 'W' : color == ReversiModel.B ? 'B' : '.');
+			if (square % size == size - 1) {
+				builder.append('\n');
+			}
+		}
+		return builder.append(toMove == ReversiModel.W ? "White" : "Black").append(" to move").toString();
+	}
+}
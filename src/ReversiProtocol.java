@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * ReversiProtocol encodes and decodes the binary network protocol.
+ * 
+ * Every frame is a two byte length, followed by that many bytes: a version
+ * byte, a type byte and the payload. A move payload is the square played
+ * as two bytes (65535 for a pass) and a four byte sequence number, a
+ * snapshot payload is the sequence number, the board size, the color to move
+ * and the White and Black bitboards, each one long per 64 squares.
+ * The game server adds join frames (a game id and the board size to open the
+ * game at) and joined frames (a game id
+ * and the color the player was seated as), and watch frames (a game id)
+ * that subscribe a spectator to a game.
+ * Heartbeat and resume frames carry the sequence number of the last move the
+ * sender received: heartbeats keep an idle connection alive, and a resume
+ * asks the peer to send again every move after that number.
+ * A move is 10 bytes on the wire where a serialized ReversiBoard is several
+ * hundred, and an 8x8 snapshot is 26.
+ * Version 3 added board sizes, so it does not talk to version 2 peers.
+ * 
+ * @author Ryan Luu and Denny Ho
+ *
+ */
+public final class ReversiProtocol {
+	public static final int VERSION = 3;
+
+	public static final int MOVE = 1;
+	public static final int SNAPSHOT = 2;
+	public static final int JOIN = 3;
+	public static final int JOINED = 4;
+	public static final int HEARTBEAT = 5;
+	public static final int RESUME = 6;
+	public static final int WATCH = 7;
+
+	public static final int HEADER_SIZE = 2;
+	public static final int MAX_FRAME_SIZE = 96;
+
+	private static final int MOVE_SIZE = 2 + 2 + 4;
+	private static final int SNAPSHOT_HEADER_SIZE = 2 + 4 + 1 + 1;
+	private static final int JOIN_SIZE = 2 + 4 + 1;
+	private static final int WATCH_SIZE = 2 + 4;
+	private static final int PASS_SQUARE = 0xFFFF;
+	private static final int JOINED_SIZE = 2 + 4 + 1;
+	private static final int SEQ_SIZE = 2 + 4;
+
+	private ReversiProtocol() {
+	}
+
+	/**
+	 * Writes one framed message into a buffer
+	 * 
+	 * @param message : message to write
+	 * @param buffer  : buffer with room for MAX_FRAME_SIZE bytes
+	 */
+	public static void encode(ReversiMessage message, ByteBuffer buffer) {
+		switch (message.getType()) {
+		case MOVE:
+			buffer.putShort((short) MOVE_SIZE);
+			buffer.put((byte) VERSION);
+			buffer.put((byte) MOVE);
+			buffer.putShort((short) (message.getSquare() == ReversiMessage.PASS ? PASS_SQUARE : message.getSquare()));
+			buffer.putInt(message.getSeq());
+			break;
+		case SNAPSHOT:
+			long[] wBits = message.getWords(ReversiModel.W);
+			long[] bBits = message.getWords(ReversiModel.B);
+			buffer.putShort((short) (SNAPSHOT_HEADER_SIZE + 16 * wBits.length));
+			buffer.put((byte) VERSION);
+			buffer.put((byte) SNAPSHOT);
+			buffer.putInt(message.getSeq());
+			buffer.put((byte) message.getSize());
+			buffer.put((byte) message.getToMove());
+			for (int i = 0; i < wBits.length; i++) {
+				buffer.putLong(wBits[i]);
+				buffer.putLong(bBits[i]);
+			}
+			break;
+		case JOIN:
+			buffer.putShort((short) JOIN_SIZE);
+			buffer.put((byte) VERSION);
+			buffer.put((byte) JOIN);
+			buffer.putInt(message.getGameId());
+			buffer.put((byte) message.getSize());
+			break;
+		case WATCH:
+			buffer.putShort((short) WATCH_SIZE);
+			buffer.put((byte) VERSION);
+			buffer.put((byte) WATCH);
+			buffer.putInt(message.getGameId());
+			break;
+		case JOINED:
+			buffer.putShort((short) JOINED_SIZE);
+			buffer.put((byte) VERSION);
+			buffer.put((byte) JOINED);
+			buffer.putInt(message.getGameId());
+			buffer.put((byte) message.getColor());
+			break;
+		case HEARTBEAT:
+		case RESUME:
+			buffer.putShort((short) SEQ_SIZE);
+			buffer.put((byte) VERSION);
+			buffer.put((byte) message.getType());
+			buffer.putInt(message.getSeq());
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown message type " + message.getType());
+		}
+	}
+
+	/**
+	 * Encodes one framed message into a new buffer ready to be written
+	 * 
+	 * @param message : message to encode
+	 * @return buffer in read mode holding the frame
+	 */
+	public static ByteBuffer frame(ReversiMessage message) {
+		ByteBuffer buffer = ByteBuffer.allocate(MAX_FRAME_SIZE);
+		encode(message, buffer);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Reads one framed message from a buffer in read mode. Nothing is consumed
+	 * unless the whole frame is in the buffer.
+	 * 
+	 * @param buffer : buffer holding received bytes
+	 * @return the message, or null if the frame is not complete yet
+	 * @throws IOException : when the frame is malformed or of another version
+	 */
+	public static ReversiMessage decode(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < HEADER_SIZE) {
+			return null;
+		}
+		int start = buffer.position();
+		int length = buffer.getShort(start) & 0xFFFF;
+		if (length < 2 || length > MAX_FRAME_SIZE - HEADER_SIZE) {
+			throw new ProtocolException("Bad frame length " + length);
+		}
+		if (buffer.remaining() < HEADER_SIZE + length) {
+			return null;
+		}
+		buffer.position(start + HEADER_SIZE);
+		int version = buffer.get();
+		int type = buffer.get();
+		if (version != VERSION) {
+			throw new ProtocolException("Unsupported protocol version " + version);
+		}
+
+		ReversiMessage message;
+		if (type == MOVE && length == MOVE_SIZE) {
+			int square = buffer.getShort() & 0xFFFF;
+			int seq = buffer.getInt();
+			if (square != PASS_SQUARE && square >= ReversiEngine.MAX_SQUARES) {
+				throw new ProtocolException("Bad square " + square);
+			}
+			message = ReversiMessage.move(seq, square == PASS_SQUARE ? ReversiMessage.PASS : square);
+		} else if (type == SNAPSHOT && length >= SNAPSHOT_HEADER_SIZE) {
+			int seq = buffer.getInt();
+			int size = buffer.get();
+			int toMove = buffer.get();
+			if (!ReversiEngine.isValidSize(size)
+					|| length != SNAPSHOT_HEADER_SIZE + 16 * ReversiEngine.forSize(size).getWords()) {
+				throw new ProtocolException("Bad snapshot size " + size + " of length " + length);
+			}
+			long[] wBits = new long[(length - SNAPSHOT_HEADER_SIZE) / 16];
+			long[] bBits = new long[wBits.length];
+			for (int i = 0; i < wBits.length; i++) {
+				wBits[i] = buffer.getLong();
+				bBits[i] = buffer.getLong();
+			}
+			message = ReversiMessage.snapshot(seq, size, wBits, bBits, toMove);
+			try {
+				message.toPosition();
+			} catch (IllegalArgumentException e) {
+				throw new ProtocolException("Bad snapshot: " + e.getMessage());
+			}
+		} else if (type == JOIN && length == JOIN_SIZE) {
+			int gameId = buffer.getInt();
+			int size = buffer.get();
+			if (!ReversiEngine.isValidSize(size)) {
+				throw new ProtocolException("Bad board size " + size);
+			}
+			message = ReversiMessage.join(gameId, size);
+		} else if (type == WATCH && length == WATCH_SIZE) {
+			message = ReversiMessage.watch(buffer.getInt());
+		} else if (type == JOINED && length == JOINED_SIZE) {
+			int gameId = buffer.getInt();
+			message = ReversiMessage.joined(gameId, buffer.get());
+		} else if (type == HEARTBEAT && length == SEQ_SIZE) {
+			message = ReversiMessage.heartbeat(buffer.getInt());
+		} else if (type == RESUME && length == SEQ_SIZE) {
+			message = ReversiMessage.resume(buffer.getInt());
+		} else {
+			throw new ProtocolException("Bad frame type " + type + " of length " + length);
+		}
+		return message;
+	}
+}
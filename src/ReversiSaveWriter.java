@@ -0,0 +1,250 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * ReversiSaveWriter saves the game on a background thread.
+ *
+ * Saving only records the latest game. The writer thread then writes the
+ * latest game it finds, so a burst of saves while a write is under way is
+ * written once. A save is written to a temp file, forced to disk and then
+ * renamed over the save file, so the save file is always either the old
+ * game or the new one and never half written.
+ *
+ * The save file starts with the magic number, the format version, the color
+ * to move and the White and Black bitboards. Then comes the history of the
+ * game as a ReversiGameRecord: the color to move and bitboards of the
+ * position it starts from, the number of moves and of moves taken back, and
+ * three bytes per move for the square, the color and the player to move
+ * before it. A CRC32 of the bytes before it ends the file. Loading replays
+ * the moves, so they can still be taken back and played again. Saves of the
+ * first version, 26 bytes with the board alone, still load.
+ *
+ * @author Ryan Luu and Denny Ho
+ *
+ */
+public class ReversiSaveWriter {
+	private static final int MAGIC = 0x52565331;
+	private static final byte VERSION = 2;
+	private static final byte BOARD_VERSION = 1;
+	private static final int BOARD_FILE_SIZE = 26;
+	private static final int HEADER_SIZE = 43;
+	private static final int MOVE_SIZE = 3;
+
+	// Marks a pending delete of the save file
+	private static final ReversiGameRecord DELETE = new ReversiGameRecord(new ReversiPosition(0, 0, 0));
+
+	private final Path path;
+	private final Path tempPath;
+	private final AtomicReference<ReversiGameRecord> pending = new AtomicReference<ReversiGameRecord>();
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "ReversiSaveWriter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Constructor for ReversiSaveWriter
+	 *
+	 * @param path : path of the save file
+	 */
+	public ReversiSaveWriter(Path path) {
+		this.path = path;
+		this.tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+	}
+
+	/**
+	 * Saves an 8x8 game, returns without waiting for the disk
+	 *
+	 * @param record : the game with its history
+	 */
+	public void save(ReversiGameRecord record) {
+		post(record);
+	}
+
+	/**
+	 * Deletes the save file once any earlier saves are done with
+	 */
+	public void delete() {
+		post(DELETE);
+	}
+
+	/**
+	 * Writes anything still pending and stops the writer thread
+	 *
+	 * @throws InterruptedException : when interrupted while waiting
+	 */
+	public void close() throws InterruptedException {
+		writer.shutdown();
+		writer.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Replaces the pending game, starting a write if none is waiting
+	 */
+	private void post(ReversiGameRecord record) {
+		if (pending.getAndSet(record) == null) {
+			writer.execute(this::writePending);
+		}
+	}
+
+	/**
+	 * Writes the latest pending game, run on the writer thread
+	 */
+	private void writePending() {
+		ReversiGameRecord record = pending.getAndSet(null);
+		try {
+			if (record == DELETE) {
+				Files.deleteIfExists(path);
+			} else if (record != null) {
+				write(record);
+			}
+		} catch (IOException e) {
+			System.out.println("Couldn't Save: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes a game to the temp file, forces it to disk and renames it
+	 */
+	private void write(ReversiGameRecord record) throws IOException {
+		int moves = record.getMoveCount();
+		int size = HEADER_SIZE + moves * MOVE_SIZE + 4;
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(MAGIC);
+		buffer.put(VERSION);
+		put(buffer, record.getPosition());
+		put(buffer, record.getStart());
+		buffer.putShort((short) moves);
+		buffer.putShort((short) record.getUndone());
+		for (int i = 0; i < moves; i++) {
+			buffer.put((byte) record.getSquare(i));
+			buffer.put((byte) record.getColor(i));
+			buffer.put((byte) record.getPlayer(i));
+		}
+		buffer.putInt(checksum(buffer.array(), size - 4));
+		buffer.flip();
+
+		try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		try {
+			Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		// Make the rename itself durable, not every platform can open a directory
+		Path directory = path.toAbsolutePath().getParent();
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Writes the color to move and the bitboards of a position
+	 */
+	private static void put(ByteBuffer buffer, ReversiPosition position) {
+		buffer.put((byte) position.getToMove());
+		buffer.putLong(position.getWBits());
+		buffer.putLong(position.getBBits());
+	}
+
+	/**
+	 * Loads a save file written by ReversiSaveWriter, or by ReversiBoard.save
+	 * in older versions
+	 *
+	 * @param path : path of the save file
+	 * @return the saved game, with no history if the save has none, or null
+	 *         if there is no readable save
+	 */
+	public static ReversiGameRecord load(Path path) {
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(path);
+		} catch (IOException e) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		if (bytes.length >= BOARD_FILE_SIZE && buffer.getInt() == MAGIC) {
+			byte version = buffer.get();
+			if (version == BOARD_VERSION && bytes.length == BOARD_FILE_SIZE) {
+				ReversiPosition position = get(buffer);
+				if (buffer.getInt() != checksum(bytes, BOARD_FILE_SIZE - 4) || position == null) {
+					return null;
+				}
+				return new ReversiGameRecord(position);
+			}
+			if (version != VERSION || bytes.length < HEADER_SIZE + 4
+					|| buffer.getInt(bytes.length - 4) != checksum(bytes, bytes.length - 4)) {
+				return null;
+			}
+			ReversiPosition position = get(buffer);
+			ReversiPosition start = get(buffer);
+			int moves = buffer.getShort();
+			int undone = buffer.getShort();
+			if (position == null || start == null || moves < 0 || undone < 0 || undone > moves
+					|| bytes.length != HEADER_SIZE + moves * MOVE_SIZE + 4) {
+				return null;
+			}
+			int[] squares = new int[moves];
+			int[] colors = new int[moves];
+			int[] players = new int[moves];
+			for (int i = 0; i < moves; i++) {
+				squares[i] = buffer.get();
+				colors[i] = buffer.get();
+				players[i] = buffer.get();
+			}
+			return new ReversiGameRecord(start, squares, colors, players, undone, position);
+		}
+
+		// Saves from before the binary format hold a serialized ReversiBoard
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			ReversiBoard board = (ReversiBoard) ois.readObject();
+			return new ReversiGameRecord(ReversiMessage.snapshot(0, board, ReversiModel.W).toPosition());
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the color to move and the bitboards of a position
+	 *
+	 * @return the position, or null if it is not a board
+	 */
+	private static ReversiPosition get(ByteBuffer buffer) {
+		int toMove = buffer.get();
+		long wBits = buffer.getLong();
+		long bBits = buffer.getLong();
+		if ((wBits & bBits) != 0 || (toMove != ReversiModel.W && toMove != ReversiModel.B)) {
+			return null;
+		}
+		return new ReversiPosition(wBits, bBits, toMove);
+	}
+
+	/**
+	 * Gets the CRC32 of the first bytes of an array
+	 */
+	private static int checksum(byte[] bytes, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, length);
+		return (int) crc.getValue();
+	}
+}
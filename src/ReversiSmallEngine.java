@@ -0,0 +1,85 @@
+/**
+ * ReversiSmallEngine plays boards of up to 8x8, whose bitboards fit in one
+ * long.
+ *
+ * Legal moves are found with the same shifts as ReversiBitboard, with the
+ * shift distances and the column masks worked out for the board size. The
+ * 8x8 board goes straight to ReversiBitboard, so it is as fast through this
+ * class as it was before boards had other sizes.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiSmallEngine extends ReversiEngine {
+	private final long boardMask;
+	private final long notEdgeCols;
+	private final boolean standard;
+
+	/**
+	 * Constructor for ReversiSmallEngine
+	 *
+	 * @param size : number of rows and columns, at most 8
+	 */
+	ReversiSmallEngine(int size) {
+		super(size);
+		this.standard = size == 8;
+		this.boardMask = squares == 64 ? -1L : (1L << squares) - 1;
+		long inner = 0;
+		for (int row = 0; row < size; row++) {
+			for (int col = 1; col < size - 1; col++) {
+				inner |= 1L << (row * size + col);
+			}
+		}
+		this.notEdgeCols = inner;
+	}
+
+	@Override
+	public void legalMoves(long[] own, long[] opp, long[] moves) {
+		moves[0] = legalMoves(own[0], opp[0]);
+	}
+
+	/**
+	 * Gets every legal move for a player as one long
+	 *
+	 * @param own : bitboard of the player to move
+	 * @param opp : bitboard of the opponent
+	 * @return bitboard with a bit set on every legal move
+	 */
+	public long legalMoves(long own, long opp) {
+		if (standard) {
+			return ReversiBitboard.legalMoves(own, opp);
+		}
+		long empty = ~(own | opp) & boardMask;
+		long inner = opp & notEdgeCols;
+		return moves(own, inner, empty, 1) | moves(own, opp, empty, size) | moves(own, inner, empty, size - 1)
+				| moves(own, inner, empty, size + 1);
+	}
+
+	/**
+	 * Gets the moves that capture along one line, in both of its directions
+	 */
+	private long moves(long own, long run, long empty, int shift) {
+		long up = run & (own << shift);
+		long down = run & (own >>> shift);
+		for (int i = 1; i < size - 2; i++) {
+			up |= run & (up << shift);
+			down |= run & (down >>> shift);
+		}
+		return empty & ((up << shift) | (down >>> shift));
+	}
+
+	@Override
+	public int flips(long[] own, long[] opp, int square, long[] flips) {
+		if (standard) {
+			flips[0] = ReversiBitboard.flips(own[0], opp[0], square);
+			return Long.bitCount(flips[0]);
+		}
+		return super.flips(own, opp, square, flips);
+	}
+
+	@Override
+	public void play(long[] own, long[] opp, int square, long[] flips) {
+		own[0] |= flips[0] | 1L << square;
+		opp[0] &= ~flips[0];
+	}
+}
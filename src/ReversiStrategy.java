@@ -0,0 +1,98 @@
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * ReversiStrategy chooses the moves played by the computer.
+ * 
+ * Strategies are given the board as bitboards (see ReversiBitboard) and
+ * return the square they want to play. ReversiController plays the move.
+ * 
+ * Boards of other sizes are given as ReversiEngine bitboards. Strategies
+ * written for 8x8 bitboards only play 8x8 boards, those that play other
+ * sizes say so through supportsSize.
+ * 
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public interface ReversiStrategy {
+	/**
+	 * Chooses a move for the player to move
+	 * 
+	 * @param own   : bitboard of the player to move
+	 * @param opp   : bitboard of the opponent
+	 * @param color : color of the player to move
+	 * @return index of the chosen square, or -1 if there is no legal move
+	 */
+	int chooseMove(long own, long opp, int color);
+
+	/**
+	 * Chooses a move for the player to move on a board of any size
+	 * 
+	 * @param engine : engine for the board size
+	 * @param own    : bitboard of the player to move, one long per 64 squares
+	 * @param opp    : bitboard of the opponent, one long per 64 squares
+	 * @param color  : color of the player to move
+	 * @return index of the chosen square, or -1 if there is no legal move
+	 * @throws UnsupportedOperationException : if the strategy does not play the size
+	 */
+	default int chooseMove(ReversiEngine engine, long[] own, long[] opp, int color) {
+		if (!supportsSize(engine.getSize())) {
+			throw new UnsupportedOperationException(this + " does not play " + engine + " boards");
+		}
+		return chooseMove(own[0], opp[0], color);
+	}
+
+	/**
+	 * Chooses a move for the player to move on a board of any size, giving up
+	 * once the search is cancelled. Each search is given a token of its own,
+	 * so unlike stop a cancel that comes before the search starts is not lost.
+	 * Strategies that answer at once never check it.
+	 * 
+	 * @param engine    : engine for the board size
+	 * @param own       : bitboard of the player to move, one long per 64 squares
+	 * @param opp       : bitboard of the opponent, one long per 64 squares
+	 * @param color     : color of the player to move
+	 * @param cancelled : true once the search should return the best move found so far
+	 * @return index of the chosen square, or -1 if there is no legal move
+	 * @throws UnsupportedOperationException : if the strategy does not play the size
+	 */
+	default int chooseMove(ReversiEngine engine, long[] own, long[] opp, int color, BooleanSupplier cancelled) {
+		if (engine.getSize() == ReversiModel.BOARD_DIMENSION) {
+			return chooseMove(own[0], opp[0], color);
+		}
+		return chooseMove(engine, own, opp, color);
+	}
+
+	/**
+	 * Checks whether the strategy plays a board size
+	 * 
+	 * @param size : number of rows and columns
+	 * @return whether chooseMove may be asked for a move on that size
+	 */
+	default boolean supportsSize(int size) {
+		return size == ReversiModel.BOARD_DIMENSION;
+	}
+
+	/**
+	 * Stops a search running on another thread, which then returns the best
+	 * move found so far. Strategies that answer at once have nothing to stop.
+	 */
+	default void stop() {
+	}
+
+	/**
+	 * Releases the threads the strategy searches with. Strategies that search
+	 * on the calling thread have nothing to release.
+	 */
+	default void close() {
+	}
+
+	/**
+	 * Sets a listener told the depth and best move of a search each time a
+	 * deeper iteration finishes. Strategies that do not deepen never call it.
+	 * 
+	 * @param progress : receives the depth and the square, or null for none
+	 */
+	default void setProgressListener(BiConsumer<Integer, Integer> progress) {
+	}
+}
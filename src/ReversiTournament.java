@@ -0,0 +1,466 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ReversiTournament plays many games between two computer players without
+ * a GUI and reports how they did.
+ *
+ * Games are played through ReversiController.computerTurn on their own
+ * model, one game per task, on a pool with a thread per core. Colors swap
+ * every game and the first few plies of each game are played at random so
+ * that deterministic players do not repeat the same game. The report has the
+ * win rate of each player, the average game length, the moves played per
+ * second and the percentiles of the time each player took for a move.
+ *
+ * Players are given as greedy, random, alphabeta[:millis] for a search with
+ * a time budget, or alphabeta:d[depth] for a fixed depth search that plays
+ * the same move every time in the same position.
+ *
+ * With -archive every game is appended to a ReversiArchive file. With -book
+ * a player given with a +book suffix, such as alphabeta:d4+book, plays from
+ * a ReversiOpeningBook while the game is in the book. With -solve both
+ * players play perfectly once that many squares are empty. A pattern player
+ * searches like alphabeta and scores leaves with the weights given by
+ * -weights.
+ *
+ * A mcts[:millis] player chooses moves by Monte Carlo tree search, and
+ * mcts:p[playouts] plays a fixed number of random games for each move and
+ * plays the same move every time in the same position.
+ *
+ * With -size the games are played on a board of another size. Only greedy,
+ * random and mcts play boards other than 8x8, and archives only hold 8x8
+ * games.
+ *
+ * Usage: java ReversiTournament [-games n] [-threads n] [-seed n] [-open plies] [-size n] [-archive file] [-book file] [-solve empties] [-weights file] player1 player2
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiTournament {
+	private final Entrant[] entrants;
+	private final int games;
+	private final int threads;
+	private final long seed;
+	private final int openingPlies;
+	private ReversiArchive archive;
+	private ReversiOpeningBook book;
+	private int endgameEmpties;
+	private ReversiPatternEvaluator evaluator;
+	private int size = ReversiModel.BOARD_DIMENSION;
+
+	/**
+	 * A player of the tournament and the way to make its strategy
+	 */
+	private static class Entrant {
+		private final String spec;
+		private final String kind;
+		private final long timeBudget;
+		private final int depth;
+		private final int playouts;
+		private final boolean useBook;
+
+		// Searches keep a large transposition table, so each thread reuses one
+		private final ThreadLocal<AlphaBetaStrategy> searches = new ThreadLocal<AlphaBetaStrategy>();
+		// And so do Monte Carlo searches with their node pools
+		private final ThreadLocal<MonteCarloStrategy> trees = new ThreadLocal<MonteCarloStrategy>();
+
+		private Entrant(String spec) {
+			this.spec = spec;
+			String name = spec.toLowerCase(Locale.ROOT);
+			useBook = name.endsWith("+book");
+			if (useBook) {
+				name = name.substring(0, name.length() - "+book".length());
+			}
+			String[] parts = name.split(":");
+			kind = parts[0];
+			if (!kind.equals("greedy") && !kind.equals("random") && !kind.equals("alphabeta") && !kind.equals("pattern")
+					&& !kind.equals("mcts")) {
+				throw new IllegalArgumentException("Unknown player " + spec);
+			}
+			String option = parts.length > 1 ? parts[1] : "";
+			if (option.startsWith("d")) {
+				depth = Integer.parseInt(option.substring(1));
+				playouts = 0;
+				timeBudget = 0;
+			} else if (option.startsWith("p")) {
+				depth = 0;
+				playouts = Integer.parseInt(option.substring(1));
+				timeBudget = 0;
+			} else {
+				depth = 0;
+				playouts = 0;
+				timeBudget = option.isEmpty() ? 100 : Long.parseLong(option);
+			}
+		}
+
+		/**
+		 * Gets the strategy to play one game with, from the book if it has one
+		 */
+		private ReversiStrategy strategy(long seed, ReversiOpeningBook book, ReversiPatternEvaluator evaluator) {
+			ReversiStrategy strategy = strategy(seed, evaluator);
+			return useBook && book != null ? new OpeningBookStrategy(book, strategy, seed) : strategy;
+		}
+
+		/**
+		 * Gets the strategy to play one game with
+		 */
+		private ReversiStrategy strategy(long seed, ReversiPatternEvaluator evaluator) {
+			if (kind.equals("greedy")) {
+				return new GreedyStrategy(seed);
+			}
+			if (kind.equals("random")) {
+				return new RandomStrategy(seed);
+			}
+			if (kind.equals("mcts")) {
+				MonteCarloStrategy tree = trees.get();
+				if (tree == null) {
+					tree = new MonteCarloStrategy(timeBudget);
+					trees.set(tree);
+				}
+				if (playouts > 0) {
+					tree.setMaxPlayouts(playouts);
+					tree.setSeed(seed);
+				}
+				return tree;
+			}
+			AlphaBetaStrategy search = searches.get();
+			if (search == null) {
+				search = new AlphaBetaStrategy(timeBudget);
+				searches.set(search);
+			}
+			search.setEvaluator(kind.equals("pattern") ? evaluator : null);
+			if (depth > 0) {
+				search.setMaxDepth(depth);
+				search.setSeed(seed);
+				search.getTable().clear();
+			}
+			return search;
+		}
+
+		/**
+		 * Checks whether the player plays a board size
+		 */
+		private boolean supportsSize(int size) {
+			return size == ReversiModel.BOARD_DIMENSION || kind.equals("greedy") || kind.equals("random")
+					|| kind.equals("mcts");
+		}
+	}
+
+	/**
+	 * The outcome of one game
+	 */
+	private static class Result {
+		private final int white;
+		private int wScore;
+		private int bScore;
+		private int moves;
+		private final long[][] latencies = { new long[64], new long[64] };
+		private final int[] counts = new int[2];
+		private final int[] squares;
+
+		private Result(int white, int squares) {
+			this.white = white;
+			this.squares = new int[squares];
+		}
+
+		private void addLatency(int entrant, long nanos) {
+			if (counts[entrant] == latencies[entrant].length) {
+				latencies[entrant] = Arrays.copyOf(latencies[entrant], counts[entrant] * 2);
+			}
+			latencies[entrant][counts[entrant]++] = nanos;
+		}
+	}
+
+	/**
+	 * Constructor for ReversiTournament
+	 *
+	 * @param first        : spec of the first player
+	 * @param second       : spec of the second player
+	 * @param games        : number of games to play
+	 * @param threads      : number of games played at once
+	 * @param seed         : seed for openings and tie breaking
+	 * @param openingPlies : number of plies played at random to start each game
+	 */
+	public ReversiTournament(String first, String second, int games, int threads, long seed, int openingPlies) {
+		this.entrants = new Entrant[] { new Entrant(first), new Entrant(second) };
+		this.games = games;
+		this.threads = threads;
+		this.seed = seed;
+		this.openingPlies = openingPlies;
+	}
+
+	/**
+	 * Runs a tournament from the command line
+	 *
+	 * @param args : options and the two players
+	 * @throws Exception : when a game fails
+	 */
+	public static void main(String[] args) throws Exception {
+		int games = 100;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = 1;
+		int openingPlies = 4;
+		int size = ReversiModel.BOARD_DIMENSION;
+		String archivePath = null;
+		String bookPath = null;
+		int endgameEmpties = 0;
+		String weightsPath = null;
+		List<String> players = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-games")) {
+				games = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-threads")) {
+				threads = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-seed")) {
+				seed = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-open")) {
+				openingPlies = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-size")) {
+				size = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-archive")) {
+				archivePath = args[++i];
+			} else if (args[i].equals("-book")) {
+				bookPath = args[++i];
+			} else if (args[i].equals("-solve")) {
+				endgameEmpties = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-weights")) {
+				weightsPath = args[++i];
+			} else {
+				players.add(args[i]);
+			}
+		}
+		if (players.size() != 2) {
+			System.out.println("Usage: java ReversiTournament [-games n] [-threads n] [-seed n] [-open plies] [-size n] [-archive file] [-book file] [-solve empties] [-weights file] player1 player2");
+			System.out.println("Players: greedy, random, alphabeta[:millis], alphabeta:d[depth], pattern[:millis], pattern:d[depth],"
+					+ " mcts[:millis], mcts:p[playouts], with +book to use the book");
+			return;
+		}
+		ReversiTournament tournament = new ReversiTournament(players.get(0), players.get(1), games, threads, seed,
+				openingPlies);
+		tournament.setEndgameEmpties(endgameEmpties);
+		tournament.setSize(size);
+		if (weightsPath != null) {
+			tournament.setEvaluator(ReversiPatternEvaluator.load(Paths.get(weightsPath)));
+		}
+		if (bookPath != null) {
+			tournament.setBook(ReversiOpeningBook.open(Paths.get(bookPath)));
+		}
+		if (archivePath == null) {
+			tournament.run();
+			return;
+		}
+		try (ReversiArchive archive = ReversiArchive.open(Paths.get(archivePath))) {
+			tournament.setArchive(archive);
+			tournament.run();
+			System.out.println(archive.size() + " games in " + archivePath);
+		}
+	}
+
+	/**
+	 * Setter for the board size of every game
+	 *
+	 * @param size : number of rows and columns
+	 * @throws IllegalArgumentException : if the size cannot be played, or a player does not play it
+	 */
+	public void setSize(int size) {
+		ReversiEngine.forSize(size);
+		for (Entrant entrant : entrants) {
+			if (!entrant.supportsSize(size)) {
+				throw new IllegalArgumentException(entrant.spec + " only plays 8x8 boards");
+			}
+		}
+		this.size = size;
+	}
+
+	/**
+	 * Setter for the archive every game is appended to
+	 *
+	 * @param archive : archive of finished games, or null to keep none
+	 */
+	public void setArchive(ReversiArchive archive) {
+		this.archive = archive;
+	}
+
+	/**
+	 * Setter for the opening book of players with a +book suffix
+	 *
+	 * @param book : opening book, or null to play without one
+	 */
+	public void setBook(ReversiOpeningBook book) {
+		this.book = book;
+	}
+
+	/**
+	 * Setter for the number of empty squares at which the endgame solver
+	 * plays for both players
+	 *
+	 * @param endgameEmpties : most empty squares to solve, 0 never solves
+	 */
+	public void setEndgameEmpties(int endgameEmpties) {
+		this.endgameEmpties = endgameEmpties;
+	}
+
+	/**
+	 * Setter for the evaluator of pattern players
+	 *
+	 * @param evaluator : pattern evaluator, without one pattern players play as alphabeta
+	 */
+	public void setEvaluator(ReversiPatternEvaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Plays every game and prints the report
+	 *
+	 * @throws InterruptedException : when interrupted while waiting for games
+	 * @throws ExecutionException   : when a game fails
+	 */
+	public void run() throws InterruptedException, ExecutionException {
+		if (archive != null && size != ReversiModel.BOARD_DIMENSION) {
+			throw new IllegalStateException("Archives only hold 8x8 games");
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Result> results = new ArrayList<Result>(games);
+		long elapsed;
+		boolean finished = false;
+		try {
+			List<Future<Result>> futures = new ArrayList<Future<Result>>(games);
+			long start = System.nanoTime();
+			for (int i = 0; i < games; i++) {
+				final int game = i;
+				futures.add(executor.submit(() -> play(game)));
+			}
+			for (Future<Result> future : futures) {
+				results.add(future.get());
+			}
+			elapsed = System.nanoTime() - start;
+			finished = true;
+		} finally {
+			// A failed game stops the others, so the pool's threads never keep the JVM alive
+			if (finished) {
+				executor.shutdown();
+			} else {
+				executor.shutdownNow();
+			}
+		}
+		report(results, elapsed);
+	}
+
+	/**
+	 * Plays one game, the first player is White in even games
+	 */
+	private Result play(int game) {
+		int white = game % 2;
+		long gameSeed = seed * 1000003L + game;
+		ReversiStrategy[] strategies = { entrants[0].strategy(gameSeed, book, evaluator),
+				entrants[1].strategy(gameSeed + 1, book, evaluator) };
+		ReversiStrategy opening = new RandomStrategy(gameSeed);
+		ReversiModel model = new ReversiModel(size);
+		ReversiController controller = new ReversiController(model);
+		controller.setEndgameEmpties(endgameEmpties);
+		Result result = new Result(white, size * size);
+
+		int ply = 0;
+		while (!controller.isGameOver()) {
+			int color = model.getCurrentPlayer();
+			if (ply < openingPlies) {
+				controller.computerTurn(color, opening);
+			} else {
+				int entrant = color == ReversiModel.W ? white : 1 - white;
+				long before = System.nanoTime();
+				controller.computerTurn(color, strategies[entrant]);
+				long nanos = System.nanoTime() - before;
+				if (controller.getLastMove() >= 0) {
+					result.addLatency(entrant, nanos);
+				}
+			}
+			if (controller.getLastMove() >= 0) {
+				result.squares[result.moves++] = controller.getLastMove();
+			}
+			ply++;
+		}
+		controller.updateScore();
+		result.wScore = model.getWScore();
+		result.bScore = model.getBScore();
+		if (archive != null) {
+			try {
+				archive.append(result.squares, result.moves);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Prints the win rates, game lengths, speed and move latencies
+	 */
+	private void report(List<Result> results, long elapsed) {
+		int[] wins = new int[2];
+		int[] discs = new int[2];
+		int draws = 0;
+		long moves = 0;
+		long[][] latencies = new long[2][];
+		int[] counts = new int[2];
+		for (Result result : results) {
+			int black = 1 - result.white;
+			discs[result.white] += result.wScore;
+			discs[black] += result.bScore;
+			if (result.wScore > result.bScore) {
+				wins[result.white]++;
+			} else if (result.bScore > result.wScore) {
+				wins[black]++;
+			} else {
+				draws++;
+			}
+			moves += result.moves;
+			for (int e = 0; e < 2; e++) {
+				counts[e] += result.counts[e];
+			}
+		}
+		for (int e = 0; e < 2; e++) {
+			latencies[e] = new long[counts[e]];
+			int n = 0;
+			for (Result result : results) {
+				System.arraycopy(result.latencies[e], 0, latencies[e], n, result.counts[e]);
+				n += result.counts[e];
+			}
+			Arrays.sort(latencies[e]);
+		}
+
+		int played = results.size();
+		double seconds = elapsed / 1e9;
+		System.out.println(String.format(Locale.ROOT, "%d games of %dx%d on %d threads in %.1f s", played, size, size,
+				threads, seconds));
+		System.out.println(String.format(Locale.ROOT, "Average game length: %.1f moves", (double) moves / played));
+		System.out.println(String.format(Locale.ROOT, "Moves/sec: %.0f", moves / seconds));
+		System.out.println(String.format(Locale.ROOT, "Draws: %d (%.1f%%)", draws, 100.0 * draws / played));
+		for (int e = 0; e < 2; e++) {
+			System.out.println(String.format(Locale.ROOT,
+					"%-16s wins %5d (%5.1f%%)  avg discs %4.1f  move latency ms p50 %.3f p90 %.3f p99 %.3f max %.3f",
+					entrants[e].spec, wins[e], 100.0 * wins[e] / played, (double) discs[e] / played,
+					percentile(latencies[e], 50), percentile(latencies[e], 90), percentile(latencies[e], 99),
+					percentile(latencies[e], 100)));
+		}
+	}
+
+	/**
+	 * Gets a percentile of sorted latencies in milliseconds
+	 */
+	private static double percentile(long[] sorted, int percent) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+}
@@ -0,0 +1,148 @@
+import java.util.Arrays;
+
+/**
+ * ReversiTranspositionTable remembers search results by position hash.
+ * 
+ * The table is a fixed number of two-entry buckets held in two long arrays,
+ * so it never allocates once created. Each entry packs the score, depth,
+ * bound type, best move and search age into one long. The key is stored
+ * XORed with that long, so an entry torn by two threads writing at once
+ * fails the key check instead of returning a wrong result, and no locks
+ * are needed.
+ * 
+ * The first entry of a bucket keeps the deepest result of the current
+ * search, the second always takes the newest result.
+ * 
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiTranspositionTable {
+	public static final int LOWER = 1;
+	public static final int UPPER = 2;
+	public static final int EXACT = 3;
+	public static final int NO_MOVE = 127;
+
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+	private int age;
+
+	/**
+	 * Constructor for ReversiTranspositionTable
+	 * 
+	 * @param sizeBits : the table holds 2^sizeBits entries
+	 */
+	public ReversiTranspositionTable(int sizeBits) {
+		keys = new long[1 << sizeBits];
+		data = new long[1 << sizeBits];
+		mask = (1 << sizeBits) - 2;
+	}
+
+	/**
+	 * Looks up a position
+	 * 
+	 * @param hash : hash of the position
+	 * @return the packed entry, or 0 if the position is not in the table
+	 */
+	public long probe(long hash) {
+		int i = (int) hash & mask;
+		long d = data[i];
+		if ((keys[i] ^ d) == hash && d != 0) {
+			return d;
+		}
+		d = data[i + 1];
+		if ((keys[i + 1] ^ d) == hash && d != 0) {
+			return d;
+		}
+		return 0;
+	}
+
+	/**
+	 * Stores the result of searching a position
+	 * 
+	 * @param hash  : hash of the position
+	 * @param depth : depth the position was searched to
+	 * @param bound : LOWER, UPPER or EXACT
+	 * @param move  : best move found, or NO_MOVE
+	 * @param score : score of the position
+	 */
+	public void store(long hash, int depth, int bound, int move, int score) {
+		long d = (score & 0xFFFFFFFFL) | ((long) (depth & 0xFF) << 32) | ((long) bound << 40)
+				| ((long) (move & 0x7F) << 42) | ((long) (age & 0xFF) << 49);
+		int i = (int) hash & mask;
+		long old = data[i];
+		if ((keys[i] ^ old) == hash || depth(old) <= depth || age(old) != (age & 0xFF)) {
+			data[i] = d;
+			keys[i] = hash ^ d;
+		} else {
+			data[i + 1] = d;
+			keys[i + 1] = hash ^ d;
+		}
+	}
+
+	/**
+	 * Marks the start of a new search so entries of older searches get replaced first
+	 */
+	public void newSearch() {
+		age++;
+	}
+
+	/**
+	 * Empties the table
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+	}
+
+	/**
+	 * Gets the number of entries the table holds
+	 * @return capacity of the table
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * Gets the score of a packed entry
+	 * @param entry : entry returned by probe
+	 * @return score of the position
+	 */
+	public static int score(long entry) {
+		return (int) entry;
+	}
+
+	/**
+	 * Gets the search depth of a packed entry
+	 * @param entry : entry returned by probe
+	 * @return depth the position was searched to
+	 */
+	public static int depth(long entry) {
+		return (int) (entry >>> 32) & 0xFF;
+	}
+
+	/**
+	 * Gets the bound type of a packed entry
+	 * @param entry : entry returned by probe
+	 * @return LOWER, UPPER or EXACT
+	 */
+	public static int bound(long entry) {
+		return (int) (entry >>> 40) & 0x3;
+	}
+
+	/**
+	 * Gets the best move of a packed entry
+	 * @param entry : entry returned by probe
+	 * @return index of the best square, or NO_MOVE
+	 */
+	public static int move(long entry) {
+		return (int) (entry >>> 42) & 0x7F;
+	}
+
+	/**
+	 * Gets the search age of a packed entry
+	 */
+	private static int age(long entry) {
+		return (int) (entry >>> 49) & 0xFF;
+	}
+}
@@ -1,7 +1,5 @@
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
@@ -25,10 +23,13 @@ import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonBar.ButtonData;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.RadioMenuItem;
+import javafx.scene.control.ToggleGroup;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Border;
@@ -51,6 +52,16 @@ import javafx.application.Platform;
  *         pattern for the Reversi Game. The View in this case is a GUI
  *         represented using JavaFx and it implements basic Save and Load
  *         Features
+ * 
+ *         The board is drawn with one node per square by default. Launch with
+ *         --renderer=canvas to draw it on a single Canvas instead, which
+ *         keeps up with fast replays.
+ * 
+ *         The Board menu picks the board size of the next game, from 6x6 to
+ *         16x16. The board keeps its width, so squares shrink as it grows.
+ *         Only 8x8 games are saved, and the Alpha-Beta players only play
+ *         8x8. In a networked game the client plays at the size of the
+ *         board the server sends when it connects.
  *
  */
 public class ReversiView extends Application implements Observer {
@@ -59,8 +70,37 @@ public class ReversiView extends Application implements Observer {
 	private TilePane tile;
 	private ReversiModel model = new ReversiModel();
 	private ReversiController controller = new ReversiController(model);
-	private ReversiBoard board = model.getBoardObj();
 	private Label score;
+	private Circle[] cells;
+	private ReversiCanvasBoard canvasBoard;
+	private Stage stage;
+	private int boardSize = ReversiModel.BOARD_DIMENSION;
+	private final RadioMenuItem[] sizeOptions = new RadioMenuItem[ReversiEngine.MAX_SIZE + 1];
+	private RadioMenuItem greedyOption;
+	private RadioMenuItem alphaBetaOption;
+	private RadioMenuItem parallelOption;
+	private RadioMenuItem monteCarloOption;
+	private CheckMenuItem ponderOption;
+	private final ReversiSaveWriter saveWriter = new ReversiSaveWriter(Paths.get("save_game.dat"));
+	private ReversiOpeningBook book;
+	private ReversiPatternEvaluator evaluator;
+	private final ReversiAIService ai = new ReversiAIService(Platform::runLater, 100);
+
+	// Shown after the score, how the computer found its last move
+	private String status = "";
+
+	// Starts the computer turn being searched for again, or null if none is
+	private Runnable thinking;
+
+	// The endgame solver plays the computer's moves from this many empty squares on
+	private static final int ENDGAME_EMPTIES = 18;
+
+	// Board sizes offered in the Board menu
+	private static final int[] BOARD_SIZES = { 6, 8, 10, 12, 16 };
+
+	// Width of the tiled board, and the padding and border around each Circle
+	private static final double BOARD_PIXELS = 368;
+	private static final double CELL_INSET = 6;
 
 	// Networking Fields
 	public NetworkSetup networkSettings;
@@ -73,7 +113,9 @@ public class ReversiView extends Application implements Observer {
 
 	/**
 	 * Start Launches the Current JavaFx GUI. First checks to see if File can be
-	 * loaded and then sets up basic environment for the GUI.
+	 * loaded and then sets up basic environment for the GUI. A loaded game
+	 * replays its moves, so they can still be undone and redone, and with the
+	 * computer to move it goes on with the computer's turn.
 	 * 
 	 * @param primaryStage: primaryStage is the stage that JavaFx uses to display
 	 *        our ReversiBoard
@@ -81,13 +123,26 @@ public class ReversiView extends Application implements Observer {
 	 */
 	@Override
 	public void start(Stage primaryStage) throws Exception {
-		try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(Paths.get("save_game.dat")))) {
-			ReversiBoard loadData = (ReversiBoard) ois.readObject();
-			model.setBoard(loadData.getBoard());
+		ReversiGameRecord saved = ReversiSaveWriter.load(Paths.get("save_game.dat"));
+		if (saved != null) {
+			model.setRecord(saved);
 			controller.updateScore();
-		} catch (Exception e) {
+		}
+		if (Files.exists(Paths.get("opening_book.bin"))) {
+			book = ReversiOpeningBook.open(Paths.get("opening_book.bin"));
+			controller.setStrategy(withBook(controller.getStrategy()));
 		}
 
+		if (Files.exists(Paths.get("pattern_weights.bin"))) {
+			evaluator = ReversiPatternEvaluator.load(Paths.get("pattern_weights.bin"));
+		}
+		controller.setEndgameEmpties(ENDGAME_EMPTIES);
+
+		// Shows how far the computer has searched while it thinks
+		ai.setProgressListener((depth, square) -> this.score.setText("White: " + model.getWScore() + " "
+				+ "Black: " + model.getBScore() + "   Thinking: depth " + depth + ", best " + squareName(square)));
+
+		this.stage = primaryStage;
 		Menu FileBar = new Menu("File");
 		primaryStage.setTitle("Reversi");
 		this.root = new BorderPane();
@@ -95,6 +150,64 @@ public class ReversiView extends Application implements Observer {
 		MenuBar menuBar = new MenuBar();
 		MenuItem menuItem = new MenuItem("New Game");
 		MenuItem networkOption = new MenuItem("Networked Game");
+		Menu editBar = new Menu("Edit");
+		MenuItem undoOption = new MenuItem("Undo Move");
+		MenuItem redoOption = new MenuItem("Redo Move");
+		Menu computerBar = new Menu("Computer");
+		ToggleGroup strategyGroup = new ToggleGroup();
+		greedyOption = new RadioMenuItem("Greedy");
+		alphaBetaOption = new RadioMenuItem("Alpha-Beta");
+		parallelOption = new RadioMenuItem("Alpha-Beta (All Cores)");
+		monteCarloOption = new RadioMenuItem("Monte Carlo (All Cores)");
+		ponderOption = new CheckMenuItem("Ponder in Networked Games");
+		ponderOption.setSelected(true);
+		greedyOption.setToggleGroup(strategyGroup);
+		alphaBetaOption.setToggleGroup(strategyGroup);
+		parallelOption.setToggleGroup(strategyGroup);
+		monteCarloOption.setToggleGroup(strategyGroup);
+		greedyOption.setSelected(true);
+
+		// Picks the strategy used by computer turns
+		greedyOption.setOnAction(e -> setStrategy(withBook(new GreedyStrategy())));
+		alphaBetaOption.setOnAction(e -> {
+			AlphaBetaStrategy strategy = new AlphaBetaStrategy();
+			strategy.setEvaluator(evaluator);
+			setStrategy(withBook(strategy));
+		});
+		parallelOption.setOnAction(e -> {
+			AlphaBetaStrategy strategy = new AlphaBetaStrategy();
+			strategy.setEvaluator(evaluator);
+			strategy.setThreads(Runtime.getRuntime().availableProcessors());
+			setStrategy(withBook(strategy));
+		});
+		monteCarloOption.setOnAction(e -> {
+			MonteCarloStrategy strategy = new MonteCarloStrategy();
+			strategy.setThreads(Runtime.getRuntime().availableProcessors());
+			setStrategy(withBook(strategy));
+		});
+
+		// Picks the board size and starts a new game on it
+		Menu boardBar = new Menu("Board");
+		ToggleGroup sizeGroup = new ToggleGroup();
+		for (int size : BOARD_SIZES) {
+			RadioMenuItem sizeOption = new RadioMenuItem(size + "x" + size);
+			sizeOption.setToggleGroup(sizeGroup);
+			sizeOption.setSelected(size == boardSize);
+			sizeOption.setOnAction(e -> {
+				if (connectionEstablished) {
+					sizeOptions[boardSize].setSelected(true);
+					return;
+				}
+				boardSize = size;
+				resetBoard();
+			});
+			sizeOptions[size] = sizeOption;
+			boardBar.getItems().add(sizeOption);
+		}
+
+		// Takes back or replays moves in a local game
+		undoOption.setOnAction(e -> undoMove());
+		redoOption.setOnAction(e -> redoMove());
 
 		// Resets the Board if NewGame is Pressed in Menu
 		menuItem.setOnAction(new EventHandler<ActionEvent>() {
@@ -108,6 +221,7 @@ public class ReversiView extends Application implements Observer {
 		networkOption.setOnAction(new EventHandler<ActionEvent>() {
 			@Override
 			public void handle(ActionEvent e) {
+				cancelComputerTurn();
 				networkSettings = new NetworkSetup();
 				isServer = networkSettings.getServerOrClient();
 				if (isServer) {
@@ -137,24 +251,38 @@ public class ReversiView extends Application implements Observer {
 		// Code that Populates the Initial Reversi Screen.
 		FileBar.getItems().add(menuItem);
 		FileBar.getItems().add(networkOption);
-		menuBar.getMenus().addAll(FileBar);
-
-		tile = new TilePane();
-		tile.setStyle("-fx-background-color: green;");
-		tile.setPadding(new Insets(8, 8, 8, 8));
-		tile.setPrefColumns(8);
-		tile.setPrefRows(8);
-
-		int[][] grid = controller.getGrid();
-
-		for (int i = 0; i < 8; i++) {
-			for (int j = 0; j < 8; j++) {
-				tile.getChildren().add(createPane(grid[i][j], i, j));
-			}
+		editBar.getItems().addAll(undoOption, redoOption);
+		computerBar.getItems().addAll(greedyOption, alphaBetaOption, parallelOption, monteCarloOption, ponderOption);
+		menuBar.getMenus().addAll(FileBar, editBar, boardBar, computerBar);
+
+		if ("canvas".equals(getParameters().getNamed().get("renderer"))) {
+			// One Canvas repainted at most once per frame
+			canvasBoard = new ReversiCanvasBoard(model);
+			canvasBoard.setOnMousePressed((MouseEvent event) -> {
+				int square = canvasBoard.squareAt(event.getX(), event.getY());
+				if (square >= 0) {
+					click(square / model.getSize(), square % model.getSize());
+				}
+			});
+		} else {
+			tile = new TilePane();
+			tile.setStyle("-fx-background-color: green;");
+			tile.setPadding(new Insets(8, 8, 8, 8));
+			createTiles();
+
+			// One handler for the whole board finds the clicked cell
+			tile.setOnMousePressed((MouseEvent event) -> {
+				Insets padding = tile.getPadding();
+				int col = (int) Math.floor((event.getX() - padding.getLeft()) / (tile.getTileWidth() + tile.getHgap()));
+				int row = (int) Math.floor((event.getY() - padding.getTop()) / (tile.getTileHeight() + tile.getVgap()));
+				if (row >= 0 && row < model.getSize() && col >= 0 && col < model.getSize()) {
+					click(row, col);
+				}
+			});
 		}
 
 		root.setBottom(score);
-		root.setCenter(tile);
+		root.setCenter(canvasBoard != null ? canvasBoard : tile);
 		root.setTop(menuBar);
 		Scene scene = new Scene(root);
 
@@ -162,6 +290,27 @@ public class ReversiView extends Application implements Observer {
 		primaryStage.setScene(scene);
 		primaryStage.setResizable(false);
 		primaryStage.show();
+
+		// A game saved while the computer was thinking goes on with its turn
+		if (saved != null && model.getCurrentPlayer() == ReversiModel.B && !controller.isGameOver()) {
+			computerReply();
+		}
+	}
+
+	/**
+	 * Starts a networked game once the client has connected: the server
+	 * sends its board, so the client plays at the same size, then plays its
+	 * first turn if the computer plays for it
+	 */
+	public void peerConnected() {
+		try {
+			clientConnection.sendStart(model.getPosition());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (!networkSettings.getHumanOrComputer()) {
+			turnAI();
+		}
 	}
 
 	/**
@@ -169,12 +318,7 @@ public class ReversiView extends Application implements Observer {
 	 */
 	public void turnAI() {
 		if (isServer) {
-			try {
-				networkAIPlay(ReversiModel.W);
-				clientConnection.send(board);
-			} catch (ReversiIllegalLocationException | IOException e) {
-				e.printStackTrace();
-			}
+			networkAIPlay(ReversiModel.W);
 		}
 	}
 
@@ -184,11 +328,17 @@ public class ReversiView extends Application implements Observer {
 	 * @return Server
 	 */
 	private Server createServer() {
-		return new Server(this, networkSettings.getPort(), board -> {
+		Server connection = new Server(this, networkSettings.getPort(), message -> {
 			Platform.runLater(() -> {
-				changeBoard(board);
+				changeBoard(message);
 			});
 		});
+		connection.setLegacy(networkSettings.getLegacySerialization());
+		connection.setTimeouts(namedMillis("heartbeat", ReversiConnection.DEFAULT_HEARTBEAT_MILLIS),
+				namedMillis("timeout", ReversiConnection.DEFAULT_TIMEOUT_MILLIS),
+				namedMillis("reconnect", ReversiConnection.DEFAULT_RECONNECT_MILLIS));
+		connection.setOnLost(e -> Platform.runLater(() -> connectionLost(e)));
+		return connection;
 	}
 
 	/**
@@ -197,24 +347,90 @@ public class ReversiView extends Application implements Observer {
 	 * @return Client
 	 */
 	private Client createClient() {
-		return new Client(networkSettings.getServer(), networkSettings.getPort(), board -> {
+		Client connection = new Client(networkSettings.getServer(), networkSettings.getPort(), message -> {
 			Platform.runLater(() -> {
-				changeBoard(board);
+				changeBoard(message);
 			});
 		});
+		connection.setLegacy(networkSettings.getLegacySerialization());
+		connection.setTimeouts(namedMillis("heartbeat", ReversiConnection.DEFAULT_HEARTBEAT_MILLIS),
+				namedMillis("timeout", ReversiConnection.DEFAULT_TIMEOUT_MILLIS),
+				namedMillis("reconnect", ReversiConnection.DEFAULT_RECONNECT_MILLIS));
+		connection.setOnLost(e -> Platform.runLater(() -> connectionLost(e)));
+		return connection;
+	}
+
+	/**
+	 * Reads a time in milliseconds from the named launch parameters, such as
+	 * --timeout=10000
+	 * 
+	 * @param name          : name of the parameter
+	 * @param defaultMillis : time used when the parameter is not given
+	 * @return the time in milliseconds
+	 */
+	private long namedMillis(String name, long defaultMillis) {
+		String value = getParameters().getNamed().get(name);
+		return value == null ? defaultMillis : Long.parseLong(value);
 	}
 
 	/**
-	 * ChangeBoard changes the models board to the received board.
+	 * Tells the player the connection to the opponent was lost for good
 	 * 
-	 * ChangeBoard is called whenever the connection receives a new board. Method
-	 * also checks for end game and plays an AI move if necessary. Method also
-	 * handles cases when player does not have any possible moves.
+	 * @param e : the error that ended the connection
+	 */
+	private void connectionLost(Exception e) {
+		cancelComputerTurn();
+		connectionEstablished = false;
+		canPlay = true;
+		Alert lost = new Alert(AlertType.ERROR);
+		lost.setTitle("Connection Lost");
+		lost.setHeaderText("Lost the connection to the other player");
+		lost.setContentText(e.getMessage());
+		lost.showAndWait();
+	}
+
+	/**
+	 * ChangeBoard applies the opponent's turn to the model.
+	 * 
+	 * ChangeBoard is called whenever the connection receives a move or a whole
+	 * board. Method also checks for end game and plays an AI move if necessary.
+	 * Method also handles cases when player does not have any possible moves.
 	 * 
-	 * @param newBoard : the new ReversiBoard object created by opponents turn
+	 * @param message : the move or board sent after the opponents turn
 	 */
-	public void changeBoard(ReversiBoard newBoard) {
-		model.setBoard(newBoard.getBoard());
+	public void changeBoard(ReversiMessage message) {
+		int me = isServer ? ReversiModel.W : ReversiModel.B;
+		int opponent = isServer ? ReversiModel.B : ReversiModel.W;
+		if (message.getType() == ReversiProtocol.SNAPSHOT) {
+			if (message.getSize() != model.getSize()) {
+				boardSize = message.getSize();
+				sizeOptions[boardSize].setSelected(true);
+				newGame();
+			}
+			// The board the server starts the game with, White moves first
+			if (message.getSeq() == 0 && message.getToMove() == opponent) {
+				model.setPosition(message.toPosition());
+				controller.updateScore();
+				model.endTurn();
+				return;
+			}
+			model.setPosition(new ReversiPosition(message.getSize(), message.getWords(ReversiModel.W),
+					message.getWords(ReversiModel.B), me));
+		} else if (message.getSquare() == ReversiMessage.PASS) {
+			model.setCurrentPlayer(me);
+		} else {
+			int row = message.getSquare() / model.getSize();
+			int col = message.getSquare() % model.getSize();
+			// Ignore moves that are not legal on this board
+			if (!controller.isValidMove(row, col, opponent)) {
+				return;
+			}
+			try {
+				controller.humanTurn(row, col, opponent);
+			} catch (ReversiIllegalLocationException e) {
+				return;
+			}
+		}
 		controller.updateScore();
 		model.endTurn();
 
@@ -248,91 +464,144 @@ public class ReversiView extends Application implements Observer {
 		// Automatically play an AI move when sent a board (opponent plays a turn)
 		else if (!networkSettings.getHumanOrComputer()) {
 			canPlay = false;
-			
-			if (isServer) {
-				try {
-					networkAIPlay(ReversiModel.W);
-					clientConnection.send(board);
-				} catch (ReversiIllegalLocationException | IOException e) {
-				}
-			} else {
-				try {
-					networkAIPlay(ReversiModel.B);
-					serverConnection.send(board);
-				} catch (ReversiIllegalLocationException | IOException e) {
-				}
-			}
+			networkAIPlay(me);
 		} else
 			canPlay = true;
 	}
 
+	/**
+	 * createTiles fills the board with one StackPane per square of the model's
+	 * board size. The cells are created once per game and restyled as the
+	 * board changes.
+	 */
+	private void createTiles() {
+		int size = model.getSize();
+		tile.getChildren().clear();
+		tile.setPrefColumns(size);
+		tile.setPrefRows(size);
+		cells = new Circle[size * size];
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				tile.getChildren().add(createPane(i, j));
+			}
+		}
+		drawCells(allSquares());
+	}
+
 	/**
 	 * StackPane creates the indiviudal StackPane's that Populate the Board in the
-	 * GUI
+	 * GUI. The Circle of each StackPane is kept so it can be restyled when its
+	 * square changes. Circles are sized so the board is the same width for
+	 * every board size.
 	 * 
-	 * @param color: Can be Either 0,1,2 and represents what's currently a Blank,
-	 *        Black, or White Piece on the board
 	 * @param row: Is the Row at which the piece is located
 	 * @param col: Is the Col at which the piece is located
-	 * @return a StackPane to be placed on the grid with its corresponding
-	 *         information
+	 * @return a StackPane to be placed on the grid
 	 */
-	private StackPane createPane(int color, int row, int col) {
+	private StackPane createPane(int row, int col) {
 		// Create Circle
-		Circle circle = new Circle(20);
-		if (color == 1)
-			circle.setFill(Color.WHITE);
-		else if (color == 1)
-			circle.setFill(Color.BLACK);
-		else if (color == 0)
-			circle.setFill(Color.TRANSPARENT);
+		int size = model.getSize();
+		Circle circle = new Circle((BOARD_PIXELS / size - CELL_INSET) / 2);
+		cells[row * size + col] = circle;
 
 		// Create StackPane with Circle
 		StackPane pane = new StackPane(circle);
 		pane.setStyle("-fx-background-color: green;");
 		pane.setStyle("-fx-border-color: black;");
 		pane.setPadding(new Insets(2, 2, 2, 2));
+		return pane;
+	}
 
-		// Plays the Game if StackPane is clicked on
-		pane.setOnMousePressed((MouseEvent event) -> {
-			try {
+	/**
+	 * drawCells colors the Circles of the given squares to match the model, or
+	 * marks them to be repainted when the board is drawn on a Canvas
+	 * 
+	 * @param squares: bitboard of the squares to restyle, one long per 64 squares
+	 */
+	private void drawCells(long[] squares) {
+		if (canvasBoard != null) {
+			canvasBoard.repaint(squares);
+			return;
+		}
+		int size = model.getSize();
+		for (int square = ReversiEngine.next(squares, 0); square >= 0; square = ReversiEngine.next(squares, square + 1)) {
+			int color = model.getAtLocation(square / size, square % size);
+			if (color == ReversiModel.W)
+				cells[square].setFill(Color.WHITE);
+			else if (color == ReversiModel.B)
+				cells[square].setFill(Color.BLACK);
+			else
+				cells[square].setFill(Color.TRANSPARENT);
+		}
+	}
+
+	/**
+	 * allSquares gets every square of the board, to redraw all of it
+	 * 
+	 * @return bitboard with a bit set on every square
+	 */
+	private long[] allSquares() {
+		long[] squares = model.getEngine().newBoard();
+		for (int square = 0; square < model.getSize() * model.getSize(); square++) {
+			ReversiEngine.set(squares, square);
+		}
+		return squares;
+	}
 
-				if (connectionEstablished && canPlay) {
-					// Network Play Between Server and Client
-					if (isServer) {
-						if (networkPlay(row, col, 1)) {
-							canPlay = false;
-							clientConnection.send(board);
-						}
-					} else {
-						if (networkPlay(row, col, 2)) {
-							canPlay = false;
-							serverConnection.send(board);
-						}
+	/**
+	 * squareName names a square the way players do, a column letter and a
+	 * row number such as e4
+	 * 
+	 * @param square: index of the square
+	 * @return the name of the square
+	 */
+	private String squareName(int square) {
+		int size = model.getSize();
+		return (char) ('a' + square % size) + Integer.toString(square / size + 1);
+	}
+
+	/**
+	 * click Plays the Game when a cell of the board is clicked on
+	 * 
+	 * @param row: Is the Row of the clicked cell
+	 * @param col: Is the Col of the clicked cell
+	 */
+	private void click(int row, int col) {
+		try {
+
+			if (connectionEstablished && canPlay) {
+				// Network Play Between Server and Client
+				if (isServer) {
+					if (networkPlay(row, col, 1)) {
+						canPlay = false;
+						clientConnection.send(controller.getLastMove(), model.getPosition());
+					}
+				} else {
+					if (networkPlay(row, col, 2)) {
+						canPlay = false;
+						serverConnection.send(controller.getLastMove(), model.getPosition());
 					}
-				} else if (canPlay)
-					play(row, col); // Local Play
+				}
+			} else if (canPlay)
+				play(row, col); // Local Play
 
-			} catch (ReversiIllegalLocationException e) {
-				e.printStackTrace();
-			} catch (IOException e) {
-			}
-		});
-		return pane;
+		} catch (ReversiIllegalLocationException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+		}
 	}
 
 	/**
 	 * netWorkPlay plays one human turn for the Server/Client.
 	 * 
-	 * Can play White or Black. Checks to see if the game is over. Updates the
-	 * ReversiBoard at the end of the turn.
+	 * Can play White or Black. Checks to see if the game is over.
 	 * 
 	 * @param row    : is the current row location of the player click
 	 * @param col    : is the current col location of the player click
 	 * @param player : color of the player
 	 * @throws ReversiIllegalLocationException : If an illegal Location is chosen
 	 *                                         and can't be placed
-	 * @return boolean whether a turn was able to be played
+	 * @return boolean whether a turn (or a pass) was able to be played
 	 */
 	private boolean networkPlay(int row, int col, int player) throws ReversiIllegalLocationException {
 		boolean exitFlag = false;
@@ -343,9 +612,9 @@ public class ReversiView extends Application implements Observer {
 		} else {
 			controller.updateScore();
 			controller.updateValidMoves(model.getCurrentPlayer());
-			if (model.getValidMoves() == 0) { // When there is no Legal Moves 
-				controller.computerTurn(player);
-				return false;
+			if (model.getValidMoves() == 0) { // When there is no Legal Moves, pass the turn
+				controller.playMove(ReversiMessage.PASS, player);
+				return true;
 			}
 			if (model.getValidMoves() > 0) {
 				int r = row;
@@ -365,38 +634,52 @@ public class ReversiView extends Application implements Observer {
 			exitFlag = true;
 			gameOverfunction();
 		}
-		board = model.getBoardObj();
 		return success;
 	}
 
 	/**
 	 * netWorkAIPlay plays one AI turn for the Server/Client.
 	 * 
-	 * Can play White or Black. Checks to see if the game is over. Updates the
-	 * ReversiBoard at the end of the turn.
+	 * Can play White or Black. The move is searched for off the FX thread, then
+	 * played and sent to the opponent. Checks to see if the game is over.
+	 * With pondering on, the AI then searches its answers to the opponent's
+	 * likely replies while it waits, and the time that saved is shown after
+	 * the score.
 	 * 
 	 * @param player : color of the player
-	 * @throws ReversiIllegalLocationException : If an illegal Location is chosen
-	 *                                      and can't be placed
 	 */
-	private void networkAIPlay(int player) throws ReversiIllegalLocationException {
-		boolean exitFlag = false;
+	private void networkAIPlay(int player) {
 		if (controller.isGameOver()) {
-			exitFlag = true;
 			gameOverfunction();
-		} else {
-			controller.updateScore();
-			controller.updateValidMoves(model.getCurrentPlayer());
-			controller.computerTurn(player);
+			return;
+		}
+		controller.updateScore();
+		controller.updateValidMoves(model.getCurrentPlayer());
+		computerTurn(player, () -> {
 			controller.updateScore();
 			controller.updateValidMoves(model.getCurrentPlayer());
-		}
-		model.endTurn();
-		if (controller.isGameOver() && exitFlag == false) {
-			exitFlag = true;
-			gameOverfunction();
-		}
-		board = model.getBoardObj();
+			model.endTurn();
+			try {
+				if (isServer) {
+					clientConnection.send(controller.getLastMove(), model.getPosition());
+				} else {
+					serverConnection.send(controller.getLastMove(), model.getPosition());
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			if (ponderOption.isSelected()) {
+				status += "   Pondering saved " + ai.getLastSavedMillis() + " ms, " + ai.getPonderHits() + "/"
+						+ (ai.getPonderHits() + ai.getPonderMisses()) + " predicted, "
+						+ ai.getPonderSavedMillis() + " ms in all";
+				showScore();
+			}
+			if (controller.isGameOver()) {
+				gameOverfunction();
+			} else if (ponderOption.isSelected()) {
+				ai.ponder(controller, model.getPosition(), player);
+			}
+		});
 	}
 
 	/**
@@ -434,22 +717,8 @@ public class ReversiView extends Application implements Observer {
 						// Checks to see if there are still legal moves to be made by Player
 						if (model.getValidMoves() <= 0)
 							model.setCurrentPlayer(ReversiModel.W);
-						else {
-							controller.computerTurn(2);
-							controller.updateScore();
-							controller.updateValidMoves(model.getCurrentPlayer());
-							model.endTurn();
-							while (model.getValidMoves() <= 0 && !controller.isGameOver()) {
-								controller.computerTurn(2);
-								controller.updateScore();
-								controller.updateValidMoves(model.getCurrentPlayer());
-								model.endTurn();
-							}
-							if (controller.isGameOver() && exitFlag == false) {
-								exitFlag = true;
-								gameOverfunction();
-							}
-						}
+						else
+							computerReply();
 					}
 				}
 				if (controller.isGameOver() && exitFlag == false) {
@@ -458,37 +727,175 @@ public class ReversiView extends Application implements Observer {
 				}
 			}
 		}
-		board = model.getBoardObj();
+	}
+
+	/**
+	 * computerReply plays the computer's turns in a local game, again while the
+	 * player has no legal move, until it is the player's turn or the game is
+	 * over. Clicks are ignored while the computer thinks.
+	 */
+	private void computerReply() {
+		canPlay = false;
+		computerTurn(ReversiModel.B, () -> {
+			controller.updateScore();
+			controller.updateValidMoves(model.getCurrentPlayer());
+			model.endTurn();
+			if (model.getValidMoves() <= 0 && !controller.isGameOver()) {
+				computerReply();
+				return;
+			}
+			canPlay = true;
+			if (controller.isGameOver()) {
+				gameOverfunction();
+			}
+		});
+	}
+
+	/**
+	 * computerTurn has the AI service choose a computer move off the FX thread,
+	 * then plays it and runs the rest of the turn back on the FX thread. The
+	 * solve time and nodes are shown after the score when the endgame solver
+	 * chose the move. Nothing is played if the search is cancelled.
+	 * 
+	 * @param player : color of the computer
+	 * @param then   : rest of the turn, run after the move is played
+	 */
+	private void computerTurn(int player, Runnable then) {
+		canPlay = false;
+		ReversiController searching = controller;
+		Runnable turn = () -> computerTurn(player, then);
+		thinking = turn;
+		ai.chooseMove(searching, model.getPosition(), player).thenAccept(square -> {
+			thinking = null;
+			status = "";
+			if (searching.isLastMoveSolved()) {
+				ReversiEndgameSolver solver = searching.getSolver();
+				status = "   Solved " + solver.getLastEmpties() + " empties: " + solver.getLastNodes() + " nodes in "
+						+ solver.getLastTimeMillis() + " ms";
+			}
+			searching.playMove(square, player);
+			then.run();
+		}).exceptionally(e -> {
+			if (thinking == turn) {
+				thinking = null;
+			}
+			if (!ReversiAIService.isCancellation(e)) {
+				e.printStackTrace();
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * undoMove takes back moves in a local game until it is the player's turn
+	 * again, so the player's last move and the computer's reply are undone
+	 * together. Moves can't be taken back in a networked game.
+	 */
+	private void undoMove() {
+		if (connectionEstablished) {
+			return;
+		}
+		cancelComputerTurn();
+		canPlay = true;
+		boolean undone = false;
+		while (controller.undo()) {
+			undone = true;
+			if (model.getCurrentPlayer() == ReversiModel.W) {
+				break;
+			}
+		}
+		if (undone) {
+			controller.updateScore();
+			model.endTurn();
+		}
+	}
+
+	/**
+	 * redoMove plays moves taken back by undoMove again, up to the player's
+	 * next turn.
+	 */
+	private void redoMove() {
+		if (connectionEstablished) {
+			return;
+		}
+		cancelComputerTurn();
+		canPlay = true;
+		boolean redone = false;
+		while (controller.redo()) {
+			redone = true;
+			if (model.getCurrentPlayer() == ReversiModel.W) {
+				break;
+			}
+		}
+		if (redone) {
+			controller.updateScore();
+			model.endTurn();
+		}
 	}
 
 	/**
 	 * update's purpose is to let the GUI know whenever there is a change in the
-	 * model by showing the changes on the JavaFX GUI. Everytime there is a change,
-	 * an attempt to save the changed state of the ReversiBoard will be made.
+	 * model by showing the changes on the JavaFX GUI. Only the squares that
+	 * changed are redrawn. Everytime there is a change, the changed game, its
+	 * moves included, is handed to the save writer, which saves it in the
+	 * background. The save file holds 8x8 boards, so games of other sizes are
+	 * not saved.
 	 * 
 	 * @param o: Is the Oberservable default parameter that allows us to communicate
 	 *        with the model
-	 * @param arg: Is a new instance of the ReversiBoard Class that we create every
-	 *        time a change is made.
+	 * @param arg: Is a ReversiChange with the board and the squares changed
+	 *        since the last update.
 	 */
 	@Override
 	public void update(Observable o, Object arg) {
-		try {
-			((ReversiBoard) arg).save(); // Saves the File
-		} catch (Exception e) {
-			System.out.println("Couldn't Save: " + e.getMessage());
-		}
-		tile.getChildren().clear();
-		int[][] grid = controller.getGrid();
-		for (int i = 0; i < 8; i++) {
-			for (int j = 0; j < 8; j++) {
-				tile.getChildren().add(createPane(grid[i][j], i, j));
-			}
+		ReversiChange change = (ReversiChange) arg;
+		if (model.getSize() == ReversiModel.BOARD_DIMENSION) {
+			saveWriter.save(model.getRecord());
 		}
+		drawCells(change.getChangedSquares());
 		// Updates Score
-		this.score = new Label("White: " + model.getWScore() + " " + "Black: " + model.getBScore());
-		this.root.setBottom(score);
+		showScore();
+
+	}
+
+	/**
+	 * setStrategy has the computer play with a new strategy and releases the
+	 * threads of the one it replaces once its search has stopped
+	 * 
+	 * @param strategy : strategy the computer plays with from now on
+	 */
+	private void setStrategy(ReversiStrategy strategy) {
+		ReversiStrategy old = controller.getStrategy();
+		if (old == strategy) {
+			return;
+		}
+		// The old strategy is closed once its search has stopped, and a turn
+		// it was thinking about is searched again with the new one
+		Runnable turn = thinking;
+		cancelComputerTurn();
+		controller.setStrategy(strategy);
+		ai.closeAfterSearches(old);
+		if (turn != null) {
+			turn.run();
+		}
+	}
+
+	/**
+	 * cancelComputerTurn stops the computer's search, its move is never played
+	 */
+	private void cancelComputerTurn() {
+		thinking = null;
+		ai.cancel();
+	}
 
+	/**
+	 * withBook has a strategy play from the opening book first, if there is one
+	 * 
+	 * @param strategy : strategy for positions that are not in the book
+	 * @return the strategy the computer plays with
+	 */
+	private ReversiStrategy withBook(ReversiStrategy strategy) {
+		return book == null ? strategy : new OpeningBookStrategy(book, strategy);
 	}
 
 	/**
@@ -496,19 +903,53 @@ public class ReversiView extends Application implements Observer {
 	 * controller and then deleting the current SavaData.
 	 */
 	void resetBoard() {
-		this.model = new ReversiModel();
+		cancelComputerTurn();
+		if (!connectionEstablished) {
+			canPlay = true;
+		}
+		newGame();
+		deleteSaveData();
+	}
+
+	/**
+	 * newGame creates a brand new model and controller at the chosen board
+	 * size and redraws the board. The Alpha-Beta players are only offered on
+	 * 8x8 boards, on other sizes the computer falls back to Greedy unless it
+	 * plays Monte Carlo.
+	 */
+	private void newGame() {
+		ReversiStrategy strategy = controller.getStrategy();
+		int oldSize = model.getSize();
+		this.model = new ReversiModel(boardSize);
 		this.controller = new ReversiController(this.model);
+		boolean standard = boardSize == ReversiModel.BOARD_DIMENSION;
+		alphaBetaOption.setDisable(!standard);
+		parallelOption.setDisable(!standard);
+		if (!strategy.supportsSize(boardSize)) {
+			greedyOption.setSelected(true);
+			ai.closeAfterSearches(strategy);
+			strategy = withBook(new GreedyStrategy());
+		}
+		controller.setStrategy(strategy);
+		controller.setEndgameEmpties(ENDGAME_EMPTIES);
 		model.addObserver(this);
-		tile.getChildren().clear();
-		int[][] grid = controller.getGrid();
-		for (int i = 0; i < 8; i++) {
-			for (int j = 0; j < 8; j++) {
-				tile.getChildren().add(createPane(grid[i][j], i, j));
-			}
+		if (canvasBoard != null) {
+			canvasBoard.setModel(model);
+		} else if (boardSize != oldSize) {
+			createTiles();
+			stage.sizeToScene();
 		}
-		this.score = new Label("White: " + model.getWScore() + " " + "Black: " + model.getBScore());
-		this.root.setBottom(score);
-		deleteSaveData();
+		drawCells(allSquares());
+		status = "";
+		showScore();
+	}
+
+	/**
+	 * showScore shows the score of both players, followed by how the computer
+	 * found its last move
+	 */
+	private void showScore() {
+		this.score.setText("White: " + model.getWScore() + " " + "Black: " + model.getBScore() + status);
 	}
 
 	/**
@@ -551,12 +992,22 @@ public class ReversiView extends Application implements Observer {
 	}
 
 	/**
-	 * deleteSaveData Looks for the file in the directory and deletes it
+	 * deleteSaveData deletes the save file once any saves still being written
+	 * are done
 	 */
 	private void deleteSaveData() {
-		File file = new File("save_game.dat");
-		if (file.exists()) {
-			file.delete();
-		}
+		saveWriter.delete();
+	}
+
+	/**
+	 * stop Waits for the last save to be written when the window closes
+	 * 
+	 * @throws Exception: When interrupted while waiting
+	 */
+	@Override
+	public void stop() throws Exception {
+		cancelComputerTurn();
+		ai.closeAfterSearches(controller.getStrategy());
+		saveWriter.close();
 	}
 }
@@ -0,0 +1,131 @@
+/**
+ * ReversiWideEngine plays boards larger than 8x8, whose bitboards take two
+ * or more longs.
+ *
+ * Legal moves are found by shifting whole bitboards, as ReversiBitboard does
+ * with one long, carrying the bits that cross from one long into the next.
+ * A line stops being extended as soon as a step adds no opponent token to
+ * its runs, which on a large board is long before a run could cross it.
+ * Every call works on a few arrays of its own, so the engine can be shared
+ * by threads.
+ *
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public class ReversiWideEngine extends ReversiEngine {
+	private final long[] boardMask;
+	private final long[] notEdgeCols;
+
+	/**
+	 * Constructor for ReversiWideEngine
+	 *
+	 * @param size : number of rows and columns, more than 8
+	 */
+	ReversiWideEngine(int size) {
+		super(size);
+		boardMask = new long[words];
+		notEdgeCols = new long[words];
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				set(boardMask, row * size + col);
+				if (col > 0 && col < size - 1) {
+					set(notEdgeCols, row * size + col);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void legalMoves(long[] own, long[] opp, long[] moves) {
+		long[] empty = new long[words];
+		long[] inner = new long[words];
+		long[] up = new long[words];
+		long[] down = new long[words];
+		for (int i = 0; i < words; i++) {
+			empty[i] = ~(own[i] | opp[i]) & boardMask[i];
+			inner[i] = opp[i] & notEdgeCols[i];
+			moves[i] = 0;
+		}
+		moves(own, inner, empty, 1, up, down, moves);
+		moves(own, opp, empty, size, up, down, moves);
+		moves(own, inner, empty, size - 1, up, down, moves);
+		moves(own, inner, empty, size + 1, up, down, moves);
+	}
+
+	/**
+	 * Adds the moves that capture along one line, in both of its directions
+	 */
+	private void moves(long[] own, long[] run, long[] empty, int shift, long[] up, long[] down, long[] moves) {
+		shiftUp(own, shift, up);
+		shiftDown(own, shift, down);
+		for (int i = 0; i < words; i++) {
+			up[i] &= run[i];
+			down[i] &= run[i];
+		}
+		boolean growing = true;
+		for (int step = 1; step < size - 2 && growing; step++) {
+			growing = extendUp(up, run, shift) | extendDown(down, run, shift);
+		}
+		shiftUp(up, shift, up);
+		shiftDown(down, shift, down);
+		for (int i = 0; i < words; i++) {
+			moves[i] |= empty[i] & (up[i] | down[i]);
+		}
+	}
+
+	/**
+	 * Shifts a bitboard towards higher squares, in place if to is bits
+	 */
+	private void shiftUp(long[] bits, int shift, long[] to) {
+		for (int i = words - 1; i > 0; i--) {
+			to[i] = bits[i] << shift | bits[i - 1] >>> (64 - shift);
+		}
+		to[0] = bits[0] << shift;
+	}
+
+	/**
+	 * Shifts a bitboard towards lower squares, in place if to is bits
+	 */
+	private void shiftDown(long[] bits, int shift, long[] to) {
+		for (int i = 0; i < words - 1; i++) {
+			to[i] = bits[i] >>> shift | bits[i + 1] << (64 - shift);
+		}
+		to[words - 1] = bits[words - 1] >>> shift;
+	}
+
+	/**
+	 * Adds to bits the run squares one step above them
+	 *
+	 * @return whether any square was added
+	 */
+	private boolean extendUp(long[] bits, long[] run, int shift) {
+		long added = 0;
+		for (int i = words - 1; i > 0; i--) {
+			long next = run[i] & (bits[i] << shift | bits[i - 1] >>> (64 - shift));
+			added |= next & ~bits[i];
+			bits[i] |= next;
+		}
+		long next = run[0] & (bits[0] << shift);
+		added |= next & ~bits[0];
+		bits[0] |= next;
+		return added != 0;
+	}
+
+	/**
+	 * Adds to bits the run squares one step below them
+	 *
+	 * @return whether any square was added
+	 */
+	private boolean extendDown(long[] bits, long[] run, int shift) {
+		long added = 0;
+		for (int i = 0; i < words - 1; i++) {
+			long next = run[i] & (bits[i] >>> shift | bits[i + 1] << (64 - shift));
+			added |= next & ~bits[i];
+			bits[i] |= next;
+		}
+		long next = run[words - 1] & (bits[words - 1] >>> shift);
+		added |= next & ~bits[words - 1];
+		bits[words - 1] |= next;
+		return added != 0;
+	}
+}
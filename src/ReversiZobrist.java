@@ -0,0 +1,150 @@
+/**
+ * ReversiZobrist holds the random keys used to hash Reversi positions.
+ * 
+ * The hash of a position is the XOR of one key per token on the board and a
+ * key for Black to move, so placing or flipping a token updates the hash
+ * with one or two XORs instead of rehashing the board.
+ * 
+ * There are keys for the squares of every board size up to 16x16. The keys
+ * of the first 64 squares and the side key are made first, so 8x8 hashes,
+ * and the opening books keyed by them, are the same as before.
+ * 
+ * @author DennyHo and Ryan Luu
+ *
+ */
+public final class ReversiZobrist {
+	private static final long[] W_KEYS = new long[ReversiEngine.MAX_SQUARES];
+	private static final long[] B_KEYS = new long[ReversiEngine.MAX_SQUARES];
+	private static final long[] FLIP_KEYS = new long[ReversiEngine.MAX_SQUARES];
+	private static final long BLACK_TO_MOVE;
+
+	// Keys come from a fixed seed so hashes match between runs and machines
+	static {
+		long seed = 0x2545F4914F6CDD1DL;
+		for (int i = 0; i < 64; i++) {
+			seed += 0x9E3779B97F4A7C15L;
+			W_KEYS[i] = mix(seed);
+			seed += 0x9E3779B97F4A7C15L;
+			B_KEYS[i] = mix(seed);
+			FLIP_KEYS[i] = W_KEYS[i] ^ B_KEYS[i];
+		}
+		seed += 0x9E3779B97F4A7C15L;
+		BLACK_TO_MOVE = mix(seed);
+		for (int i = 64; i < ReversiEngine.MAX_SQUARES; i++) {
+			seed += 0x9E3779B97F4A7C15L;
+			W_KEYS[i] = mix(seed);
+			seed += 0x9E3779B97F4A7C15L;
+			B_KEYS[i] = mix(seed);
+			FLIP_KEYS[i] = W_KEYS[i] ^ B_KEYS[i];
+		}
+	}
+
+	private ReversiZobrist() {
+	}
+
+	/**
+	 * Gets the key for a token on a square
+	 * 
+	 * @param color  : color of the token
+	 * @param square : index of the square
+	 * @return key to XOR into the hash
+	 */
+	public static long key(int color, int square) {
+		return color == ReversiModel.B ? B_KEYS[square] : W_KEYS[square];
+	}
+
+	/**
+	 * Gets the key for flipping the token on a square
+	 * 
+	 * @param square : index of the square
+	 * @return key to XOR into the hash
+	 */
+	public static long flipKey(int square) {
+		return FLIP_KEYS[square];
+	}
+
+	/**
+	 * Gets the key for flipping every token on a bitboard
+	 * 
+	 * @param flips : bitboard of flipped tokens
+	 * @return key to XOR into the hash
+	 */
+	public static long flipKeys(long flips) {
+		long key = 0;
+		while (flips != 0) {
+			key ^= FLIP_KEYS[Long.numberOfTrailingZeros(flips)];
+			flips &= flips - 1;
+		}
+		return key;
+	}
+
+	/**
+	 * Gets the key for flipping every token on a bitboard of any size
+	 * 
+	 * @param flips : bitboard of flipped tokens, one long per 64 squares
+	 * @return key to XOR into the hash
+	 */
+	public static long flipKeys(long[] flips) {
+		long key = 0;
+		for (int square = ReversiEngine.next(flips, 0); square >= 0; square = ReversiEngine.next(flips, square + 1)) {
+			key ^= FLIP_KEYS[square];
+		}
+		return key;
+	}
+
+	/**
+	 * Gets the key for the side to move, XOR it in whenever the turn changes
+	 * 
+	 * @return key to XOR into the hash
+	 */
+	public static long sideKey() {
+		return BLACK_TO_MOVE;
+	}
+
+	/**
+	 * Hashes a whole position
+	 * 
+	 * @param wBits  : bitboard of the White tokens
+	 * @param bBits  : bitboard of the Black tokens
+	 * @param toMove : color of the player to move
+	 * @return hash of the position
+	 */
+	public static long hash(long wBits, long bBits, int toMove) {
+		long hash = toMove == ReversiModel.B ? BLACK_TO_MOVE : 0;
+		for (long bits = wBits; bits != 0; bits &= bits - 1) {
+			hash ^= W_KEYS[Long.numberOfTrailingZeros(bits)];
+		}
+		for (long bits = bBits; bits != 0; bits &= bits - 1) {
+			hash ^= B_KEYS[Long.numberOfTrailingZeros(bits)];
+		}
+		return hash;
+	}
+
+	/**
+	 * Hashes a whole position on a board of any size
+	 * 
+	 * @param wBits  : bitboard of the White tokens, one long per 64 squares
+	 * @param bBits  : bitboard of the Black tokens, one long per 64 squares
+	 * @param toMove : color of the player to move
+	 * @return hash of the position
+	 */
+	public static long hash(long[] wBits, long[] bBits, int toMove) {
+		long hash = toMove == ReversiModel.B ? BLACK_TO_MOVE : 0;
+		for (int square = ReversiEngine.next(wBits, 0); square >= 0; square = ReversiEngine.next(wBits, square + 1)) {
+			hash ^= W_KEYS[square];
+		}
+		for (int square = ReversiEngine.next(bBits, 0); square >= 0; square = ReversiEngine.next(bBits, square + 1)) {
+			hash ^= B_KEYS[square];
+		}
+		return hash;
+	}
+
+	/**
+	 * Scrambles the bits of a counter into a random looking key
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -1,8 +1,4 @@
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.util.function.Consumer;
 
 import javafx.application.Platform;
@@ -14,25 +10,88 @@ import javafx.application.Platform;
  */
 public class Server {
 	private int port;
-	private Consumer<ReversiBoard> board;
+	private Consumer<ReversiMessage> board;
 	private ReversiView view;
-	Socket clientConnection;
-	ObjectOutputStream output;
-	ObjectInputStream input;
+	private boolean legacy;
+	private long heartbeatMillis = ReversiConnection.DEFAULT_HEARTBEAT_MILLIS;
+	private long timeoutMillis = ReversiConnection.DEFAULT_TIMEOUT_MILLIS;
+	private long reconnectMillis = ReversiConnection.DEFAULT_RECONNECT_MILLIS;
+	private Consumer<Exception> lost;
+	private volatile boolean ended;
+	ReversiConnection clientConnection;
 
 	/**
 	 * Constructs the Server
 	 * 
 	 * @param view  : the ReversiView of the connection
 	 * @param port  : connection port
-	 * @param board : a lambda meant to be called every time a board is received
+	 * @param board : a lambda meant to be called every time a move or board is received
 	 */
-	public Server(ReversiView view, int port, Consumer<ReversiBoard> board) {
+	public Server(ReversiView view, int port, Consumer<ReversiMessage> board) {
 		this.port = port;
 		this.board = board;
 		this.view = view;
 	}
 
+	/**
+	 * Sets whether boards are sent with Java serialization instead of the
+	 * binary protocol. Must be called before startConnection.
+	 * 
+	 * @param legacy : whether to use Java serialization
+	 */
+	public void setLegacy(boolean legacy) {
+		this.legacy = legacy;
+	}
+
+	/**
+	 * Sets the heartbeat and reconnect timeouts of the connection. Must be
+	 * called before startConnection.
+	 * 
+	 * @param heartbeatMillis : time between heartbeats in milliseconds
+	 * @param timeoutMillis   : time the client may stay silent before the link is
+	 *                        dropped and reconnected
+	 * @param reconnectMillis : time to keep trying to reconnect before giving up
+	 */
+	public void setTimeouts(long heartbeatMillis, long timeoutMillis, long reconnectMillis) {
+		this.heartbeatMillis = heartbeatMillis;
+		this.timeoutMillis = timeoutMillis;
+		this.reconnectMillis = reconnectMillis;
+	}
+
+	/**
+	 * Sets a lambda called on the connection thread when the connection is
+	 * lost for good, either failing to open or failing to reconnect
+	 * 
+	 * @param lost : receives the error
+	 */
+	public void setOnLost(Consumer<Exception> lost) {
+		this.lost = lost;
+	}
+
+	/**
+	 * Opens a connection with the configured settings
+	 */
+	private ReversiConnection open() throws IOException {
+		ReversiConnection connection = new ReversiConnection(legacy);
+		connection.setHeartbeat(heartbeatMillis, timeoutMillis);
+		connection.setReconnectTimeout(reconnectMillis);
+		connection.acceptPeer(port);
+		return connection;
+	}
+
+	/**
+	 * Reports an error that ended the connection, unless it was closed by endConnection
+	 */
+	private void connectionLost(Exception e) {
+		if (ended) {
+			return;
+		}
+		System.out.println("Connection to the client lost: " + e.getMessage());
+		if (lost != null) {
+			lost.accept(e);
+		}
+	}
+
 	/**
 	 * Starts connection by creating new Thread and accepting a Client connection.
 	 * 
@@ -42,40 +101,55 @@ public class Server {
 		Thread thread = new Thread() {
 			public void run() {
 				try {
-					ServerSocket server = new ServerSocket(port);
-					clientConnection = server.accept();
-					output = new ObjectOutputStream(clientConnection.getOutputStream());
-					input = new ObjectInputStream(clientConnection.getInputStream());
+					clientConnection = open();
 
-					// Play First AI turn for computer
-					Platform.runLater(() -> {
-						if (!view.networkSettings.getHumanOrComputer())
-							view.turnAI();
-					});
+					// Send the board and play First AI turn for computer
+					Platform.runLater(view::peerConnected);
 
-					// Read in ReversiBoards continuously
+					// Read in moves continuously
 					while (true) {
-						ReversiBoard received = (ReversiBoard) input.readObject();
-						board.accept(received);
+						board.accept(clientConnection.receive());
 					}
 				} catch (Exception e) {
+					connectionLost(e);
 				}
 			}
 		};
 		thread.start();
 	}
 
+	/**
+	 * Closes the connection for good
+	 * 
+	 * @throws IOException : when the socket cannot be closed
+	 */
 	public void endConnection() throws IOException {
+		ended = true;
 		clientConnection.close();
 	}
 
 	/**
-	 * Sends the board to the output stream
+	 * Sends the board the game starts from, so the Client plays at the same
+	 * size. Legacy peers only play 8x8 boards from the usual start, so
+	 * nothing is sent to them.
+	 * 
+	 * @param position : the board and the player to move
+	 * @throws IOException : Input/Output steam exception
+	 */
+	public void sendStart(ReversiPosition position) throws IOException {
+		if (!legacy) {
+			clientConnection.sendSnapshot(position);
+		}
+	}
+
+	/**
+	 * Sends the turn just played to the Client
 	 * 
-	 * @param board : ReversiBoard that had been updated by a move
+	 * @param square   : index of the square played, or ReversiMessage.PASS
+	 * @param position : the position after the move
 	 * @throws IOException : Input/Output steam exception
 	 */
-	public void send(ReversiBoard board) throws IOException {
-		output.writeObject(board);
+	public void send(int square, ReversiPosition position) throws IOException {
+		clientConnection.sendMove(square, position);
 	}
 }